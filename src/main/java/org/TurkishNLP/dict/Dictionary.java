@@ -4,9 +4,12 @@ import lombok.extern.slf4j.Slf4j;
 import zemberek.morphology.TurkishMorphology;
 import zemberek.morphology.lexicon.DictionaryItem;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
@@ -21,7 +24,7 @@ public class Dictionary {
     // Process zemberek's default dictionary. ONLY NEEDS TO BE DONE ONCE
     public static void processDefaultDictionary() {
         try {
-            PrintWriter pw = new PrintWriter(DEFAULT_DICT_PATH.toFile());
+            PrintWriter pw = new PrintWriter(Files.newBufferedWriter(DEFAULT_DICT_PATH, StandardCharsets.UTF_8));
             TurkishMorphology.createWithDefaults()
                     .getLexicon()
                     .iterator()
@@ -38,7 +41,7 @@ public class Dictionary {
     public static HashMap<String, Long> getDefaultFrequencyHash(){
         try {
             HashMap<String, Long> map = new HashMap<>();
-            Scanner s = new Scanner(DEFAULT_DICT_PATH.toFile());
+            Scanner s = new Scanner(DEFAULT_DICT_PATH.toFile(), StandardCharsets.UTF_8.name());
             while(s.hasNextLine()){
                 map.put(s.nextLine(), new Long(0));
             }
@@ -53,7 +56,7 @@ public class Dictionary {
     public static HashMap<String, Long> trimDefaultDictionaryWithCorpus(int maxFreq, File corpusFile) throws IOException {
         try {
             log.info("Starting trimming corpus " + corpusFile);
-            Scanner s = new Scanner(corpusFile);
+            Scanner s = new Scanner(corpusFile, StandardCharsets.UTF_8.name());
             HashMap<String, Long> freqs = getDefaultFrequencyHash();
             log.info("Initial dictionary size = {}", freqs.size());
             String line;
@@ -93,17 +96,60 @@ public class Dictionary {
         }
     }
 
+    /**
+     * Reads the words of a dictionary file, one word per line. Anything after the word on a line is ignored
+     */
+    public static List<String> readDictionary(Path path) throws IOException {
+        List<String> words = new ArrayList<>();
+        try(BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                line = line.trim();
+                if(line.isEmpty()) continue;
+                words.add(line.split("\\s+")[0]);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Reads a dictionary with frequency counts, one "word count" pair per line, as written by
+     * trimDefaultDictionaryWithCorpus
+     *
+     * @return the counts in file order, or null if a line has no count
+     */
+    public static LinkedHashMap<String, Long> readFrequencies(Path path) throws IOException {
+        LinkedHashMap<String, Long> freqs = new LinkedHashMap<>();
+        try(BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                line = line.trim();
+                if(line.isEmpty()) continue;
+                String[] args = line.split("\\s+");
+                if(args.length < 2) return null;
+                try {
+                    freqs.merge(args[0], Long.parseLong(args[1]), Long::sum);
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+        }
+        return freqs;
+    }
+
+    // Writes "word count" lines so the dictionary can be used to build a vocabulary without a corpus pass
     private static void printHashDict(HashMap<String,Long> dict, Path path) throws IOException {
-        PrintWriter pw = new PrintWriter(path.toFile());
-        for(Map.Entry<String, Long> item : dict.entrySet()) {
-//            pw.println(item.getKey() + " - " + item.getValue());
-            pw.println(item.getKey());
+        try(PrintWriter pw = new PrintWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+            for(Map.Entry<String, Long> item : dict.entrySet()) {
+                pw.println(item.getKey() + " " + item.getValue());
+            }
         }
     }
 
     private static void printCollectionDict(Collection<String> dict, Path path) throws IOException {
-        PrintWriter pw = new PrintWriter(path.toFile());
-        dict.stream().forEach(item -> pw.println(item));
+        try(PrintWriter pw = new PrintWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+            dict.forEach(pw::println);
+        }
     }
 
     public static void main(String[] args) throws IOException{
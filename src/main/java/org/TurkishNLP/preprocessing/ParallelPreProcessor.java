@@ -8,6 +8,7 @@ import org.TurkishNLP.shared.Timer;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
@@ -64,13 +65,13 @@ public class ParallelPreProcessor<T extends ParallelizablePreProcessor> {
      */
     public boolean processFile(File input, File output) {
         try(
-            Scanner in = new Scanner(input);
-            PrintWriter out = new PrintWriter(output);
+            Scanner in = new Scanner(input, StandardCharsets.UTF_8.name());
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8));
             )
         {
             Timer.TimerToken timerToken = Timer.newToken();
             log.info("Counting lines in file...");
-            totalLines = countLines(new Scanner(input));
+            totalLines = countLines(new Scanner(input, StandardCharsets.UTF_8.name()));
             in.reset();
             log.info("Processing file [{}], a total of [{}] lines, in parallel using [{}] threads...",
                     input, totalLines, workers);
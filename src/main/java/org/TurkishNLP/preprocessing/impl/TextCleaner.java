@@ -7,8 +7,11 @@ import org.TurkishNLP.preprocessing.PreProcessor;
 import javax.xml.soap.Text;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -75,8 +78,8 @@ public class TextCleaner extends ParallelizablePreProcessor {
 
     public void cleanFileOnDisk(File input, File output) throws FileNotFoundException{
         try (
-                Scanner in = new Scanner(input);
-                PrintWriter out = new PrintWriter(output)
+                Scanner in = new Scanner(input, StandardCharsets.UTF_8.name());
+                PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8))
         ) {
             String line;
             while(in.hasNextLine()) {
@@ -13,7 +13,10 @@ import zemberek.tokenization.TurkishSentenceExtractor;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
@@ -107,8 +110,8 @@ public class TurkishLemmatizer extends ParallelizablePreProcessor {
     @Override
     public boolean processFile(File input, File output) {
         try(
-            Scanner in = new Scanner(input);
-            PrintWriter out = new PrintWriter(output)
+            Scanner in = new Scanner(input, StandardCharsets.UTF_8.name());
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8))
         ) {
             long analysisCount = 0;
             String line;
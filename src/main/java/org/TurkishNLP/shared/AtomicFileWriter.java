@@ -0,0 +1,44 @@
+package org.TurkishNLP.shared;
+
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/**
+ * Writes files so that the target is either the old file or the complete new one, never a partial write.
+ * Content goes to a temp file in the target's directory, is synced to disk and then renamed over the target
+ */
+public class AtomicFileWriter {
+    public interface PathWriter {
+        void writeTo(Path path) throws IOException;
+    }
+
+    /**
+     * @param target file to create or replace
+     * @param writer writes the content to the path it is given
+     * @return number of bytes written
+     */
+    public static long write(@NonNull Path target, @NonNull PathWriter writer) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+        try {
+            writer.writeTo(temp);
+            long bytes;
+            try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+                bytes = channel.size();
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch(AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return bytes;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.TurkishNLP.shared;
+
+/**
+ * Conversions between float and IEEE 754 half precision floats stored in shorts.
+ * Decoding uses a lookup table since it is on the hot path of similarity scans
+ */
+public class HalfFloat {
+    private static final float[] DECODE_TABLE = new float[1 << 16];
+
+    static {
+        for(int i = 0; i < DECODE_TABLE.length; i++) {
+            DECODE_TABLE[i] = decode((short) i);
+        }
+    }
+
+    public static float toFloat(short half) {
+        return DECODE_TABLE[half & 0xffff];
+    }
+
+    /**
+     * Rounds to the nearest half precision value, overflowing values become infinity
+     */
+    public static short fromFloat(float f) {
+        int bits = Float.floatToIntBits(f);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = ((bits >>> 23) & 0xff) - 127 + 15;
+        int mantissa = bits & 0x7fffff;
+
+        if(((bits >>> 23) & 0xff) == 0xff) {
+            // NaN or infinity
+            return (short) (sign | 0x7c00 | (mantissa != 0 ? 0x200 : 0));
+        }
+        if(exponent >= 0x1f) {
+            return (short) (sign | 0x7c00);
+        }
+        if(exponent <= 0) {
+            // subnormal or zero
+            if(exponent < -10) return (short) sign;
+            mantissa |= 0x800000;
+            int shift = 14 - exponent;
+            int half = mantissa >> shift;
+            // round to nearest even
+            int remainder = mantissa & ((1 << shift) - 1);
+            int halfway = 1 << (shift - 1);
+            if(remainder > halfway || (remainder == halfway && (half & 1) == 1)) half++;
+            return (short) (sign | half);
+        }
+        int half = sign | (exponent << 10) | (mantissa >> 13);
+        int remainder = mantissa & 0x1fff;
+        if(remainder > 0x1000 || (remainder == 0x1000 && (half & 1) == 1)) half++;
+        return (short) half;
+    }
+
+    private static float decode(short half) {
+        int h = half & 0xffff;
+        int sign = (h & 0x8000) << 16;
+        int exponent = (h >>> 10) & 0x1f;
+        int mantissa = h & 0x3ff;
+
+        if(exponent == 0x1f) {
+            return Float.intBitsToFloat(sign | 0x7f800000 | (mantissa << 13));
+        }
+        if(exponent == 0) {
+            if(mantissa == 0) return Float.intBitsToFloat(sign);
+            // subnormal, value is mantissa * 2^-24
+            float value = mantissa * (1f / (1 << 24));
+            return sign == 0 ? value : -value;
+        }
+        return Float.intBitsToFloat(sign | ((exponent - 15 + 127) << 23) | (mantissa << 13));
+    }
+}
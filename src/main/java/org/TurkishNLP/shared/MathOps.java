@@ -1,9 +1,56 @@
 package org.TurkishNLP.shared;
 
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
 public class MathOps {
     public static Double roundDoubleTo(Double d, int to) throws ArithmeticException {
         if(to < 0) throw new ArithmeticException("Can't round to negative decimal points");
         long mulVal = (long) Math.pow(10d, to);
         return Math.floor(d * mulVal) / mulVal;
     }
+
+    /**
+     * Spearman rank correlation of two samples of the same size, tied values get the average of their ranks
+     */
+    public static double spearmanCorrelation(double[] x, double[] y) {
+        if(x.length != y.length) throw new ArithmeticException("Samples must be of the same size");
+        return pearsonCorrelation(ranks(x), ranks(y));
+    }
+
+    public static double pearsonCorrelation(double[] x, double[] y) {
+        if(x.length != y.length) throw new ArithmeticException("Samples must be of the same size");
+        int n = x.length;
+        if(n < 2) return Double.NaN;
+        double meanX = 0, meanY = 0;
+        for(int i = 0; i < n; i++) {
+            meanX += x[i];
+            meanY += y[i];
+        }
+        meanX /= n;
+        meanY /= n;
+        double cov = 0, varX = 0, varY = 0;
+        for(int i = 0; i < n; i++) {
+            cov += (x[i] - meanX) * (y[i] - meanY);
+            varX += (x[i] - meanX) * (x[i] - meanX);
+            varY += (y[i] - meanY) * (y[i] - meanY);
+        }
+        return cov / Math.sqrt(varX * varY);
+    }
+
+    // 1-based ranks of the values, ties share the average of their ranks
+    private static double[] ranks(double[] values) {
+        Integer[] order = IntStream.range(0, values.length).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, Comparator.comparingDouble(i -> values[i]));
+        double[] ranks = new double[values.length];
+        for(int i = 0; i < order.length;) {
+            int j = i;
+            while(j + 1 < order.length && values[order[j + 1]] == values[order[i]]) j++;
+            double rank = (i + j) / 2.0 + 1;
+            for(int k = i; k <= j; k++) ranks[order[k]] = rank;
+            i = j + 1;
+        }
+        return ranks;
+    }
 }
@@ -0,0 +1,127 @@
+package org.TurkishNLP.shared;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketch with relative error guarantees (DDSketch, Masson et al.). Values are counted
+ * in logarithmically sized buckets so any quantile is returned within relativeAccuracy of a value of the
+ * same rank, using memory proportional to the log of the range of the values instead of their count.
+ * Sketches with the same accuracy can be merged, e.g. the sketches of parallel shards of a test run
+ */
+public class QuantileSketch {
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.005;
+
+    private final double relativeAccuracy;
+    private final double gamma, logGamma;
+    private final Buckets positive = new Buckets();
+    private final Buckets negative = new Buckets();
+    private long zeroCount = 0;
+    private long count = 0;
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    public QuantileSketch(double relativeAccuracy) {
+        if(relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("Relative accuracy must be in (0, 1)");
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    public void add(double value) {
+        if(Double.isNaN(value)) return;
+        if(value > Double.MIN_NORMAL) positive.add(index(value), 1);
+        else if(value < -Double.MIN_NORMAL) negative.add(index(-value), 1);
+        else zeroCount++;
+        count++;
+    }
+
+    /**
+     * Adds the counts of another sketch with the same relative accuracy to this one
+     */
+    public QuantileSketch merge(QuantileSketch other) {
+        if(other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Can't merge sketches with different relative accuracies");
+        }
+        positive.merge(other.positive);
+        negative.merge(other.negative);
+        zeroCount += other.zeroCount;
+        count += other.count;
+        return this;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    /**
+     * @param q quantile in [0, 1], 0.5 is the median
+     * @return the estimated value or NaN if the sketch is empty
+     */
+    public double quantile(double q) {
+        if(q < 0 || q > 1) throw new IllegalArgumentException("Quantile must be in [0, 1]");
+        if(count == 0) return Double.NaN;
+        long rank = (long) (q * (count - 1));
+        long seen = 0;
+        // negative values in increasing order are the buckets of their magnitudes in decreasing order
+        for(int i = negative.counts.length - 1; i >= 0; i--) {
+            seen += negative.counts[i];
+            if(seen > rank) return -value(i + negative.offset);
+        }
+        seen += zeroCount;
+        if(seen > rank) return 0;
+        for(int i = 0; i < positive.counts.length; i++) {
+            seen += positive.counts[i];
+            if(seen > rank) return value(i + positive.offset);
+        }
+        return value(positive.counts.length - 1 + positive.offset);
+    }
+
+    private int index(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / logGamma);
+    }
+
+    // value in the middle of bucket i, within relativeAccuracy of every value in the bucket
+    private double value(int index) {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    /**
+     * Dense counts for a contiguous range of bucket indexes, grown on either side as needed
+     */
+    private static class Buckets {
+        private long[] counts = new long[0];
+        private int offset = 0;
+
+        void add(int index, long n) {
+            if(counts.length == 0) {
+                counts = new long[16];
+                offset = index - 8;
+            }
+            if(index < offset) {
+                int grow = Math.max(offset - index, counts.length / 2);
+                long[] grown = new long[counts.length + grow];
+                System.arraycopy(counts, 0, grown, grow, counts.length);
+                counts = grown;
+                offset -= grow;
+            } else if(index >= offset + counts.length) {
+                int grow = Math.max(index - offset - counts.length + 1, counts.length / 2);
+                counts = Arrays.copyOf(counts, counts.length + grow);
+            }
+            counts[index - offset] += n;
+        }
+
+        void merge(Buckets other) {
+            for(int i = 0; i < other.counts.length; i++) {
+                if(other.counts[i] != 0) add(i + other.offset, other.counts[i]);
+            }
+        }
+    }
+}
@@ -3,10 +3,9 @@ package org.TurkishNLP.shared;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
- * Class to get basic statistics of lists of doubles
+ * Class to get basic statistics of lists of doubles. See {@link StreamingStatistics} for large numbers of values
  */
 public class Statistics {
     private final Integer size;
@@ -22,18 +21,20 @@ public class Statistics {
         size = data.size();
         mean = stats.getMean();
 
-        // median logic
+        // median logic, getSortedValues sorts a copy on every call
+        double[] sorted = stats.getSortedValues();
         if((size % 2) == 1) {
-            median = stats.getSortedValues()[size/2];
+            median = sorted[size/2];
         } else {
-            median = (stats.getSortedValues()[size/2] + stats.getSortedValues()[size/2 - 1])/2;
+            median = (sorted[size/2] + sorted[size/2 - 1])/2;
         }
 
         // log values statistics
-        List<Double> logs = data.stream().map(val -> Math.log(val)/Math.log(2)).collect(Collectors.toList());
-        DescriptiveStatistics logStats = new DescriptiveStatistics();
-        logs.forEach(l -> logStats.addValue(l));
-        logMean = logStats.getMean();
+        double logSum = 0;
+        for(Double d : data) {
+            logSum += Math.log(d)/Math.log(2);
+        }
+        logMean = logSum / size;
 
         // number of elements that == 1
         int tempOnes = 0;
@@ -0,0 +1,146 @@
+package org.TurkishNLP.shared;
+
+import java.util.Arrays;
+
+/**
+ * Same statistics as {@link Statistics} computed one value at a time in bounded memory, so callers don't
+ * have to keep the scores around. Mean and standard deviation use Welford's method, percentiles come from a
+ * {@link QuantileSketch} fed from the first value on. Only for small samples, at most EXACT_LIMIT values,
+ * the values are kept as well so that medians of a few scores are exact instead of accurate to the sketch's
+ * relative accuracy. Statistics of parallel shards can be merged
+ */
+public class StreamingStatistics {
+    // max number of values kept for exact percentiles, 2 KB
+    public static final int EXACT_LIMIT = 256;
+
+    private int size = 0;
+    private int ones = 0;
+    private double min = Double.NaN, max = Double.NaN;
+    private double mean = 0, m2 = 0;
+    private double logSum = 0;
+    private final QuantileSketch sketch;
+    // all values while there are at most EXACT_LIMIT, null after that
+    private double[] values = new double[16];
+
+    public StreamingStatistics() {
+        this(QuantileSketch.DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    public StreamingStatistics(double relativeAccuracy) {
+        sketch = new QuantileSketch(relativeAccuracy);
+    }
+
+    public void add(double value) {
+        size++;
+        double delta = value - mean;
+        mean += delta / size;
+        m2 += delta * (value - mean);
+        min = size == 1 ? value : Math.min(min, value);
+        max = size == 1 ? value : Math.max(max, value);
+        logSum += Math.log(value) / Math.log(2);
+        if(value == 1d) ones++;
+        sketch.add(value);
+        if(values != null) {
+            if(size > EXACT_LIMIT) {
+                values = null;
+            } else {
+                if(size > values.length) values = Arrays.copyOf(values, Math.min(EXACT_LIMIT, values.length * 2));
+                values[size - 1] = value;
+            }
+        }
+    }
+
+    /**
+     * Combines the statistics of another shard into these (Chan et al. for the variance)
+     */
+    public StreamingStatistics merge(StreamingStatistics other) {
+        if(other.size == 0) return this;
+        if(size == 0) {
+            min = other.min;
+            max = other.max;
+        } else {
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+        int total = size + other.size;
+        if(values != null && other.values != null && total <= EXACT_LIMIT) {
+            if(total > values.length) values = Arrays.copyOf(values, Math.min(EXACT_LIMIT, Math.max(total, values.length * 2)));
+            System.arraycopy(other.values, 0, values, size, other.size);
+        } else {
+            values = null;
+        }
+        double delta = other.mean - mean;
+        m2 += other.m2 + delta * delta * ((double) size * other.size / total);
+        mean += delta * other.size / total;
+        size = total;
+        ones += other.ones;
+        logSum += other.logSum;
+        sketch.merge(other.sketch);
+        return this;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getOnesCount() {
+        return ones;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return size == 0 ? Double.NaN : mean;
+    }
+
+    /**
+     * Mean of the base 2 logarithms of the values
+     */
+    public double getLogMean() {
+        return size == 0 ? Double.NaN : logSum / size;
+    }
+
+    /**
+     * Sample standard deviation, same as {@link Statistics#getStandardDeviation()}
+     */
+    public double getStandardDeviation() {
+        if(size == 0) return Double.NaN;
+        return size == 1 ? 0 : Math.sqrt(m2 / (size - 1));
+    }
+
+    /**
+     * Same median as {@link Statistics#getMedian()} while isExact
+     */
+    public double getMedian() {
+        return getPercentile(50);
+    }
+
+    /**
+     * @param p percentile in [0, 100], interpolated between the closest values while isExact
+     */
+    public double getPercentile(double p) {
+        if(size == 0) return Double.NaN;
+        if(values != null) {
+            double[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            double position = p / 100 * (size - 1);
+            int lower = (int) Math.floor(position), upper = (int) Math.ceil(position);
+            return sorted[lower] + (sorted[upper] - sorted[lower]) * (position - lower);
+        }
+        // bucket values can fall slightly outside of the data, e.g. a median of 0.995 for all ones
+        return Math.max(min, Math.min(max, sketch.quantile(p / 100)));
+    }
+
+    /**
+     * @return true if percentiles are computed from all values, false if they are approximated by the sketch
+     */
+    public boolean isExact() {
+        return values != null;
+    }
+}
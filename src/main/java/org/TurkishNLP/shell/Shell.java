@@ -1,11 +1,15 @@
 package org.TurkishNLP.shell;
 
-import org.deeplearning4j.models.word2vec.Word2Vec;
+import org.TurkishNLP.word2vec.Word2VecModel;
+import org.TurkishNLP.word2vec.model_utils.BetterModelUtils;
 import org.fusesource.jansi.AnsiConsole;
 import org.jline.builtins.Completers;
 import org.jline.reader.*;
 import org.jline.reader.impl.DefaultParser;
 
+import java.io.IOException;
+import java.util.List;
+
 import static org.jline.builtins.Completers.TreeCompleter.node;
 
 /**
@@ -13,7 +17,8 @@ import static org.jline.builtins.Completers.TreeCompleter.node;
  */
 public class Shell {
     private String[] commandsList;
-    private Word2Vec w;
+    // models are mounted read-only, the shell only queries them
+    private Word2VecModel w;
 
     public void run() {
         Completer completer = new Completers.TreeCompleter(
@@ -52,7 +57,11 @@ public class Shell {
                                     printGeneralError();
                                 } else {
                                     String modelName = pl.words().get(2);
-//                                    w = Word2VecOperations.readModel(modelName);
+                                    try {
+                                        w = Word2VecModel.readModelForInference(modelName);
+                                    } catch (IOException e) {
+                                        System.out.println("Could not read model [" + modelName + "]");
+                                    }
                                     System.out.println();
                                 }
                                 break;
@@ -68,7 +77,12 @@ public class Shell {
                                     if (!thirdCommand.matches("\\d+")) {
                                         printGeneralError();
                                     } else {
-//                                        Word2VecOperations.printClosest(w, fourthCommand, Integer.parseInt(thirdCommand));
+                                        List<BetterModelUtils.ScoredLabel> closest = w.getClosest(fourthCommand, Integer.parseInt(thirdCommand));
+                                        if(closest == null) {
+                                            System.out.println("[" + fourthCommand + "] is not in vocab");
+                                        } else {
+                                            closest.forEach(System.out::println);
+                                        }
                                         System.out.println();
                                     }
                                 }
@@ -79,7 +93,7 @@ public class Shell {
                                 } else if (w == null) {
                                     printNoModelError();
                                 } else {
-                                    System.out.println("TODO");
+                                    System.out.println(w.getSimilarity(pl.words().get(2), pl.words().get(3)));
                                 }
                                 break;
                         }
@@ -0,0 +1,85 @@
+package org.TurkishNLP.testing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.TurkishNLP.word2vec.Word2VecModel;
+import org.TurkishNLP.word2vec.model_utils.BetterModelUtils;
+import org.TurkishNLP.word2vec.model_utils.HnswIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the latency and recall@k of approximate getClosest queries over a range of ef values
+ * against exact queries on randomly picked words. Builds and saves the model's index if it has none.
+ *
+ * Usage: HnswBenchmark modelName [queries] [outputFile]
+ */
+@Slf4j
+public class HnswBenchmark {
+    private static final int TOP = 10;
+    private static final int[] EF_VALUES = {16, 32, 64, 128, 256};
+
+    public static void main(String[] args) throws IOException {
+        String modelName = args.length > 0 ? args[0] : "n_10epoch_250layer_10min_15neg";
+        int queryCount = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        String outFile = args.length > 2 ? args[2] :
+                Paths.get("data", "testing", "out", modelName + "_hnsw.txt").toString();
+
+        Word2VecModel model = Word2VecModel.readModelForInference(modelName);
+        if(!model.hasIndex()) {
+            model.buildIndex();
+            Word2VecModel.saveIndex(model, true);
+        }
+
+        Random r = new Random(42);
+        List<String> queries = new ArrayList<>();
+        while(queries.size() < queryCount) {
+            String word = model.getVectors().wordAt(r.nextInt(model.getVocabCount()));
+            if(word != null && !word.equals("UNK") && !word.equals("STOP")) queries.add(word);
+        }
+
+        List<Set<String>> exact = new ArrayList<>();
+        long start = System.nanoTime();
+        for(String q : queries) {
+            exact.add(labels(model.getClosest(Collections.singletonList(q), Collections.emptyList(), TOP, 0)));
+        }
+        double exactMicros = (System.nanoTime() - start) / 1000.0 / queries.size();
+
+        try(PrintWriter out = new PrintWriter(new File(outFile))) {
+            out.println("Model: " + modelName + ", words: " + model.getVocabCount() + ", queries: " + queries.size());
+            out.printf("%-8s %14s %12s%n", "ef", "us/query", "recall@" + TOP);
+            out.printf("%-8s %14.1f %12.4f%n", "exact", exactMicros, 1.0);
+            for(int ef : EF_VALUES) {
+                int hits = 0, total = 0;
+                start = System.nanoTime();
+                List<Set<String>> approximate = new ArrayList<>();
+                for(String q : queries) {
+                    approximate.add(labels(model.getClosest(Collections.singletonList(q), Collections.emptyList(), TOP, ef)));
+                }
+                double micros = (System.nanoTime() - start) / 1000.0 / queries.size();
+                for(int i = 0; i < queries.size(); i++) {
+                    Set<String> found = new HashSet<>(approximate.get(i));
+                    found.retainAll(exact.get(i));
+                    hits += found.size();
+                    total += exact.get(i).size();
+                }
+                out.printf("%-8d %14.1f %12.4f%n", ef, micros, total == 0 ? 0 : (double) hits / total);
+            }
+        }
+        log.info("HNSW benchmark written to [{}]", outFile);
+    }
+
+    private static Set<String> labels(List<BetterModelUtils.ScoredLabel> closest) {
+        if(closest == null) return Collections.emptySet();
+        return closest.stream().map(BetterModelUtils.ScoredLabel::getLabel).collect(Collectors.toSet());
+    }
+}
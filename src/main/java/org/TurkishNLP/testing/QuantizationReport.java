@@ -0,0 +1,47 @@
+package org.TurkishNLP.testing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.TurkishNLP.testing.impl.AnalogyTest;
+import org.TurkishNLP.word2vec.Word2VecModel;
+import org.TurkishNLP.word2vec.model_utils.MappedVectors;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Exports the float16 and int8 versions of a model's vectors and reports how their analogy test
+ * results compare to the float32 vectors
+ *
+ * Usage: QuantizationReport modelName analogyTestFile outputFile
+ */
+@Slf4j
+public class QuantizationReport {
+    public static void main(String[] args) throws IOException {
+        String modelName = args.length > 0 ? args[0] : "n_10epoch_250layer_10min_15neg";
+        String testFile = args.length > 1 ? args[1] :
+                Paths.get("data", "testing", "analogy_tests", "capitals.txt").toString();
+        String outFile = args.length > 2 ? args[2] :
+                Paths.get("data", "testing", "out", modelName + "_quantization.txt").toString();
+
+        Tester tester = new Tester();
+        List<Test> tests = AnalogyTest.readAnalogyTests(testFile);
+        Word2VecModel reference = Word2VecModel.readModelForInference(modelName);
+
+        try(PrintWriter out = new PrintWriter(new File(outFile))) {
+            for(MappedVectors.Encoding encoding : MappedVectors.Encoding.values()) {
+                if(encoding == MappedVectors.Encoding.FLOAT32) continue;
+                String suffix = "_" + encoding.name().toLowerCase();
+                String path = Paths.get(System.getProperty("user.dir"), "data", "models",
+                        modelName + suffix + MappedVectors.VECTORS_EXTENSION).toString();
+                Word2VecModel.saveVectors(reference, path, true, encoding);
+                Word2VecModel candidate = Word2VecModel.readModelForInferenceByPath(path, modelName + suffix);
+                tester.compareModels(reference, candidate, tests, out);
+                out.println();
+            }
+        }
+        log.info("Quantization report written to [{}]", outFile);
+    }
+}
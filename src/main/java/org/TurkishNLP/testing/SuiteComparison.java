@@ -0,0 +1,118 @@
+package org.TurkishNLP.testing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.TurkishNLP.shared.MathOps;
+import org.TurkishNLP.shared.Timer;
+import org.TurkishNLP.word2vec.Word2VecModel;
+import org.TurkishNLP.word2vec.model_utils.VectorStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a set of test suites against many models and prints a table comparing them. Models are read
+ * for inference one at a time while the next one is read and paged in on a background thread,
+ * so at most two models are resident at once.
+ *
+ * Usage: SuiteComparison outputFile suiteFile... (models are the ones in TestModels)
+ */
+@Slf4j
+public class SuiteComparison {
+    private static final int WARM_UP_BLOCK_ROWS = 4096;
+
+    public static void compare(List<String> modelNames, List<TestSuite> suites, PrintWriter out) {
+        log.info("Comparing [{}] models on [{}] suites", modelNames.size(), suites.size());
+        Timer.TimerToken token = Timer.newToken();
+        List<String> rows = new ArrayList<>();
+        ExecutorService loader = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "model-prefetch");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            Future<Word2VecModel> next = modelNames.isEmpty() ? null : loader.submit(() -> load(modelNames.get(0)));
+            for(int i = 0; i < modelNames.size(); i++) {
+                Word2VecModel model;
+                try {
+                    model = next.get();
+                } catch (ExecutionException e) {
+                    log.error("Model [{}] could not be read, skipping", modelNames.get(i), e.getCause());
+                    model = null;
+                }
+                String nextName = i + 1 < modelNames.size() ? modelNames.get(i + 1) : null;
+                next = nextName == null ? null : loader.submit(() -> load(nextName));
+                if(model == null) continue;
+
+                StringBuilder row = new StringBuilder(String.format("%-40s", model.getName()));
+                for(TestSuite suite : suites) {
+                    row.append(format(suite.run(model)));
+                }
+                rows.add(row.toString());
+                log.info("Finished model [{}] ({}/{})", model.getName(), i + 1, modelNames.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted while comparing models");
+        } finally {
+            loader.shutdownNow();
+        }
+
+        StringBuilder header = new StringBuilder(String.format("%-40s", "model"));
+        StringBuilder subHeader = new StringBuilder(String.format("%-40s", ""));
+        for(TestSuite suite : suites) {
+            header.append(String.format("| %-38s", suite.getName() + " (" + suite.size() + ")"));
+            subHeader.append(String.format("| %8s %8s %8s %10s ", "answered", "top1%", "top10%", "median"));
+        }
+        out.println(header);
+        out.println(subHeader);
+        rows.forEach(out::println);
+        out.flush();
+        log.info("Finished comparing models in {}", Timer.checkOut(token));
+    }
+
+    private static String format(TestSuite.SuiteResults results) {
+        int answered = results.getAnswered();
+        if(answered == 0) return String.format("| %8d %8s %8s %10s ", 0, "-", "-", "-");
+        return String.format("| %8d %8.2f %8.2f %10s ", answered,
+                results.getTop1() * 100.0 / answered, results.getTop10() * 100.0 / answered,
+                MathOps.roundDoubleTo(results.getStatistics().getMedian(), 1));
+    }
+
+    // reads the model and touches all of its vectors so they are paged in before the model is used
+    private static Word2VecModel load(String modelName) throws IOException {
+        Word2VecModel model = Word2VecModel.readModelForInference(modelName);
+        VectorStore vectors = model.getVectors();
+        float[] block = new float[WARM_UP_BLOCK_ROWS * vectors.layerSize()];
+        for(int from = 0; from < vectors.size(); from += WARM_UP_BLOCK_ROWS) {
+            vectors.rows(from, Math.min(from + WARM_UP_BLOCK_ROWS, vectors.size()), block);
+        }
+        return model;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String outFile = args.length > 0 ? args[0] : Paths.get("data", "testing", "out", "comparison.txt").toString();
+        List<TestSuite> suites = new ArrayList<>();
+        if(args.length > 1) {
+            for(int i = 1; i < args.length; i++) {
+                File file = new File(args[i]);
+                suites.add(TestSuite.readAnalogySuite(file.getName().replaceFirst("\\.txt$", ""), file));
+            }
+        } else {
+            for(String name : new String[]{"antonyms", "capitals", "gender"}) {
+                suites.add(TestSuite.readAnalogySuite(name,
+                        Paths.get("data", "testing", "analogy_tests", name + ".txt").toFile()));
+            }
+        }
+        try(PrintWriter out = new PrintWriter(new File(outFile))) {
+            compare(new TestModels().getModelNames(), suites, out);
+        }
+    }
+}
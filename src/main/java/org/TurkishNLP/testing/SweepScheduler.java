@@ -0,0 +1,243 @@
+package org.TurkishNLP.testing;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.TurkishNLP.shared.MathOps;
+import org.TurkishNLP.shared.Timer;
+import org.TurkishNLP.word2vec.Word2VecModel;
+import org.TurkishNLP.word2vec.Word2VecParams;
+import org.TurkishNLP.word2vec.corpus.EncodedCorpus;
+import org.TurkishNLP.word2vec.training.TrainingMonitor;
+import org.bytedeco.javacpp.Pointer;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trains a sweep of Word2VecParams concurrently instead of one after another. Training doesn't scale
+ * linearly with threads, so several smaller jobs use the machine better than one job with all cores.
+ *
+ * The thread budget is split evenly between the jobs that run at once and a job only starts when its
+ * estimated weight memory fits in what is left of the memory budget. All jobs train on one shared
+ * EncodedCorpus and jobs with the same min word frequency share one vocabulary built from its counts.
+ * Each model is evaluated on the test suites and saved as soon as it finishes, results are written
+ * to a CSV file one line per model. Training progress of each job is reported by a TrainingMonitor.
+ *
+ * Usage: SweepScheduler corpus [threads] [memoryGB] [concurrentJobs] (params are the ones in TestModels).
+ * The memory budget defaults to the off-heap limit of ND4J, set with -Dorg.bytedeco.javacpp.maxbytes
+ */
+@Slf4j
+public class SweepScheduler {
+    // entries of the unigram table InMemoryLookupTable.resetWeights builds for negative sampling
+    private static final int NEGATIVE_TABLE_SIZE = 100000;
+
+    private final int threads;
+    private final long memoryBudget;
+    private final int maxConcurrent;
+    private long memoryInUse = 0;
+    private Path monitorDirectory;
+
+    /**
+     * @param threads training threads shared by all jobs
+     * @param memoryBudget bytes available for the weights of the models being trained, which ND4J keeps off-heap
+     * @param maxConcurrent max number of jobs to run at once
+     */
+    public SweepScheduler(int threads, long memoryBudget, int maxConcurrent) {
+        this.threads = Math.max(1, threads);
+        this.memoryBudget = memoryBudget;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+    }
+
+    /**
+     * @param monitorDirectory where to write the TrainingMonitor CSV of each model, null to only log progress
+     */
+    public SweepScheduler setMonitorDirectory(Path monitorDirectory) {
+        this.monitorDirectory = monitorDirectory;
+        return this;
+    }
+
+    /**
+     * Trains, evaluates and saves a model for every params. Each model is trained with a copy of its
+     * params whose workers are set to its share of the thread budget, the given params are not changed
+     */
+    public void run(@NonNull Collection<Word2VecParams> params, @NonNull EncodedCorpus corpus,
+                    @NonNull List<TestSuite> suites, @NonNull PrintWriter out) throws InterruptedException {
+        Timer.TimerToken token = Timer.newToken();
+        Map<Integer, AbstractCache<VocabWord>> vocabs = new HashMap<>();
+        Map<String, Long> wordCounts = corpus.wordCounts();
+        for(Word2VecParams p : params) {
+            vocabs.computeIfAbsent(p.getMinWordFrequency(), minFreq -> {
+                AbstractCache<VocabWord> vocab = Word2VecModel.vocabFromCounts(wordCounts, minFreq);
+                vocab.incrementTotalDocCount(corpus.numSentences());
+                log.info("Built shared vocabulary of [{}] words for min frequency [{}]", vocab.numWords(), minFreq);
+                return vocab;
+            });
+        }
+
+        int concurrent = Math.min(maxConcurrent, params.size());
+        int workers = Math.max(1, threads / Math.max(1, concurrent));
+        log.info("Sweeping [{}] configurations, [{}] at a time with [{}] workers each", params.size(), concurrent, workers);
+
+        // biggest jobs first so they don't end up running alone at the end
+        List<Word2VecParams> jobs = new ArrayList<>();
+        for(Word2VecParams p : params) jobs.add(new Word2VecParams(p).setWorkers(workers));
+        jobs.sort(Comparator.comparingLong((Word2VecParams p) ->
+                estimateBytes(p, vocabs.get(p.getMinWordFrequency()).numWords())).reversed());
+
+        out.println(header(suites));
+        out.flush();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, concurrent), r -> new Thread(r, "sweep-job"));
+        for(Word2VecParams p : jobs) {
+            pool.submit(() -> runJob(p, vocabs.get(p.getMinWordFrequency()), corpus, suites, out));
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        log.info("Finished sweep of [{}] configurations in {}", params.size(), Timer.checkOut(token));
+    }
+
+    private void runJob(Word2VecParams p, AbstractCache<VocabWord> vocab, EncodedCorpus corpus,
+                        List<TestSuite> suites, PrintWriter out) {
+        long bytes = estimateBytes(p, vocab.numWords());
+        if(bytes > memoryBudget) {
+            log.warn("Model [{}] needs about [{}] bytes which is over the budget, skipping", p.getName(), bytes);
+            return;
+        }
+        try {
+            acquire(bytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            log.info("Starting model [{}] with [{}] workers", p.getName(), p.getWorkers());
+            Timer.TimerToken t = Timer.newToken();
+            TrainingMonitor monitor = new TrainingMonitor(p.getName());
+            PrintWriter monitorCsv = null;
+            if(monitorDirectory != null) {
+                monitorCsv = new PrintWriter(monitorDirectory.resolve(p.getName() + "_training.csv").toFile());
+                monitor.setCsv(monitorCsv);
+            }
+            Word2VecModel model = Word2VecModel.initializeWithVocab(p, vocab, Collections.singletonList(monitor));
+            try {
+                // pipelined subsampling is picked by the model from its params
+                model.train(corpus);
+            } finally {
+                if(monitorCsv != null) monitorCsv.close();
+            }
+            Timer.TimerResults training = Timer.checkOut(t);
+            log.info("Trained model [{}] in {}", p.getName(), training);
+
+            StringBuilder row = new StringBuilder()
+                    .append(p.getName()).append(',')
+                    .append(p.getLearningAlgorithm()).append(',')
+                    .append(p.getLayerSize()).append(',')
+                    .append(p.getNumEpochs()).append(',')
+                    .append(p.getMinWordFrequency()).append(',')
+                    .append(p.getNegativeSampling().intValue()).append(',')
+                    .append(p.getWindowSize()).append(',')
+                    .append(p.getWorkers()).append(',')
+                    .append(training.asSeconds());
+            for(TestSuite suite : suites) {
+                TestSuite.SuiteResults results = suite.run(model);
+                int answered = results.getAnswered();
+                row.append(',').append(answered);
+                if(answered == 0) {
+                    row.append(",,,");
+                } else {
+                    row.append(',').append(MathOps.roundDoubleTo(results.getTop1() * 100.0 / answered, 2))
+                            .append(',').append(MathOps.roundDoubleTo(results.getTop10() * 100.0 / answered, 2))
+                            .append(',').append(MathOps.roundDoubleTo(results.getStatistics().getMedian(), 1));
+                }
+            }
+            synchronized(out) {
+                out.println(row);
+                out.flush();
+            }
+            Word2VecModel.saveModel(model, true);
+        } catch (IOException | RuntimeException e) {
+            log.error("Model [{}] failed", p.getName(), e);
+        } finally {
+            release(bytes);
+        }
+    }
+
+    private synchronized void acquire(long bytes) throws InterruptedException {
+        // a job always starts if nothing else is running, so an estimate that is too high can't stall the sweep
+        while(memoryInUse > 0 && memoryInUse + bytes > memoryBudget) {
+            wait();
+        }
+        memoryInUse += bytes;
+    }
+
+    private synchronized void release(long bytes) {
+        memoryInUse -= bytes;
+        notifyAll();
+    }
+
+    /**
+     * Weights of a model: syn0, syn1 with hierarchic softmax, syn1Neg and the unigram table with negative
+     * sampling and the normalized copy of syn0 used to evaluate it
+     */
+    public static long estimateBytes(Word2VecParams p, int numWords) {
+        int matrices = 2;
+        if(p.getHierarchicSoftmax()) matrices++;
+        long tables = 0;
+        if(p.getNegativeSampling() > 0) {
+            matrices++;
+            tables += (long) NEGATIVE_TABLE_SIZE * Float.BYTES;
+        }
+        return (long) matrices * numWords * p.getLayerSize() * Float.BYTES + tables;
+    }
+
+    private static String header(List<TestSuite> suites) {
+        StringBuilder header = new StringBuilder("model,algorithm,layerSize,epochs,minWordFrequency,negative,window,workers,trainSeconds");
+        for(TestSuite suite : suites) {
+            String name = suite.getName();
+            header.append(',').append(name).append("_answered")
+                    .append(',').append(name).append("_top1")
+                    .append(',').append(name).append("_top10")
+                    .append(',').append(name).append("_median");
+        }
+        return header.toString();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String corpusPath = args.length > 0 ? args[0] :
+                Paths.get("data", "processed_files", "normalized.lemma").toString();
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        // the weights live off-heap, the heap size says nothing about how many models fit
+        long memory = args.length > 2 ? (long) (Double.parseDouble(args[2]) * (1L << 30)) : Pointer.maxBytes();
+        log.info("Memory budget for model weights is [{}] bytes", memory);
+        int concurrent = args.length > 3 ? Integer.parseInt(args[3]) : Math.max(1, threads / 8);
+
+        // the text corpus is encoded once and every job trains on the mapped ids
+        Path corpusFile = Paths.get(corpusPath);
+        if(!corpusPath.endsWith(EncodedCorpus.CORPUS_EXTENSION)) {
+            Path encoded = Paths.get(corpusPath.replaceFirst("\\.[^.\\\\/]*$", "") + EncodedCorpus.CORPUS_EXTENSION);
+            if(!Files.exists(encoded)) EncodedCorpus.encode(corpusFile, encoded);
+            corpusFile = encoded;
+        }
+        EncodedCorpus corpus = EncodedCorpus.read(corpusFile.toFile());
+
+        List<TestSuite> suites = new ArrayList<>();
+        for(String name : new String[]{"antonyms", "capitals", "gender"}) {
+            suites.add(TestSuite.readAnalogySuite(name,
+                    Paths.get("data", "testing", "analogy_tests", name + ".txt").toFile()));
+        }
+        try(PrintWriter out = new PrintWriter(new File(Paths.get("data", "testing", "out", "sweep.csv").toString()))) {
+            new SweepScheduler(threads, memory, concurrent)
+                    .setMonitorDirectory(Paths.get("data", "testing", "out"))
+                    .run(new TestModels().tests, corpus, suites, out);
+        }
+    }
+}
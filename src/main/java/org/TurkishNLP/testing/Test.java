@@ -1,9 +1,12 @@
 package org.TurkishNLP.testing;
 
 import org.TurkishNLP.testing.impl.AnalogyTest;
+import org.TurkishNLP.testing.impl.ClosestWordsTest;
 import org.TurkishNLP.testing.impl.SimilarityTest;
 import org.TurkishNLP.word2vec.Word2VecModel;
 
+import java.io.FileNotFoundException;
+
 public interface Test {
      TestResults run(Word2VecModel m);
 
@@ -18,7 +21,8 @@ public interface Test {
       * @param s the string to parse
       * @return the appropriate test object
       * @pre s must start with an appropriate tag followed by the # character and contain
-      *     the arguments for the test in space separated format
+      *     the arguments for the test in space separated format: "A#a b c d", "S#word n" or "S#pairsFile"
+      * @return the test or null if the line can't be parsed or the pairs file doesn't exist
       */
      static Test parseTest(String s) {
           String[] arr  = s.split("#");
@@ -28,10 +32,19 @@ public interface Test {
 
           switch (arr[0]) {
                case SIMILARITY_TEST_TAG:
-                   if(args.length != 2) return null;
+                   // "S#word n", the old form, lists the n closest words
+                   if(args.length == 2) {
+                       try {
+                           return new ClosestWordsTest(args[0], Integer.parseInt(args[1]));
+                       } catch(NumberFormatException e) {
+                           return null;
+                       }
+                   }
+                   // "S#file", a file of word pairs, see SimilarityTest
+                   if(args.length != 1) return null;
                    try {
-                       return new SimilarityTest(args[0], Integer.parseInt(args[1]));
-                   } catch(NumberFormatException e) {
+                       return SimilarityTest.readSimilarityTest(args[0]);
+                   } catch(FileNotFoundException e) {
                        return null;
                    }
                case ANALOGY_TEST_TAG:
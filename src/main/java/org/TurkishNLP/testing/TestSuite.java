@@ -0,0 +1,179 @@
+package org.TurkishNLP.testing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.TurkishNLP.shared.StreamingStatistics;
+import org.TurkishNLP.word2vec.Word2VecModel;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.stream.IntStream;
+
+/**
+ * A file of analogy tests parsed once so it can be run against many models. Every distinct word is kept
+ * once and each test is stored as the ids (a, b, c, d) of its words in a flat array. When the suite runs on
+ * a model the words are looked up in its vocabulary once and the tests are queried by row
+ */
+@Slf4j
+public class TestSuite {
+    private static final int BATCH_SIZE = 1024;
+
+    private final String name;
+    private final List<String> words;
+    // 4 word ids per test
+    private final int[] analogies;
+
+    private TestSuite(String name, List<String> words, int[] analogies) {
+        this.name = name;
+        this.words = words;
+        this.analogies = analogies;
+    }
+
+    /**
+     * Reads a file in the format of AnalogyTest.readAnalogyTests, one "a b c d" test per line
+     */
+    public static TestSuite readAnalogySuite(String name, File file) throws FileNotFoundException {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> words = new ArrayList<>();
+        int[] analogies = new int[1024];
+        int count = 0;
+        try(Scanner sc = new Scanner(file, StandardCharsets.UTF_8.name())) {
+            while(sc.hasNextLine()) {
+                String[] args = sc.nextLine().trim().split(" ");
+                if(args.length != 4) continue;
+                if(4 * count + 4 > analogies.length) analogies = Arrays.copyOf(analogies, analogies.length * 2);
+                for(int p = 0; p < 4; p++) {
+                    Integer id = ids.get(args[p]);
+                    if(id == null) {
+                        id = words.size();
+                        ids.put(args[p], id);
+                        words.add(args[p]);
+                    }
+                    analogies[4 * count + p] = id;
+                }
+                count++;
+            }
+        }
+        log.info("Read [{}] analogy tests with [{}] distinct words into suite [{}]", count, words.size(), name);
+        return new TestSuite(name, words, Arrays.copyOf(analogies, 4 * count));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int size() {
+        return analogies.length / 4;
+    }
+
+    public int distinctWords() {
+        return words.size();
+    }
+
+    /**
+     * Runs every test on the model in batches
+     *
+     * @return the rank of d for each test, -1 where one of the words is not in the model's vocabulary
+     */
+    public int[] ranks(Word2VecModel model) {
+        int[] rows = model.rowsOf(words);
+        int[] ranks = new int[size()];
+        IntStream.range(0, batches()).parallel().forEach(batch -> {
+            int[] batchRanks = batchRanks(model, rows, batch);
+            System.arraycopy(batchRanks, 0, ranks, batch * BATCH_SIZE, batchRanks.length);
+        });
+        return ranks;
+    }
+
+    /**
+     * Runs the suite on the model and summarizes the ranks, batches are summarized in parallel and merged
+     */
+    public SuiteResults run(Word2VecModel model) {
+        int[] rows = model.rowsOf(words);
+        return IntStream.range(0, batches()).parallel()
+                .mapToObj(batch -> {
+                    SuiteResults partial = new SuiteResults(this);
+                    for(int r : batchRanks(model, rows, batch)) partial.add(r);
+                    return partial;
+                })
+                .reduce(SuiteResults::merge)
+                .orElseGet(() -> new SuiteResults(this));
+    }
+
+    private int batches() {
+        return (size() + BATCH_SIZE - 1) / BATCH_SIZE;
+    }
+
+    /**
+     * @param rows row of each word of the suite in the model's vectors, see Word2VecModel.rowsOf
+     */
+    private int[] batchRanks(Word2VecModel model, int[] rows, int batch) {
+        int from = batch * BATCH_SIZE, to = Math.min(size(), from + BATCH_SIZE);
+        int[][] positives = new int[to - from][];
+        int[][] negatives = new int[to - from][];
+        int[] targets = new int[to - from];
+        for(int t = from; t < to; t++) {
+            positives[t - from] = new int[]{row(rows, t, 0), row(rows, t, 2)};
+            negatives[t - from] = new int[]{row(rows, t, 1)};
+            targets[t - from] = row(rows, t, 3);
+        }
+        int[] batchRanks = new int[to - from];
+        model.getClosestBatch(positives, negatives, 0, targets, batchRanks);
+        return batchRanks;
+    }
+
+    private int row(int[] rows, int test, int position) {
+        return rows[analogies[4 * test + position]];
+    }
+
+    public static class SuiteResults {
+        private final TestSuite suite;
+        private final StreamingStatistics stats = new StreamingStatistics();
+        private int top10 = 0;
+
+        private SuiteResults(TestSuite suite) {
+            this.suite = suite;
+        }
+
+        private void add(int rank) {
+            if(rank < 0) return;
+            stats.add(rank);
+            if(rank <= 10) top10++;
+        }
+
+        private SuiteResults merge(SuiteResults other) {
+            stats.merge(other.stats);
+            top10 += other.top10;
+            return this;
+        }
+
+        public TestSuite getSuite() {
+            return suite;
+        }
+
+        /**
+         * @return statistics of the ranks of the answered tests
+         */
+        public StreamingStatistics getStatistics() {
+            return stats;
+        }
+
+        public int getAnswered() {
+            return stats.getSize();
+        }
+
+        public int getTop1() {
+            return stats.getOnesCount();
+        }
+
+        public int getTop10() {
+            return top10;
+        }
+    }
+}
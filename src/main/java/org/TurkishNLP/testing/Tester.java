@@ -2,23 +2,37 @@ package org.TurkishNLP.testing;
 
 import lombok.extern.slf4j.Slf4j;
 import org.TurkishNLP.shared.MathOps;
-import org.TurkishNLP.shared.Statistics;
+import org.TurkishNLP.shared.StreamingStatistics;
 import org.TurkishNLP.shared.Timer;
+import org.TurkishNLP.testing.impl.AnalogyTest;
+import org.TurkishNLP.testing.impl.SimilarityTest;
 import org.TurkishNLP.word2vec.Word2VecModel;
 import org.TurkishNLP.word2vec.Word2VecParams;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 @Slf4j
 public class Tester {
+    // analogy tests answered per query on the model
+    private static final int ANALOGY_BATCH_SIZE = 1024;
+
     TestModels cases;
+    private int threads = Runtime.getRuntime().availableProcessors();
 
     public Tester(){
         cases = new TestModels();
@@ -32,13 +46,13 @@ public class Tester {
     // Reads tests from file
     public static List<Test> readTests(File target) throws FileNotFoundException {
         List<Test> tests = new ArrayList<>();
-        Scanner sc = new Scanner(target);
+        Scanner sc = new Scanner(target, StandardCharsets.UTF_8.name());
         String line;
         while(sc.hasNextLine()) {
             line = sc.nextLine();
             if(line.startsWith("%") || line.isEmpty()) continue;
             Test t = Test.parseTest(line);
-            if(t == null) log.error("Can't parse test from line " + line);
+            if(t == null) log.error("Can't parse test from line [{}], expected A#a b c d, S#word n or S#pairsFile", line);
             else tests.add(t);
         }
         return tests;
@@ -53,9 +67,9 @@ public class Tester {
         for(Word2VecParams testParams : cases.tests) {
             Word2VecModel model = Word2VecModel.initializeWithParams(testParams);
             log.info("Starting training model: {}", model);
-            Word2VecModel.trainModel(model.getWord2Vec(), testParams.getCorpusPath());
+            model.train(new File(testParams.getCorpusPath()));
             log.info("Model: {} training complete. Starting saving model...", model);
-            Word2VecModel.saveModel(model, false);
+            Word2VecModel.saveModel(model, true);
             log.info("Saving completed");
         }
     }
@@ -63,48 +77,191 @@ public class Tester {
     public void runTestsOnModel(Word2VecModel model, Collection<Test> tests, PrintWriter out) {
         log.info("Running [{}] tests on model [{}]", tests.size(), model.getName());
         Timer.TimerToken token = Timer.newToken();
-        List<TestResults> results = new ArrayList<>();
-
-        int totalTests = tests.size();
-        int testsRan = 0;
-        for(Test t : tests) {
-            results.add(t.run(model));
-            testsRan++;
-            if(totalTests < 40) continue;
-            if(testsRan % (totalTests / 20) == 0 || testsRan == totalTests) {
-                double percentage = Math.round(((testsRan * 100.0d) / totalTests)*100.0) / 100.0;
-                log.info("Ran [{}] tests so far: [{}%]", testsRan, percentage);
-            }
-        }
+        StreamingStatistics stats = new StreamingStatistics();
+        List<TestResults> results = runTests(model, tests, stats);
 
         out.println("**** Tests for model: " + model.getName() + " ****" + System.lineSeparator());
-
-        List<Double> scores = new ArrayList<>();
         for(TestResults r : results) {
             out.println(r.getMessage());
-            if(!r.getScore().equals(Double.NaN)) {
-                scores.add(r.getScore());
-            }
         }
 
-        if(scores.size() > 0) {
+        if(stats.getSize() > 0) {
             int decimals = 3;
-            Statistics stats = new Statistics(scores);
             out.println("****** SUMMARY ******");
             out.println(stats.getSize() +  " scores analyzed.");
-            double percentage = Math.round(((stats.getOnesCount() * 100.0d) / scores.size())*100.0) / 100.0;
+            double percentage = Math.round(((stats.getOnesCount() * 100.0d) / stats.getSize())*100.0) / 100.0;
             out.println("Perfect Answers = [" + stats.getOnesCount() + "(" + percentage + "%)]");
             out.println("Min= [" + MathOps.roundDoubleTo(stats.getMin(), decimals) + "]");
             out.println("Max= [" + MathOps.roundDoubleTo(stats.getMax(), decimals) + "]");
             out.println("Mean= [" + MathOps.roundDoubleTo(stats.getMean(), decimals) + "]");
             out.println("Mean of Logs= [" + MathOps.roundDoubleTo(stats.getLogMean(), decimals) + "]");
-            out.println("Median = [" + MathOps.roundDoubleTo(stats.getMedian(), decimals) + "]");
+            out.println("Median" + (stats.isExact() ? "" : " (approx.)") + " = [" + MathOps.roundDoubleTo(stats.getMedian(), decimals) + "]");
             out.println("Standard Deviation= [" + MathOps.roundDoubleTo(stats.getStandardDeviation(), decimals) + "]");
         }
+
+        // correlations are not ranks, they are summarized on their own
+        StreamingStatistics correlations = new StreamingStatistics();
+        Iterator<Test> testIterator = tests.iterator();
+        for(TestResults r : results) {
+            if(testIterator.next() instanceof SimilarityTest && !r.getScore().isNaN()) correlations.add(r.getScore());
+        }
+        if(correlations.getSize() > 0) {
+            int decimals = 3;
+            out.println("****** SIMILARITY ******");
+            out.println(correlations.getSize() + " correlations analyzed.");
+            out.println("Min Spearman= [" + MathOps.roundDoubleTo(correlations.getMin(), decimals) + "]");
+            out.println("Max Spearman= [" + MathOps.roundDoubleTo(correlations.getMax(), decimals) + "]");
+            out.println("Mean Spearman= [" + MathOps.roundDoubleTo(correlations.getMean(), decimals) + "]");
+        }
         out.flush();
         log.info("Finished running tests in {}", Timer.checkOut(token));
     }
 
+    /**
+     * Sets how many threads runTestsOnModel and compareModels use, 1 runs the tests sequentially.
+     * Results are the same either way
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Runs the tests and returns their results in the same order. Analogy tests are run in batches
+     * with a single query on the model per batch, other tests one by one. Tests and batches are
+     * spread over the tester's threads, each one writes only its own slots of the results
+     *
+     * @param stats if not null the scores of the tests are added to it, each task merges the statistics
+     *              of its own scores. Similarity tests score a correlation instead of a rank and are left out
+     */
+    private List<TestResults> runTests(Word2VecModel model, Collection<Test> tests, StreamingStatistics stats) {
+        List<Test> testList = new ArrayList<>(tests);
+        TestResults[] results = new TestResults[testList.size()];
+        List<Runnable> tasks = new ArrayList<>();
+        List<Integer> analogyIndexes = new ArrayList<>();
+
+        int totalTests = testList.size();
+        AtomicInteger testsRan = new AtomicInteger();
+        for(int i = 0; i < totalTests; i++) {
+            Test t = testList.get(i);
+            if(t instanceof AnalogyTest) {
+                analogyIndexes.add(i);
+                continue;
+            }
+            int index = i;
+            tasks.add(() -> {
+                results[index] = t.run(model);
+                if(!(t instanceof SimilarityTest)) addScores(stats, Collections.singletonList(results[index]));
+                logProgress(testsRan.incrementAndGet(), 1, totalTests);
+            });
+        }
+        // smaller batches when there are too few to keep every thread busy
+        int batchSize = Math.max(1, Math.min(ANALOGY_BATCH_SIZE, (analogyIndexes.size() + threads - 1) / threads));
+        for(int from = 0; from < analogyIndexes.size(); from += batchSize) {
+            List<Integer> batch = analogyIndexes.subList(from, Math.min(from + batchSize, analogyIndexes.size()));
+            tasks.add(() -> {
+                List<AnalogyTest> batchTests = batch.stream()
+                        .map(i -> (AnalogyTest) testList.get(i))
+                        .collect(Collectors.toList());
+                List<TestResults> batchResults = AnalogyTest.runBatch(model, batchTests);
+                for(int i = 0; i < batch.size(); i++) {
+                    results[batch.get(i)] = batchResults.get(i);
+                }
+                addScores(stats, batchResults);
+                logProgress(testsRan.addAndGet(batch.size()), batch.size(), totalTests);
+            });
+        }
+
+        if(threads == 1) {
+            tasks.forEach(Runnable::run);
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                pool.submit(() -> tasks.parallelStream().forEach(Runnable::run)).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while running tests on model " + model.getName(), e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Running tests on model " + model.getName() + " failed", e.getCause());
+            } finally {
+                pool.shutdown();
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private static void addScores(StreamingStatistics stats, List<TestResults> results) {
+        if(stats == null) return;
+        StreamingStatistics partial = new StreamingStatistics();
+        for(TestResults r : results) {
+            if(r != null && !r.getScore().isNaN()) partial.add(r.getScore());
+        }
+        synchronized(stats) {
+            stats.merge(partial);
+        }
+    }
+
+    // logs every time another 5% of the tests has been run
+    private static void logProgress(int testsRan, int justRan, int totalTests) {
+        if(totalTests < 40) return;
+        int step = totalTests / 20;
+        if((testsRan - justRan) / step != testsRan / step || testsRan == totalTests) {
+            double percentage = Math.round(((testsRan * 100.0d) / totalTests)*100.0) / 100.0;
+            log.info("Ran [{}] tests so far: [{}%]", testsRan, percentage);
+        }
+    }
+
+    /**
+     * Runs the same tests on a reference model and a candidate model (e.g. a quantized copy of it) and
+     * reports how much the candidate's scores deviate from the reference's
+     */
+    public void compareModels(Word2VecModel reference, Word2VecModel candidate, Collection<Test> tests, PrintWriter out) {
+        log.info("Comparing model [{}] against reference [{}] on [{}] tests",
+                candidate.getName(), reference.getName(), tests.size());
+        Timer.TimerToken token = Timer.newToken();
+        List<TestResults> referenceResults = runTests(reference, tests, null);
+        Timer.TimerResults referenceTime = Timer.checkOut(token);
+
+        token = Timer.newToken();
+        List<TestResults> candidateResults = runTests(candidate, tests, null);
+        Timer.TimerResults candidateTime = Timer.checkOut(token);
+
+        StreamingStatistics ref = new StreamingStatistics();
+        StreamingStatistics cand = new StreamingStatistics();
+        StreamingStatistics diff = new StreamingStatistics();
+        int same = 0;
+        for(int i = 0; i < referenceResults.size(); i++) {
+            Double r = referenceResults.get(i).getScore();
+            Double c = candidateResults.get(i).getScore();
+            if(r.isNaN() || c.isNaN()) continue;
+            ref.add(r);
+            cand.add(c);
+            diff.add(Math.abs(r - c));
+            if(r.equals(c)) same++;
+        }
+
+        int decimals = 3;
+        out.println("**** Comparison of model: " + candidate.getName() +
+                " against reference: " + reference.getName() + " ****" + System.lineSeparator());
+        out.println("Reference ran in " + referenceTime + ", candidate ran in " + candidateTime);
+        if(diff.getSize() > 0) {
+            double percentage = Math.round(((same * 100.0d) / diff.getSize())*100.0) / 100.0;
+            out.println(diff.getSize() + " scores compared.");
+            out.println("Identical Scores = [" + same + "(" + percentage + "%)]");
+            out.println("Perfect Answers = [" + ref.getOnesCount() + "] -> [" + cand.getOnesCount() + "]");
+            out.println("Mean= [" + MathOps.roundDoubleTo(ref.getMean(), decimals) + "] -> ["
+                    + MathOps.roundDoubleTo(cand.getMean(), decimals) + "]");
+            out.println("Median" + (ref.isExact() ? "" : " (approx.)") + " = [" + MathOps.roundDoubleTo(ref.getMedian(), decimals) + "] -> ["
+                    + MathOps.roundDoubleTo(cand.getMedian(), decimals) + "]");
+            out.println("Mean Absolute Difference= [" + MathOps.roundDoubleTo(diff.getMean(), decimals) + "]");
+            out.println("Max Absolute Difference= [" + MathOps.roundDoubleTo(diff.getMax(), decimals) + "]");
+        }
+        out.flush();
+    }
+
     // In memory implementation
     public void runTestsOnModels(Collection<Word2VecModel> models, Collection<Test> tests, PrintWriter out) {
         models.forEach(m -> runTestsOnModel(m, tests, out));
@@ -3,15 +3,27 @@ package org.TurkishNLP.testing.generator;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.TurkishNLP.preprocessing.impl.TurkishLemmatizer;
+import org.TurkishNLP.shared.Timer;
+import org.TurkishNLP.testing.impl.AnalogyTest;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * Class to easily create analogy tests from binary word relations
@@ -32,7 +44,7 @@ public class AnalogyGenerator {
     public List<StringRelation> readRelationsFromFile(File file) throws FileNotFoundException {
         List<StringRelation> relations = new ArrayList<>();
         int count = 0;
-        Scanner s = new Scanner(file);
+        Scanner s = new Scanner(file, StandardCharsets.UTF_8.name());
         String line;
         log.info("Reading relations from file [{}]", file);
         while(s.hasNextLine()) {
@@ -52,42 +64,83 @@ public class AnalogyGenerator {
      * Generates analogy tests from given list of String relations. Creates a an analogy for each pair of relations.
      * Analogy tests are in the form: (from1 - to1 + to2 = [from2]?)
      * If reverse is set to true all relations are reversed: (to1 - from1 + from2 = [to2]?)
+     * Builds every test line in memory, prefer streamTests or writeTests for large relation files
      * @param relations list of relations
      * @param reverse should relations be reversed
      * @return analogy tests ready to be parsed by its parser
      */
     public String generateTests(@NonNull List<StringRelation> relations, boolean reverse) {
-        int totalRelations = 0;
         log.info("Genarating analogy tests from [{}] relations", relations.size());
-        relations = relations.stream().filter(r -> !(r == null)).collect(Collectors.toList());
         StringBuilder bld = new StringBuilder();
-        for(int i = 0; i < relations.size(); i++) {
-            StringRelation rel = relations.get(i);
-            for(int j = 0; j < relations.size(); j++) {
-                if(i == j) continue;
-
-                StringRelation otherRel = relations.get(j);
-
-                if(rel.getFrom().equals(otherRel.getFrom()) || rel.getTo().equals(otherRel.getTo())) continue;
+        long[] totalRelations = {0};
+        streamTests(relations, reverse).forEach(t -> {
+            bld.append(t).append(System.lineSeparator());
+            totalRelations[0]++;
+        });
+        log.info("Done. Generated [{}] tests", totalRelations[0]);
+        return bld.toString();
+    }
 
-                String a, b, c, d;
-                a = rel.getFrom();
-                b = rel.getTo();
-                c = otherRel.getTo();
-                d = otherRel.getFrom();
+    /**
+     * Same tests as generateTests but generated lazily one pair of relations at a time, so the
+     * tests can be run or written out without ever holding all of them in memory
+     */
+    public Stream<AnalogyTest> streamTests(@NonNull List<StringRelation> relations, boolean reverse) {
+        List<StringRelation> rels = relations.stream().filter(Objects::nonNull).collect(Collectors.toList());
+        return IntStream.range(0, rels.size()).boxed().flatMap(i -> IntStream.range(0, rels.size())
+                .filter(j -> i != j
+                        && !rels.get(i).getFrom().equals(rels.get(j).getFrom())
+                        && !rels.get(i).getTo().equals(rels.get(j).getTo()))
+                .mapToObj(j -> {
+                    String a = rels.get(i).getFrom(), b = rels.get(i).getTo();
+                    String c = rels.get(j).getTo(), d = rels.get(j).getFrom();
+                    return reverse ? new AnalogyTest(b, a, d, c) : new AnalogyTest(a, b, c, d);
+                }));
+    }
 
-                if(reverse) {
-                    bld.append(b + " " + a + " " + d + " " + c);
-                } else {
-                    bld.append(a + " " + b + " " + c + " " + d);
-                }
+    /**
+     * Writes the tests line by line
+     *
+     * @return number of tests written
+     */
+    public long writeTests(@NonNull List<StringRelation> relations, boolean reverse, PrintWriter out) {
+        log.info("Writing analogy tests from [{}] relations", relations.size());
+        long[] count = {0};
+        streamTests(relations, reverse).forEach(t -> {
+            out.println(t);
+            count[0]++;
+        });
+        out.flush();
+        log.info("Done. Wrote [{}] tests", count[0]);
+        return count[0];
+    }
 
-                bld.append(System.lineSeparator());
-                totalRelations ++;
+    /**
+     * Picks sampleSize of the tests uniformly at random with reservoir sampling, memory use depends on
+     * the sample size only. Tests are returned in the order they are generated in
+     */
+    public List<AnalogyTest> sampleTests(@NonNull List<StringRelation> relations, boolean reverse,
+                                         int sampleSize, long seed) {
+        Random random = new Random(seed);
+        AnalogyTest[] reservoir = new AnalogyTest[sampleSize];
+        long[] positions = new long[sampleSize];
+        long seen = 0;
+        Iterator<AnalogyTest> tests = streamTests(relations, reverse).iterator();
+        while(tests.hasNext()) {
+            AnalogyTest t = tests.next();
+            long slot = seen < sampleSize ? seen : (long) (random.nextDouble() * (seen + 1));
+            if(slot < sampleSize) {
+                reservoir[(int) slot] = t;
+                positions[(int) slot] = seen;
             }
+            seen++;
         }
-        log.info("Done. Generated [{}] tests", totalRelations);
-        return bld.toString();
+        int kept = (int) Math.min(seen, sampleSize);
+        log.info("Sampled [{}] of [{}] tests", kept, seen);
+        return IntStream.range(0, kept).boxed()
+                .sorted(Comparator.comparingLong(i -> positions[i]))
+                .map(i -> reservoir[i])
+                .collect(Collectors.toList());
     }
 
     public String lemmatizeTests(String tests) {
@@ -101,6 +154,52 @@ public class AnalogyGenerator {
         return b.toString();
     }
 
+    /**
+     * Lemmatizes every distinct word of the relations once instead of every test line they appear in,
+     * spread over threads that share one lemmatizer. Loading the Zemberek morphology is slow and memory
+     * hungry, analysis with it is thread safe so it is only loaded once. Tests generated from the returned
+     * relations are the lemmatized tests. Relations with a word that doesn't lemmatize to exactly one
+     * word are dropped since they can't make valid tests
+     */
+    public List<StringRelation> lemmatizeRelations(@NonNull List<StringRelation> relations, int threads) {
+        Timer.TimerToken t = Timer.newToken();
+        List<String> words = relations.stream()
+                .filter(Objects::nonNull)
+                .flatMap(r -> Stream.of(r.getFrom(), r.getTo()))
+                .distinct()
+                .collect(Collectors.toList());
+        log.info("Lemmatizing [{}] distinct words of [{}] relations on [{}] threads", words.size(), relations.size(), threads);
+
+        TurkishLemmatizer lemmatizer = new TurkishLemmatizer();
+        Map<String, String> lemmas;
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            lemmas = pool.submit(() -> words.parallelStream()
+                    .collect(Collectors.toConcurrentMap(w -> w, w -> lemmatizer.processLine(w).trim())))
+                    .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while lemmatizing relations", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Lemmatizing relations failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        List<StringRelation> lemmatized = new ArrayList<>();
+        for(StringRelation r : relations) {
+            if(r == null) continue;
+            String from = lemmas.get(r.getFrom()), to = lemmas.get(r.getTo());
+            if(from.isEmpty() || to.isEmpty() || from.contains(" ") || to.contains(" ")) {
+                log.warn("Dropping relation [{}], its words don't lemmatize to single words", r);
+                continue;
+            }
+            lemmatized.add(new StringRelation(from, to));
+        }
+        log.info("Lemmatized relations in {}", Timer.checkOut(t));
+        return lemmatized;
+    }
+
     private class StringRelation {
         private String from;
         private String to;
@@ -124,7 +223,6 @@ public class AnalogyGenerator {
     }
 
     public static void main(String[] args) {
-        TurkishLemmatizer t = new TurkishLemmatizer();
         AnalogyGenerator g = new AnalogyGenerator();
 
         // lemmatized?
@@ -139,10 +237,8 @@ public class AnalogyGenerator {
                     (lemma ? "_lemma.txt" : ".txt"));
 
 
-            String[] lines = g.generateTests(relations, false).split(System.lineSeparator());
-            Arrays.stream(lines).forEach(l -> {
-                pw.println((lemma ? t.processLine(l) : l));
-            });
+            if(lemma) relations = g.lemmatizeRelations(relations, Runtime.getRuntime().availableProcessors());
+            g.writeTests(relations, false, pw);
             pw.close();
         } catch (FileNotFoundException e) {
             System.out.println("can't find file");
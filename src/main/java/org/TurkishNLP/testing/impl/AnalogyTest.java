@@ -8,6 +8,7 @@ import org.TurkishNLP.word2vec.model_utils.BetterModelUtils;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -18,8 +19,8 @@ import java.util.stream.Collectors;
  * Ex. Paris is to France as Rome is to Italy
  */
 public class AnalogyTest implements Test {
-    private final int DECIMALS_TO_SHOW = 3;
-    private final int TOP_WORDS_TO_SHOW = 5;
+    private static final int DECIMALS_TO_SHOW = 3;
+    private static final int TOP_WORDS_TO_SHOW = 5;
     private String a,b,c,d;
 
     /**
@@ -36,28 +37,55 @@ public class AnalogyTest implements Test {
         this.d = d;
     }
 
+    /**
+     * Runs the test as a batch of one, the closest words and the rank of d come from a single pass over
+     * the vocabulary
+     */
     public TestResults run(Word2VecModel model) {
-        TestResults res = new TestResults();
-        int vocabCount = model.getVocabCount();
-        // if getting closest failed one of the words is not in vocab
-        List<BetterModelUtils.ScoredLabel> resList = model.getClosest(Arrays.asList(a, c), Arrays.asList(b), vocabCount);
-        if(resList == null) {
-            res.setMessage("One or more input words not in vocab from: " +
-                    "[" + a +"] [" + b + "] [" + c + "] [" + d + "]. Check logs");
-            return res;
+        return runBatch(model, Collections.singletonList(this)).get(0);
+    }
+
+    /**
+     * Runs many analogy tests with a single batched query on the model, which is much faster than
+     * running them one by one. Results are in the same order as the tests
+     */
+    public static List<TestResults> runBatch(Word2VecModel model, List<AnalogyTest> tests) {
+        List<List<String>> positives = new ArrayList<>(tests.size());
+        List<List<String>> negatives = new ArrayList<>(tests.size());
+        List<String> targets = new ArrayList<>(tests.size());
+        for(AnalogyTest t : tests) {
+            positives.add(Arrays.asList(t.a, t.c));
+            negatives.add(Arrays.asList(t.b));
+            targets.add(t.d);
         }
-        StringBuilder builder = new StringBuilder();
-        int index = -1;
-        for(int i = 0; i < resList.size(); i++) {
-            if(resList.get(i).getLabel().equals(d)) index = i + 1;
+        int[] ranks = new int[tests.size()];
+        List<List<BetterModelUtils.ScoredLabel>> closest =
+                model.getClosestBatch(positives, negatives, TOP_WORDS_TO_SHOW, targets, ranks);
+
+        List<TestResults> results = new ArrayList<>(tests.size());
+        for(int i = 0; i < tests.size(); i++) {
+            AnalogyTest t = tests.get(i);
+            if(closest.get(i) == null) {
+                results.add(new TestResults().setMessage("One or more input words not in vocab from: " +
+                        "[" + t.a +"] [" + t.b + "] [" + t.c + "] [" + t.d + "]. Check logs"));
+            } else {
+                results.add(t.results(closest.get(i), ranks[i]));
+            }
         }
+        return results;
+    }
+
+    // formats the rank of d and the closest words to a - b + c, a rank of -1 means d wasn't found
+    private TestResults results(List<BetterModelUtils.ScoredLabel> closest, int index) {
+        TestResults res = new TestResults();
         if(index == -1) {
             res.setMessage("[" + d + "] is not in vocab");
             return res;
         }
+        StringBuilder builder = new StringBuilder();
         builder.append("[" + a + "] - [" + b + "] + [" + c + "] = [" + d + "]? ----------> [" + index + "] <---------- ");
-        for(int i = 0; i < TOP_WORDS_TO_SHOW; i++) {
-            BetterModelUtils.ScoredLabel label = resList.get(i);
+        for(int i = 0; i < Math.min(TOP_WORDS_TO_SHOW, closest.size()); i++) {
+            BetterModelUtils.ScoredLabel label = closest.get(i);
             builder.append("[" + (i+1) + ": " + label.getLabel() + " (" +
                     MathOps.roundDoubleTo(label.getScore(), DECIMALS_TO_SHOW) + ")] ");
         }
@@ -67,13 +95,21 @@ public class AnalogyTest implements Test {
         return res;
     }
 
+    /**
+     * @return the test in the format read by readAnalogyTests
+     */
+    @Override
+    public String toString() {
+        return a + " " + b + " " + c + " " + d;
+    }
+
     public static List<Test> readAnalogyTests(String filePath) throws FileNotFoundException {
         return readAnalogyTests(new File(filePath));
     }
 
     public static List<Test> readAnalogyTests(File file) throws FileNotFoundException {
         List<Test> tests = new ArrayList<>();
-        Scanner sc = new Scanner(file);
+        Scanner sc = new Scanner(file, StandardCharsets.UTF_8.name());
         String line;
         while(sc.hasNextLine()) {
             line = sc.nextLine();
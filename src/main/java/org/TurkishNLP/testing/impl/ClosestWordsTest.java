@@ -0,0 +1,35 @@
+package org.TurkishNLP.testing.impl;
+
+import org.TurkishNLP.shared.MathOps;
+import org.TurkishNLP.testing.Test;
+import org.TurkishNLP.testing.TestResults;
+import org.TurkishNLP.word2vec.Word2VecModel;
+import org.TurkishNLP.word2vec.model_utils.BetterModelUtils;
+
+import java.util.List;
+
+/**
+ * Simple test that returns the n closest words and their similarities to given word in the model.
+ * Read from the old "S#word n" lines of hand-written test files, it has no score
+ */
+public class ClosestWordsTest implements Test {
+    private static final int DECIMALS_TO_SHOW = 3;
+
+    private final String word;
+    private final int n;
+
+    public ClosestWordsTest(String word, int n) {
+        this.word = word;
+        this.n = n;
+    }
+
+    public TestResults run(Word2VecModel m) {
+        List<BetterModelUtils.ScoredLabel> closest = m.getClosest(word, n);
+        if(closest == null) return new TestResults().setMessage("[" + word + "] is not in vocab" + System.lineSeparator());
+        StringBuilder b = new StringBuilder("Closest words to [" + word + "]: ");
+        for(BetterModelUtils.ScoredLabel label : closest) {
+            b.append("[" + label.getLabel() + " (" + MathOps.roundDoubleTo(label.getScore(), DECIMALS_TO_SHOW) + ")] ");
+        }
+        return new TestResults().setMessage(b.append(System.lineSeparator()).toString());
+    }
+}
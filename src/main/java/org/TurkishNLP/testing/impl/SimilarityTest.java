@@ -1,36 +1,99 @@
 package org.TurkishNLP.testing.impl;
 
+import org.TurkishNLP.shared.MathOps;
 import org.TurkishNLP.testing.Test;
 import org.TurkishNLP.testing.TestResults;
 import org.TurkishNLP.word2vec.Word2VecModel;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
 
-/*
- * Simple test that returns the n closest words and their similarities to given word in the model
+/**
+ * Word similarity benchmark (WordSim353 / SimLex-999 style). Each line of a test file holds two words
+ * and a human similarity judgement:
+ *
+ * kedi köpek 6.5
+ *
+ * The model's cosine similarities of all pairs are computed in one batch and the score of the test is
+ * the Spearman correlation between them and the human judgements, over the pairs in the vocabulary
  */
 public class SimilarityTest implements Test {
-    String word;
-    int n;
+    private static final int DECIMALS_TO_SHOW = 3;
 
-    String res;
+    private final String name;
+    private final List<String> first, second;
+    private final double[] humanScores;
 
-    public SimilarityTest(String word, int n) {
-        this.word = word;
-        this.n = n;
+    public SimilarityTest(String name, List<String> first, List<String> second, double[] humanScores) {
+        if(first.size() != second.size() || first.size() != humanScores.length) {
+            throw new IllegalArgumentException("Every word pair needs a score");
+        }
+        this.name = name;
+        this.first = first;
+        this.second = second;
+        this.humanScores = humanScores;
     }
 
-    public TestResults run(Word2VecModel m) {
-//        Map<String, Double> closest = new HashMap<>();
-//        m.getClosest(word, n)
-//                .forEach(otherWord -> closest.put(otherWord, m.getSimilarity(word, otherWord)));
-//        StringBuilder b = new StringBuilder();
-//        b.append("Closest words to " + word + ": ");
-//        closest.forEach((otherWord,sim) -> b.append(otherWord + ": " + sim + ", ")
-//        );
-//        res = b.toString();
-//        return new TestResults().setMessage(res);
-        return null;
+    public TestResults run(Word2VecModel model) {
+        TestResults res = new TestResults();
+        double[] similarities = model.getSimilarities(first, second);
+
+        int covered = 0;
+        for(double s : similarities) {
+            if(!Double.isNaN(s)) covered++;
+        }
+        double[] human = new double[covered], predicted = new double[covered];
+        for(int i = 0, j = 0; i < similarities.length; i++) {
+            if(Double.isNaN(similarities[i])) continue;
+            human[j] = humanScores[i];
+            predicted[j++] = similarities[i];
+        }
+
+        if(covered < 2) {
+            res.setMessage("[" + name + "] Not enough word pairs in vocab: [" + covered + "/" + similarities.length + "]"
+                    + System.lineSeparator());
+            return res;
+        }
+        double spearman = MathOps.spearmanCorrelation(human, predicted);
+        res.setScore(spearman);
+        res.setMessage("[" + name + "] Spearman correlation = [" + MathOps.roundDoubleTo(spearman, DECIMALS_TO_SHOW) +
+                "] over [" + covered + "/" + similarities.length + "] pairs in vocab" + System.lineSeparator());
+        return res;
+    }
+
+    public int size() {
+        return humanScores.length;
+    }
+
+    public static SimilarityTest readSimilarityTest(String filePath) throws FileNotFoundException {
+        return readSimilarityTest(new File(filePath));
+    }
+
+    /**
+     * Reads word pairs and their scores, separated by spaces or tabs. Lines starting with % are skipped
+     */
+    public static SimilarityTest readSimilarityTest(File file) throws FileNotFoundException {
+        List<String> first = new ArrayList<>(), second = new ArrayList<>();
+        List<Double> scores = new ArrayList<>();
+        try(Scanner sc = new Scanner(file, StandardCharsets.UTF_8.name())) {
+            while(sc.hasNextLine()) {
+                String line = sc.nextLine().trim();
+                if(line.startsWith("%")) continue;
+                String[] args = line.split("\\s+");
+                if(args.length != 3) continue;
+                try {
+                    scores.add(Double.parseDouble(args[2]));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                first.add(args[0]);
+                second.add(args[1]);
+            }
+        }
+        return new SimilarityTest(file.getName(), first, second, scores.stream().mapToDouble(d -> d).toArray());
     }
 }
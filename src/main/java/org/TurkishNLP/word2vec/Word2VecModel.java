@@ -2,8 +2,23 @@ package org.TurkishNLP.word2vec;
 
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
+import org.TurkishNLP.dict.Dictionary;
+import org.TurkishNLP.shared.AtomicFileWriter;
 import org.TurkishNLP.shared.Timer;
+import org.TurkishNLP.word2vec.corpus.EncodedCorpus;
+import org.TurkishNLP.word2vec.corpus.EncodedSequenceIterator;
+import org.TurkishNLP.word2vec.corpus.ShardedLineIterator;
+import org.TurkishNLP.word2vec.corpus.SkippingSequenceIterator;
+import org.TurkishNLP.word2vec.corpus.SubsampledSequenceIterator;
+import org.TurkishNLP.word2vec.model_utils.ArrayVectors;
 import org.TurkishNLP.word2vec.model_utils.BetterModelUtils;
+import org.TurkishNLP.word2vec.model_utils.HnswIndex;
+import org.TurkishNLP.word2vec.model_utils.MappedVectors;
+import org.TurkishNLP.word2vec.model_utils.VectorStore;
+import org.TurkishNLP.word2vec.training.Checkpoint;
+import org.TurkishNLP.word2vec.training.CheckpointListener;
+import org.TurkishNLP.word2vec.training.HogwildTrainer;
+import org.TurkishNLP.word2vec.training.TrainingMonitor;
 import org.deeplearning4j.models.embeddings.WeightLookupTable;
 import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
 import org.deeplearning4j.models.embeddings.learning.ElementsLearningAlgorithm;
@@ -11,8 +26,11 @@ import org.deeplearning4j.models.embeddings.learning.impl.elements.CBOW;
 import org.deeplearning4j.models.embeddings.learning.impl.elements.SkipGram;
 import org.deeplearning4j.models.embeddings.loader.VectorsConfiguration;
 import org.deeplearning4j.models.embeddings.loader.WordVectorSerializer;
+import org.deeplearning4j.models.sequencevectors.interfaces.SequenceIterator;
+import org.deeplearning4j.models.sequencevectors.interfaces.VectorsListener;
 import org.deeplearning4j.models.sequencevectors.iterators.AbstractSequenceIterator;
 import org.deeplearning4j.models.sequencevectors.transformers.impl.SentenceTransformer;
+import org.deeplearning4j.models.word2vec.Huffman;
 import org.deeplearning4j.models.word2vec.VocabWord;
 import org.deeplearning4j.models.word2vec.Word2Vec;
 import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
@@ -22,28 +40,68 @@ import org.deeplearning4j.text.sentenceiterator.BasicLineIterator;
 import org.deeplearning4j.text.sentenceiterator.SentenceIterator;
 import org.deeplearning4j.text.tokenization.tokenizerfactory.DefaultTokenizerFactory;
 import org.deeplearning4j.text.tokenization.tokenizerfactory.TokenizerFactory;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * A wrapper that holds a Word2Vec and some extra info
  * Intended to ultimately be the class to use when doing
  * all w2v operations
+ *
+ * Models read with readModelForInference are read-only: they hold no Word2Vec, only the
+ * vocabulary and memory-mapped normalized vectors, and can only be queried
  */
 @Slf4j
 public class Word2VecModel {
+    private static final int SAVE_BUFFER_SIZE = 1 << 20;
+
+    // single saver thread so queued saves don't compete for the disk, times out when idle
+    private static final ThreadPoolExecutor SAVE_EXECUTOR = new ThreadPoolExecutor(1, 1,
+            10L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> new Thread(r, "Word2VecModel saver"));
+    static {
+        SAVE_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
     private String modelName;
     private Word2Vec w;
     private BetterModelUtils modelUtils;
+    private HnswIndex index;
+    // candidate list size for approximate queries, 0 means queries are exact
+    private int searchEf = 0;
+    // how train() trains the model, null for models that were not initialized from params
+    private Word2VecParams.LearningAlgorithm learningAlgorithm;
+    private int workers = Word2VecParams.DEFAULT_WORKERS;
+    // sampling threshold of trainModelSubsampled, 0 when DL4J or HogwildTrainer subsample while training
+    private double pipelinedSampling = 0;
+    private Collection<VectorsListener<VocabWord>> listeners = Collections.emptyList();
 
     public Word2VecModel(@NonNull Word2Vec w, @NonNull String modelName) {
         this.w = w;
@@ -52,18 +110,102 @@ public class Word2VecModel {
         modelUtils.init(w.lookupTable());
     }
 
+    private Word2VecModel(@NonNull VectorStore vectors, @NonNull String modelName) {
+        this.modelName = modelName;
+        this.modelUtils = new BetterModelUtils();
+        modelUtils.setVectors(vectors);
+    }
+
     public int getVocabCount() {
-        return w.getVocab().numWords();
+        return isReadOnly() ? getVectors().size() : w.getVocab().numWords();
+    }
+
+    /**
+     * @return the unit-normalized vectors queries run against. For models that were not read from disk
+     * with a vectors file these are computed from syn0 on first use, see refreshVectors
+     */
+    public VectorStore getVectors() {
+        return modelUtils.getVectors();
+    }
+
+    /**
+     * Recomputes the normalized vectors from syn0, should be called if the model is trained after it
+     * has been queried or saved since queries don't see later changes to syn0
+     */
+    public void refreshVectors() {
+        if(isReadOnly()) return;
+        modelUtils.setVectors(new ArrayVectors((InMemoryLookupTable) w.lookupTable(), w.getVocab()));
+        if(index != null) {
+            log.info("Dropping the index of model [{}] since its vectors changed", modelName);
+            index = null;
+        }
+    }
+
+    //***************** APPROXIMATE SEARCH *****************
+    /**
+     * Builds an HNSW index over the normalized vectors so getClosest can run approximate queries,
+     * see setSearchEf
+     */
+    public void buildIndex() {
+        buildIndex(HnswIndex.DEFAULT_M, HnswIndex.DEFAULT_EF_CONSTRUCTION);
+    }
+
+    public void buildIndex(int m, int efConstruction) {
+        index = HnswIndex.build(getVectors(), m, efConstruction, 42);
+    }
+
+    public HnswIndex getIndex() {
+        return index;
+    }
+
+    public boolean hasIndex() {
+        return index != null;
     }
 
+    /**
+     * Sets the candidate list size used by getClosest when the model has an index. Larger values give
+     * results closer to the exact ones but are slower, 0 (the default) makes queries exact
+     */
+    public void setSearchEf(int searchEf) {
+        this.searchEf = searchEf;
+    }
+
+    public int getSearchEf() {
+        return searchEf;
+    }
+
+    private void loadIndex(String indexPath) {
+        File indexFile = new File(indexPath);
+        if(!indexFile.exists()) return;
+        try {
+            index = HnswIndex.read(indexFile, getVectors());
+        } catch (IOException e) {
+            log.warn("Could not read index [{}] of model [{}]: {}", indexPath, modelName, e.getMessage());
+        }
+    }
+
+    /**
+     * @return the vocabulary of the Word2Vec, null for read-only models
+     */
     public VocabCache getVocab() {
-        return w.getVocab();
+        return isReadOnly() ? null : w.getVocab();
+    }
+
+    public boolean containsWord(String word) {
+        return isReadOnly() ? getVectors().containsWord(word) : w.getVocab().containsWord(word);
     }
 
+    /**
+     * @return the underlying Word2Vec, null for read-only models
+     */
     public Word2Vec getWord2Vec() {
         return w;
     }
 
+    public boolean isReadOnly() {
+        return w == null;
+    }
+
     public String getName() {
         return modelName;
     }
@@ -74,87 +216,369 @@ public class Word2VecModel {
     }
 
     public List<BetterModelUtils.ScoredLabel> getClosest(List<String> positive, List<String> negative, int top) {
-        try {
-            // get extra labels because we don't want to return positive or negative words
-            List<BetterModelUtils.ScoredLabel> temp =
-                    modelUtils.wordsNearestScored(positive, negative, top + positive.size() + negative.size());
-            List<BetterModelUtils.ScoredLabel> ret = new ArrayList<>();
-
-            // Only add non positive/negative words
-            for(BetterModelUtils.ScoredLabel s : temp) {
-                if(!(positive.contains(s.getLabel()) || negative.contains(s.getLabel()))) {
-                   ret.add(s);
-                }
-            }
+        return getClosest(positive, negative, top, searchEf);
+    }
 
-            // remove any extra labels we have from the top
-            while(ret.size() > top) ret.remove(ret.size()-1);
-
-            return ret;
-        } catch(NullPointerException e) {
-            // if model utils failed then log which words don't appear in vocab
-            List<String> temp = new ArrayList<>();
-            temp.addAll(positive);
-            temp.addAll(negative);
-            VocabCache v = this.getVocab();
-            temp = temp.stream().filter(i -> !v.containsWord(i)).collect(Collectors.toList());
+    /**
+     * @param ef candidate list size if the model has an index, 0 for an exact query
+     */
+    public List<BetterModelUtils.ScoredLabel> getClosest(List<String> positive, List<String> negative, int top, int ef) {
+        VectorStore vectors = getVectors();
+        List<String> temp = new ArrayList<>();
+        temp.addAll(positive);
+        temp.addAll(negative);
+        temp = temp.stream().filter(i -> !vectors.containsWord(i)).collect(Collectors.toList());
+        if(!temp.isEmpty()) {
+            // log which words don't appear in vocab
             log.error("Words: {} don't appear in the vocabulary", temp);
             return null;
         }
+
+        float[] query = BetterModelUtils.queryVector(vectors, positive, negative);
+        List<BetterModelUtils.ScoredLabel> closest;
+        if(index != null && ef > 0) {
+            // get extra labels because we don't want to return positive or negative words
+            closest = modelUtils.wordsNearestScored(index, vectors, query, top + positive.size() + negative.size(), ef);
+        } else {
+            int[] exclude = Stream.concat(positive.stream(), negative.stream()).mapToInt(vectors::indexOf).toArray();
+            closest = modelUtils.wordsNearestScored(vectors, query, top, exclude);
+        }
+        List<BetterModelUtils.ScoredLabel> ret = new ArrayList<>();
+
+        // Only add non positive/negative words
+        for(BetterModelUtils.ScoredLabel s : closest) {
+            if(!(positive.contains(s.getLabel()) || negative.contains(s.getLabel()))) {
+               ret.add(s);
+            }
+        }
+
+        // remove any extra labels we have from the top
+        while(ret.size() > top) ret.remove(ret.size()-1);
+
+        return ret;
+    }
+
+    /**
+     * Rank the target would have in the exact results of getClosest(positive, negative, vocabCount),
+     * without building the list
+     *
+     * @return the 1-based rank, -1 if a word is not in the vocabulary or the target is one of the query words
+     */
+    public int getRank(List<String> positive, List<String> negative, String target) {
+        VectorStore vectors = getVectors();
+        if(!Stream.concat(positive.stream(), negative.stream()).allMatch(vectors::containsWord)) return -1;
+        float[] query = BetterModelUtils.queryVector(vectors, positive, negative);
+        int[] exclude = Stream.concat(positive.stream(), negative.stream()).mapToInt(vectors::indexOf).toArray();
+        return modelUtils.rankOf(vectors, query, vectors.indexOf(target), exclude);
     }
 
+    /**
+     * Batch version of getClosest, all queries are answered exactly with a few matrix products. Entries of
+     * the result are null for queries with words that don't appear in the vocabulary
+     */
+    public List<List<BetterModelUtils.ScoredLabel>> getClosestBatch(List<List<String>> positives,
+                                                                    List<List<String>> negatives, int top) {
+        return getClosestBatch(positives, negatives, top, null, null);
+    }
+
+    /**
+     * @param targets per query, a word to rank against the whole vocabulary (may be null)
+     * @param ranks filled with the 1-based rank of each target, -1 if the target is not in the vocabulary,
+     *              is one of the query's words or the query itself has words not in the vocabulary
+     */
+    public List<List<BetterModelUtils.ScoredLabel>> getClosestBatch(List<List<String>> positives,
+                                                                    List<List<String>> negatives, int top,
+                                                                    List<String> targets, int[] ranks) {
+        int[][] positiveRows = new int[positives.size()][];
+        int[][] negativeRows = new int[negatives.size()][];
+        for(int j = 0; j < positives.size(); j++) {
+            positiveRows[j] = rowsOf(positives.get(j));
+            negativeRows[j] = rowsOf(negatives.get(j));
+        }
+        return getClosestBatch(positiveRows, negativeRows, top, targets == null ? null : rowsOf(targets), ranks);
+    }
+
+    /**
+     * Same as getClosestBatch on words, with the words given as rows of the model's vectors (see rowsOf),
+     * so that callers running the same words on a model many times only look them up once
+     *
+     * @param positives per query, rows of its positive words, -1 for a word not in the vocabulary
+     * @param targets per query, a row to rank against the whole vocabulary or -1 (may be null)
+     */
+    public List<List<BetterModelUtils.ScoredLabel>> getClosestBatch(int[][] positives, int[][] negatives, int top,
+                                                                    int[] targets, int[] ranks) {
+        VectorStore vectors = getVectors();
+        List<Integer> valid = new ArrayList<>();
+        for(int j = 0; j < positives.length; j++) {
+            if(IntStream.concat(Arrays.stream(positives[j]), Arrays.stream(negatives[j])).allMatch(row -> row >= 0)) {
+                valid.add(j);
+            }
+        }
+        if(valid.size() < positives.length) {
+            log.error("[{}] of [{}] queries have words that don't appear in the vocabulary",
+                    positives.length - valid.size(), positives.length);
+        }
+
+        float[][] queries = new float[valid.size()][];
+        int[][] exclude = new int[valid.size()][];
+        int[] targetIndexes = targets == null ? null : new int[valid.size()];
+        for(int v = 0; v < valid.size(); v++) {
+            int j = valid.get(v);
+            queries[v] = BetterModelUtils.queryVector(vectors, positives[j], negatives[j]);
+            exclude[v] = IntStream.concat(Arrays.stream(positives[j]), Arrays.stream(negatives[j])).toArray();
+            if(targetIndexes != null) targetIndexes[v] = targets[j];
+        }
+        int[] validRanks = new int[valid.size()];
+        List<List<BetterModelUtils.ScoredLabel>> closest =
+                modelUtils.wordsNearestScoredBatch(vectors, queries, top, exclude, targetIndexes, validRanks);
+
+        List<List<BetterModelUtils.ScoredLabel>> ret = new ArrayList<>(Collections.nCopies(positives.length, null));
+        if(ranks != null) Arrays.fill(ranks, -1);
+        for(int v = 0; v < valid.size(); v++) {
+            ret.set(valid.get(v), closest.get(v));
+            if(ranks != null) ranks[valid.get(v)] = validRanks[v];
+        }
+        return ret;
+    }
+
+    /**
+     * @return the row of each word in the model's vectors, -1 for words not in the vocabulary
+     */
+    public int[] rowsOf(List<String> words) {
+        VectorStore vectors = getVectors();
+        return words.stream().mapToInt(vectors::indexOf).toArray();
+    }
+
+    /**
+     * Cosine similarity of two words, NaN if either of them is not in the vocabulary
+     */
     public double getSimilarity(@NonNull  String word1, @NonNull String word2) {
-        return w.similarity(word1, word2);
+        VectorStore vectors = getVectors();
+        int i1 = vectors.indexOf(word1), i2 = vectors.indexOf(word2);
+        if(i1 < 0 || i2 < 0) return Double.NaN;
+        float[] v1 = new float[vectors.layerSize()];
+        vectors.vector(i1, v1);
+        return vectors.dot(i2, v1);
+    }
+
+    /**
+     * Cosine similarities of many word pairs (first[i], second[i]) at once. The vectors of all pairs are
+     * gathered into two matrices and their row-wise dot products computed in a single operation
+     *
+     * @return one similarity per pair, NaN where either word is not in the vocabulary
+     */
+    public double[] getSimilarities(@NonNull List<String> first, @NonNull List<String> second) {
+        if(first.size() != second.size()) throw new IllegalArgumentException("Word lists must be of the same size");
+        int n = first.size();
+        if(n == 0) return new double[0];
+        VectorStore vectors = getVectors();
+        int layerSize = vectors.layerSize();
+        float[] a = new float[n * layerSize], b = new float[n * layerSize];
+        float[] row = new float[layerSize];
+        boolean[] missing = new boolean[n];
+        for(int i = 0; i < n; i++) {
+            int i1 = vectors.indexOf(first.get(i)), i2 = vectors.indexOf(second.get(i));
+            if(i1 < 0 || i2 < 0) {
+                missing[i] = true;
+                continue;
+            }
+            vectors.vector(i1, row);
+            System.arraycopy(row, 0, a, i * layerSize, layerSize);
+            vectors.vector(i2, row);
+            System.arraycopy(row, 0, b, i * layerSize, layerSize);
+        }
+        int[] shape = {n, layerSize};
+        double[] similarities = Nd4j.create(a, shape).muli(Nd4j.create(b, shape)).sum(1).dup().data().asDouble();
+        for(int i = 0; i < n; i++) {
+            if(missing[i]) similarities[i] = Double.NaN;
+        }
+        return similarities;
     }
 
     //***************** INITIALIZER *****************
     public static Word2VecModel initializeWithParams(@NonNull Word2VecParams p) throws IllegalArgumentException {
+        return initializeWithParams(p, Collections.emptyList());
+    }
+
+    /**
+     * @param listeners notified of training events of the model
+     */
+    public static Word2VecModel initializeWithParams(@NonNull Word2VecParams p,
+                                                     @NonNull Collection<VectorsListener<VocabWord>> listeners)
+            throws IllegalArgumentException {
         log.info("Initializing model with params");
 
+        // If dictionary path is specified then we create the dictionary
+        // from that file instead of the corpus during training
+        String dictPath = p.getDictionaryPath();
+        if(dictPath != null) {
+            AbstractCache<VocabWord> vocabCache;
+            try {
+                vocabCache = vocabFromDictionary(Paths.get(dictPath), p.getMinWordFrequency());
+            } catch (IOException e) {
+                log.error("The dictionary path provided does not exist");
+                throw new IllegalArgumentException();
+            }
+            return initializeWithVocab(p, vocabCache, listeners);
+        }
+
+        // HogwildTrainer and pipelined subsampling don't build a vocabulary while training,
+        // it is built from the corpus counts here
+        if(p.getLearningAlgorithm().isHogwild() || p.getPipelinedSubsampling()) {
+            if(p.getCorpusPath() == null) {
+                log.error("Hogwild training and pipelined subsampling need a dictionary or corpus path for the vocabulary");
+                throw new IllegalArgumentException();
+            }
+            EncodedCorpus corpus;
+            try {
+                corpus = encodedCorpusFor(new File(p.getCorpusPath()));
+            } catch (IOException e) {
+                log.error("The corpus [{}] could not be read: {}", p.getCorpusPath(), e.getMessage());
+                throw new IllegalArgumentException();
+            }
+            AbstractCache<VocabWord> vocabCache = vocabFromCounts(corpus.wordCounts(), p.getMinWordFrequency());
+            vocabCache.incrementTotalDocCount(corpus.numSentences());
+            return initializeWithVocab(p, vocabCache, listeners);
+        }
+
+        Word2Vec.Builder b = builderFromParams(p);
+        if(!listeners.isEmpty()) b = b.setVectorsListeners(listeners);
+        log.info("Creating word2vec...");
+        Word2Vec w = b.build();
+
+        Word2VecModel mod = new Word2VecModel(w, p.getName()).trainedWith(p, listeners);
+        log.info("Model initialization complete!");
+        return mod;
+    }
+
+    /**
+     * Initializes a model over an already built vocabulary, training won't build one from the corpus.
+     * The vocabulary is only read during training so one can be shared by models trained at the same time
+     *
+     * @param listeners notified of training events of the model
+     */
+    public static Word2VecModel initializeWithVocab(@NonNull Word2VecParams p, @NonNull AbstractCache<VocabWord> vocabCache,
+                                                    @NonNull Collection<VectorsListener<VocabWord>> listeners) {
+        Word2Vec.Builder b = builderFromParams(p);
+        if(!listeners.isEmpty()) b = b.setVectorsListeners(listeners);
+
+        log.info("Creating lookup table...");
+        WeightLookupTable<VocabWord> lookupTable = new InMemoryLookupTable.Builder<VocabWord>()
+                .vectorLength(p.getLayerSize())
+                .useAdaGrad(false)
+                .useHierarchicSoftmax(p.getHierarchicSoftmax())
+                .negative(p.getNegativeSampling())
+                .cache(vocabCache)
+                .build();
+
+        // also creates syn1Neg and the negative sampling table from the word counts
+        lookupTable.resetWeights(true);
+
+        log.info("Creating word2vec...");
+        Word2Vec w = b.vocabCache(vocabCache)
+                .lookupTable(lookupTable)
+                .build();
+
+        Word2VecModel mod = new Word2VecModel(w, p.getName()).trainedWith(p, listeners);
+        log.info("Model initialization complete!");
+        return mod;
+    }
+
+    /**
+     * Remembers how the params train the model, see train
+     */
+    private Word2VecModel trainedWith(Word2VecParams p, Collection<VectorsListener<VocabWord>> listeners) {
+        this.learningAlgorithm = p.getLearningAlgorithm();
+        this.workers = p.getWorkers();
+        this.pipelinedSampling = isPipelined(p) ? p.getSubSampling() : 0;
+        this.listeners = listeners;
+        return this;
+    }
+
+    /**
+     * @return true if models of the params are trained with trainModelSubsampled, Hogwild training subsamples by itself
+     */
+    private static boolean isPipelined(Word2VecParams p) {
+        return p.getPipelinedSubsampling() && !p.getLearningAlgorithm().isHogwild();
+    }
+
+    /**
+     * Sets the hyperparameters of the params on a new builder, without a vocabulary or lookup table
+     */
+    public static Word2Vec.Builder builderFromParams(@NonNull Word2VecParams p) {
         // Set the learning algorithm
         ElementsLearningAlgorithm<VocabWord> algorithm = null;
+        // Hogwild models are configured with the DL4J algorithm they match, so they are saved the same way
         switch(p.getLearningAlgorithm()) {
             case CBOW:
+            case HOGWILD_CBOW:
                 algorithm = new CBOW<>();
                 break;
             case SKIP_GRAM:
+            case HOGWILD_SKIP_GRAM:
                 algorithm = new SkipGram<>();
                 break;
         }
 
         // set hyperparameters
-        Word2Vec.Builder b = new Word2Vec.Builder()
+        return new Word2Vec.Builder()
                 .resetModel(false)
                 .epochs(p.getNumEpochs())
                 .batchSize(p.getBatchSize())
                 .iterations(p.getIterations())
                 .learningRate(p.getLearningRate())
                 .minLearningRate(p.getMinLearningRate())
-                .sampling(p.getSubSampling())
+                // pipelined subsampling is done by SubsampledSequenceIterator, see trainModelSubsampled
+                .sampling(isPipelined(p) ? 0 : p.getSubSampling())
                 .layerSize(p.getLayerSize())
                 .windowSize(p.getWindowSize())
                 .elementsLearningAlgorithm(algorithm)
                 .minWordFrequency(p.getMinWordFrequency())
                 .negativeSample(p.getNegativeSampling())
-                .useHierarchicSoftmax(p.getHierarchicSoftmax());
+                .useHierarchicSoftmax(p.getHierarchicSoftmax())
+                .workers(p.getWorkers());
+    }
 
-        // If dictionary path is specified then we create the dictionary
-        // from that file instead of the corpus during training
-        String dictPath = p.getDictionaryPath();
-        if(dictPath != null) {
-            // create dictionary iterator
-            File dictFile = new File(dictPath);
-            SentenceIterator iterator;
-            try {
-                iterator = new BasicLineIterator(dictFile);
-            } catch (IOException e) {
-                log.error("The dictionary path provided does not exist");
-                throw new IllegalArgumentException();
-            }
+    /**
+     * Builds a vocabulary from word counts, e.g. of a dictionary or an EncodedCorpus. Words below the min
+     * frequency are left out and the Huffman tree is built from the counts
+     */
+    public static AbstractCache<VocabWord> vocabFromCounts(@NonNull Map<String, Long> counts, int minWordFrequency) {
+        AbstractCache<VocabWord> vocabCache = new AbstractCache.Builder<VocabWord>().build();
+        long total = 0;
+        for(Map.Entry<String, Long> e : counts.entrySet()) {
+            if(e.getValue() < minWordFrequency) continue;
+            vocabCache.addToken(new VocabWord(e.getValue(), e.getKey()));
+            total += e.getValue();
+        }
+        vocabCache.setTotalWordOccurences(total);
+        // huffman sorts the words by frequency and assigns the indexes
+        Huffman huffman = new Huffman(vocabCache.vocabWords());
+        huffman.build();
+        huffman.applyIndexes(vocabCache);
+        return vocabCache;
+    }
 
-            log.info("Building vocabulary from dictionary at [{}]", dictPath);
+    /**
+     * Builds a vocabulary from a dictionary file. If the dictionary has "word count" lines, like the ones
+     * Dictionary.trimDefaultDictionaryWithCorpus writes, the counts are used directly and the Huffman tree is
+     * built from them. Otherwise the words are counted by tokenizing the file like a corpus.
+     *
+     * Since the vocabulary is not empty, training doesn't scan the corpus to build one
+     */
+    public static AbstractCache<VocabWord> vocabFromDictionary(@NonNull Path dictionaryPath, int minWordFrequency)
+            throws IOException {
+        Timer.TimerToken t = Timer.newToken();
+        log.info("Building vocabulary from dictionary at [{}]", dictionaryPath);
+        AbstractCache<VocabWord> vocabCache;
 
-            AbstractCache<VocabWord> vocabCache = new AbstractCache.Builder<VocabWord>().build();
+        Map<String, Long> freqs = Dictionary.readFrequencies(dictionaryPath);
+        if(freqs != null) {
+            vocabCache = vocabFromCounts(freqs, minWordFrequency);
+        } else {
+            log.info("Dictionary [{}] has no word counts, counting its words", dictionaryPath);
+            vocabCache = new AbstractCache.Builder<VocabWord>().build();
+            SentenceIterator iterator = new BasicLineIterator(dictionaryPath.toFile());
 
             TokenizerFactory tokenizer = new DefaultTokenizerFactory();
 
@@ -168,31 +592,91 @@ public class Word2VecModel {
 
             // if dictionary trimming was done beforehand min word frequency should be set as 1
             VocabConstructor<VocabWord> constructor = new VocabConstructor.Builder<VocabWord>()
-                    .addSource(sequenceIterator, p.getMinWordFrequency())
+                    .addSource(sequenceIterator, minWordFrequency)
                     .setTargetVocabCache(vocabCache)
                     .build();
 
             constructor.buildJointVocabulary(false, true);
+        }
+        log.info("Built vocabulary of [{}] words in {}", vocabCache.numWords(), Timer.checkOut(t));
+        return vocabCache;
+    }
 
-            log.info("Creating lookup table...");
-            WeightLookupTable<VocabWord> lookupTable = new InMemoryLookupTable.Builder<VocabWord>()
-                    .vectorLength(p.getLayerSize())
-                    .useAdaGrad(false)
-                    .cache(vocabCache)
-                    .build();
+    //***************** SUB-MODELS *****************
+    /**
+     * Creates a model that only contains the k most frequent words of this model. The sub-model can be
+     * saved like any other model
+     */
+    public Word2VecModel pruneToTopK(int k, @NonNull String newName) {
+        if(isReadOnly()) {
+            log.warn("Cannot prune read-only model [{}]", modelName);
+            return null;
+        }
+        List<VocabWord> words = new ArrayList<>(((VocabCache<VocabWord>) w.getVocab()).vocabWords());
+        words.sort((a, b) -> Double.compare(b.getElementFrequency(), a.getElementFrequency()));
+        return subModel(words.subList(0, Math.min(k, words.size())).stream()
+                .map(VocabWord::getLabel).collect(Collectors.toList()), newName);
+    }
 
-            lookupTable.resetWeights(true);
+    /**
+     * Creates a model that only contains the words of this model that appear in the given dictionary file
+     */
+    public Word2VecModel pruneToDictionary(@NonNull Path dictionaryPath, @NonNull String newName) throws IOException {
+        if(isReadOnly()) {
+            log.warn("Cannot prune read-only model [{}]", modelName);
+            return null;
+        }
+        return subModel(Dictionary.readDictionary(dictionaryPath).stream()
+                .filter(word -> w.getVocab().containsWord(word))
+                .collect(Collectors.toList()), newName);
+    }
 
-            b = b.vocabCache(vocabCache)
-                    .lookupTable(lookupTable);
+    /**
+     * Copies the given words with their frequencies and vectors into a new model. Words are indexed by
+     * descending frequency so the vectors of frequent words sit together at the start of syn0.
+     * Hierarchic softmax weights belong to the old Huffman tree so they are not copied
+     */
+    private Word2VecModel subModel(List<String> words, String newName) {
+        Timer.TimerToken t = Timer.newToken();
+        VocabCache<VocabWord> vocab = w.getVocab();
+        InMemoryLookupTable<VocabWord> table = (InMemoryLookupTable<VocabWord>) w.lookupTable();
+
+        AbstractCache<VocabWord> subVocab = new AbstractCache.Builder<VocabWord>().build();
+        for(String word : words) {
+            subVocab.addToken(new VocabWord(vocab.wordFor(word).getElementFrequency(), word));
         }
+        // huffman sorts the words by frequency and assigns the indexes
+        Huffman huffman = new Huffman(subVocab.vocabWords());
+        huffman.build();
+        huffman.applyIndexes(subVocab);
 
-        log.info("Creating word2vec...");
-        Word2Vec w = b.build();
+        int[] rows = new int[subVocab.numWords()];
+        for(int i = 0; i < rows.length; i++) {
+            rows[i] = vocab.indexOf(subVocab.wordAtIndex(i));
+        }
 
-        Word2VecModel mod = new Word2VecModel(w, p.getName());
-        log.info("Model initialization complete!");
-        return mod;
+        InMemoryLookupTable<VocabWord> subTable = new InMemoryLookupTable.Builder<VocabWord>()
+                .vectorLength(table.layerSize())
+                .useAdaGrad(false)
+                .useHierarchicSoftmax(false)
+                .negative(table.getNegative())
+                .cache(subVocab)
+                .build();
+        subTable.setSyn0(table.getSyn0().getRows(rows));
+        if(table.getSyn1Neg() != null) {
+            subTable.setSyn1Neg(table.getSyn1Neg().getRows(rows));
+        }
+
+        Word2Vec sub = new Word2Vec.Builder()
+                .layerSize(table.layerSize())
+                .useHierarchicSoftmax(false)
+                .negativeSample(table.getNegative())
+                .vocabCache(subVocab)
+                .lookupTable(subTable)
+                .build();
+        log.info("Created sub-model [{}] with [{}] of the [{}] words of [{}] in {}",
+                newName, rows.length, vocab.numWords(), modelName, Timer.checkOut(t));
+        return new Word2VecModel(sub, newName);
     }
 
     //***************** MODEL READ/WRITE *****************
@@ -215,55 +699,444 @@ public class Word2VecModel {
           throw new FileNotFoundException(filePath);
         } else {
             Word2Vec w = WordVectorSerializer.readWord2VecModel(filePath);
+            Word2VecModel model = new Word2VecModel(w, modelName);
+            model.loadVectors(vectorsPathFor(filePath));
+            model.loadIndex(indexPathFor(filePath));
             log.info("Finished reading model in {}", Timer.checkOut(t));
-            return new Word2VecModel(w, modelName);
+            return model;
         }
     }
 
     /**
-     * Saves a Word2Vec to disk
-     *
-     * @param model model that contains the Word2Vec
-     * @param filePath destination to save
-     * @param override if set to true and a file already exists at filePath replaces it
+     * Uses the normalized vectors saved next to the model if they match it, otherwise computes them
+     * right away so that the first query doesn't have to
+     */
+    private void loadVectors(String vectorsPath) {
+        File vectorsFile = new File(vectorsPath);
+        if(vectorsFile.exists()) {
+            try {
+                MappedVectors mapped = MappedVectors.read(vectorsFile);
+                if(mapped.size() == getVocabCount() && mapped.layerSize() == w.lookupTable().layerSize()) {
+                    modelUtils.setVectors(mapped);
+                    return;
+                }
+                log.warn("Vectors file [{}] doesn't match model [{}], recomputing", vectorsPath, modelName);
+            } catch (IOException e) {
+                log.warn("Could not read vectors file [{}], recomputing", vectorsPath);
+            }
+        }
+        refreshVectors();
+    }
+
+    /**
+     * The normalized vectors of a model are stored next to it with the same name
+     */
+    private static String vectorsPathFor(String modelPath) {
+        return basePath(modelPath) + MappedVectors.VECTORS_EXTENSION;
+    }
+
+    private static String indexPathFor(String modelPath) {
+        return basePath(modelPath) + HnswIndex.INDEX_EXTENSION;
+    }
+
+    private static String basePath(String path) {
+        for(String extension : Arrays.asList(".model", MappedVectors.VECTORS_EXTENSION)) {
+            if(path.endsWith(extension)) return path.substring(0, path.length() - extension.length());
+        }
+        return path;
+    }
+
+    /**
+     * Reads a model in read-only inference mode. Only the vocabulary and the normalized vectors are
+     * loaded, and the vectors are memory-mapped so they are paged in as they are used.
+     * If the model has no vectors file yet it is created once from the full .model file
+     */
+    public static Word2VecModel readModelForInference(String modelName) throws IOException {
+        String modelDirectory = System.getProperty("user.dir") + File.separator
+                + "data" + File.separator + "models" + File.separator;
+        File vectorsFile = new File(modelDirectory + modelName + MappedVectors.VECTORS_EXTENSION);
+        if(!vectorsFile.exists()) {
+            File modelFile = new File(modelDirectory + modelName + ".model");
+            if(!modelFile.exists()) throw new FileNotFoundException(modelFile.getPath());
+            log.info("No vectors file for model [{}], creating it from [{}]", modelName, modelFile);
+            // training tables are not needed to extract the vectors
+            Word2Vec full = WordVectorSerializer.readWord2VecModel(modelFile, false);
+            saveVectors(new Word2VecModel(full, modelName), vectorsFile.getPath(), false);
+        }
+        return readModelForInferenceByPath(vectorsFile.getPath(), modelName);
+    }
+
+    public static Word2VecModel readModelForInferenceByPath(String filePath, String modelName) throws IOException {
+        File targetFile = new File(filePath);
+        log.info("Reading model [{}] for inference from [{}]", modelName, filePath);
+        if (!targetFile.exists()) {
+            log.warn("File [{}] does not exist, aborting", filePath);
+            throw new FileNotFoundException(filePath);
+        }
+        Word2VecModel model = new Word2VecModel(MappedVectors.read(targetFile), modelName);
+        model.loadIndex(indexPathFor(filePath));
+        return model;
+    }
+
+    /**
+     * Writes the vocabulary and normalized vectors of a model in the format used by readModelForInference
+     */
+    public static void saveVectors(@NonNull Word2VecModel model, String filePath, boolean override) throws IOException {
+        saveVectors(model, filePath, override, MappedVectors.Encoding.FLOAT32);
+    }
+
+    /**
+     * Same as saveVectors but stores the vectors with the given encoding. Read-only models can be
+     * saved as well, which is how an existing float32 vectors file is quantized
+     */
+    public static void saveVectors(@NonNull Word2VecModel model, String filePath, boolean override,
+                                   @NonNull MappedVectors.Encoding encoding) throws IOException {
+        File output = new File(filePath);
+        if(!override && output.exists()) {
+            log.warn("The file [{}] already exists, aborting", filePath);
+            return;
+        }
+        Timer.TimerToken t = Timer.newToken();
+        Word2Vec w = model.getWord2Vec();
+        long bytes = AtomicFileWriter.write(output.toPath(), temp -> {
+            if(model.isReadOnly()) {
+                MappedVectors.write(model.getVectors(), temp, encoding);
+            } else {
+                MappedVectors.write((InMemoryLookupTable) w.lookupTable(), w.getVocab(), temp, encoding);
+            }
+        });
+        log.info("Finished saving {} vectors of model [{}] to [{}] ({} bytes) in {}",
+                encoding, model.getName(), filePath, bytes, Timer.checkOut(t));
+    }
+
+    /**
+     * Saves the HNSW index of a model, readModelByPath and readModelForInference pick it up if it is
+     * next to the model with the same name
      */
-    public static void saveModel(@NonNull Word2VecModel model, String filePath, boolean override) {
-        if(model == null) {
-            log.warn("Cannot write null model to file");
+    public static void saveIndex(@NonNull Word2VecModel model, String filePath, boolean override) throws IOException {
+        if(model.index == null) {
+            log.warn("Model [{}] has no index to save", model.getName());
             return;
         }
         File output = new File(filePath);
-        if(override && output.exists()) {
+        if(!override && output.exists()) {
             log.warn("The file [{}] already exists, aborting", filePath);
             return;
         }
-        // TODO: add timing
-        WordVectorSerializer.writeWord2VecModel(model.getWord2Vec(), filePath);
-        log.info("Finished saving model [{}] to [{}]", model.getName(), filePath);
+        Timer.TimerToken t = Timer.newToken();
+        long bytes = AtomicFileWriter.write(output.toPath(), temp -> model.index.write(temp));
+        log.info("Finished saving index of model [{}] to [{}] ({} bytes) in {}",
+                model.getName(), filePath, bytes, Timer.checkOut(t));
+    }
+
+    public static void saveIndex(@NonNull Word2VecModel model, boolean override) throws IOException {
+        String modelDirectory = System.getProperty("user.dir") + File.separator
+                + "data" + File.separator + "models" + File.separator;
+        saveIndex(model, modelDirectory + model.getName() + HnswIndex.INDEX_EXTENSION, override);
+    }
+
+    /**
+     * Saves a Word2Vec to disk. The model is written to a temp file next to filePath, synced and then
+     * renamed over filePath so a crash during saving never leaves a corrupt model behind.
+     * The unit-normalized vectors are saved next to the model as well and used for later queries.
+     * The model's own weights are written, without a copy, so it must not be training while it is saved.
+     * Use saveModelAsync to save a model that keeps training
+     *
+     * @param model model that contains the Word2Vec
+     * @param filePath destination to save
+     * @param override if set to true and a file already exists at filePath replaces it
+     * @return results of the save or null if the model was not saved
+     */
+    public static SaveResults saveModel(@NonNull Word2VecModel model, String filePath, boolean override) {
+        if(!canSave(model, filePath, override)) return null;
+        SaveResults res = writeModel(model.getName(), model.getWord2Vec(), filePath);
+        if(res != null) {
+            try {
+                model.modelUtils.setVectors(MappedVectors.read(new File(vectorsPathFor(filePath))));
+            } catch (IOException e) {
+                log.warn("Saved vectors of model [{}] could not be mapped, keeping them in memory", model.getName(), e);
+            }
+        }
+        return res;
     }
 
     /**
      * Saves a given Word2VecModel instance to the designated folder for models
      */
-    public static void saveModel(@NonNull Word2VecModel model, boolean override) {
+    public static SaveResults saveModel(@NonNull Word2VecModel model, boolean override) {
+        return saveModel(model, modelPathFor(model.getName()), override);
+    }
+
+    private static String modelPathFor(String modelName) {
         String modelDirectory = System.getProperty("user.dir") + File.separator
                 + "data" + File.separator + "models" + File.separator;
         // FIXME: this filepath ^ should be a constant somewhere
-        saveModel(model, modelDirectory + model.getName() + ".model", override);
+        return modelDirectory + modelName + ".model";
+    }
+
+    /**
+     * Same as saveModel but runs on a background thread so training can continue while the model is
+     * written. Saves are queued and run one at a time. The weights are copied on the calling thread, which
+     * takes as much off-heap memory again until the save is done, and the model is saved as it was when
+     * this was called. Queries keep using the in-memory vectors,
+     * the saved ones are picked up when the model is read again
+     *
+     * @return future that completes with the results of the save, or null if the model was not saved
+     */
+    public static Future<SaveResults> saveModelAsync(@NonNull Word2VecModel model, String filePath, boolean override) {
+        if(!canSave(model, filePath, override)) return CompletableFuture.completedFuture(null);
+        Word2Vec snapshot = snapshot(model.getWord2Vec());
+        log.info("Queueing model [{}] to be saved to [{}]", model.getName(), filePath);
+        return SAVE_EXECUTOR.submit(() -> writeModel(model.getName(), snapshot, filePath));
+    }
+
+    public static Future<SaveResults> saveModelAsync(@NonNull Word2VecModel model, boolean override) {
+        return saveModelAsync(model, modelPathFor(model.getName()), override);
+    }
+
+    private static boolean canSave(Word2VecModel model, String filePath, boolean override) {
+        if(model.isReadOnly()) {
+            log.warn("Cannot save read-only model [{}]", model.getName());
+            return false;
+        }
+        if(!override && new File(filePath).exists()) {
+            log.warn("The file [{}] already exists, aborting", filePath);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Copies the weights of a Word2Vec into a new one sharing its vocabulary and configuration
+     */
+    private static Word2Vec snapshot(Word2Vec w) {
+        InMemoryLookupTable<VocabWord> table = (InMemoryLookupTable<VocabWord>) w.lookupTable();
+        VectorsConfiguration conf = w.getConfiguration();
+        InMemoryLookupTable<VocabWord> copy = new InMemoryLookupTable.Builder<VocabWord>()
+                .vectorLength(table.layerSize())
+                .useAdaGrad(false)
+                .useHierarchicSoftmax(conf != null && conf.isUseHierarchicSoftmax())
+                .negative(table.getNegative())
+                .cache(w.getVocab())
+                .build();
+        copy.setSyn0(table.getSyn0().dup());
+        if(table.getSyn1() != null) copy.setSyn1(table.getSyn1().dup());
+        if(table.getSyn1Neg() != null) copy.setSyn1Neg(table.getSyn1Neg().dup());
+        Word2Vec.Builder b = conf != null ? new Word2Vec.Builder(conf) : new Word2Vec.Builder();
+        return b.resetModel(false)
+                .vocabCache(w.getVocab())
+                .lookupTable(copy)
+                .build();
+    }
+
+    private static SaveResults writeModel(String modelName, Word2Vec w, String filePath) {
+        Timer.TimerToken t = Timer.newToken();
+        try {
+            long bytes = AtomicFileWriter.write(Paths.get(filePath), temp -> {
+                try(OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp), SAVE_BUFFER_SIZE)) {
+                    WordVectorSerializer.writeWord2VecModel(w, out);
+                }
+            });
+            bytes += AtomicFileWriter.write(Paths.get(vectorsPathFor(filePath)), temp -> MappedVectors.write(
+                    (InMemoryLookupTable) w.lookupTable(), w.getVocab(), temp, MappedVectors.Encoding.FLOAT32));
+            SaveResults res = new SaveResults(filePath, bytes, Timer.checkOut(t));
+            log.info("Finished saving model [{}] to [{}]: {}", modelName, filePath, res);
+            return res;
+        } catch (IOException e) {
+            Timer.checkOut(t);
+            log.error("Saving model [{}] to [{}] failed, existing file left untouched", modelName, filePath, e);
+            return null;
+        }
+    }
+
+    public static class SaveResults {
+        private final String filePath;
+        private final long bytesWritten;
+        private final Timer.TimerResults time;
+
+        public SaveResults(String filePath, long bytesWritten, Timer.TimerResults time) {
+            this.filePath = filePath;
+            this.bytesWritten = bytesWritten;
+            this.time = time;
+        }
+
+        public String getFilePath() {
+            return filePath;
+        }
+
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        public Timer.TimerResults getTime() {
+            return time;
+        }
+
+        @Override
+        public String toString() {
+            return bytesWritten + " bytes in " + time;
+        }
     }
 
 
     //***************** MODEL TRAINING *****************
+    /**
+     * Trains the model with the learning algorithm of the params it was initialized with. Hogwild
+     * algorithms and pipelined subsampling train on an encoded corpus, a text corpus is encoded next to
+     * itself first if it wasn't already. Other models are trained by DL4J like trainModel
+     */
+    public void train(@NonNull File corpus) {
+        if(pipelinedSampling == 0 && (learningAlgorithm == null || !learningAlgorithm.isHogwild())) {
+            trainModel(w, corpus);
+            return;
+        }
+        try {
+            train(encodedCorpusFor(corpus));
+        } catch (IOException e) {
+            log.error("Training corpus [{}] could not be encoded: {}", corpus, e.getMessage());
+        }
+    }
+
+    public void train(@NonNull EncodedCorpus corpus) {
+        if(isReadOnly()) {
+            log.warn("Cannot train read-only model [{}]", modelName);
+            return;
+        }
+        if(pipelinedSampling > 0) {
+            trainModelSubsampled(w, corpus, pipelinedSampling);
+            return;
+        }
+        if(learningAlgorithm == null || !learningAlgorithm.isHogwild()) {
+            trainModel(w, corpus);
+            return;
+        }
+        new HogwildTrainer(w, learningAlgorithm == Word2VecParams.LearningAlgorithm.HOGWILD_CBOW, workers, listeners)
+                .fit(corpus);
+    }
+
+    /**
+     * Maps the encoded version of a corpus, encoding a text corpus to a file with the EncodedCorpus
+     * extension next to it unless that file already exists
+     */
+    private static EncodedCorpus encodedCorpusFor(File corpus) throws IOException {
+        if(corpus.getName().endsWith(EncodedCorpus.CORPUS_EXTENSION)) return EncodedCorpus.read(corpus);
+        if(corpus.isDirectory()) throw new IOException("Sharded corpora have to be encoded into one file first");
+        Path encoded = Paths.get(corpus.getPath().replaceFirst("\\.[^.\\\\/]*$", "") + EncodedCorpus.CORPUS_EXTENSION);
+        if(!Files.exists(encoded)) {
+            log.info("Encoding corpus [{}] to [{}]", corpus, encoded);
+            EncodedCorpus.encode(corpus.toPath(), encoded);
+        }
+        return EncodedCorpus.read(encoded.toFile());
+    }
+
+    /**
+     * Trains on a text corpus, or on an encoded corpus if the file has the EncodedCorpus extension.
+     * A text corpus file or directory of shards is read with one reader thread per core
+     */
     public static void trainModel(@NonNull Word2Vec model, File trainingFile) {
+        trainModel(model, trainingFile, readerThreadsFor(trainingFile));
+    }
+
+    /**
+     * @return number of reader threads trainModel uses for the corpus, 1 for an encoded corpus
+     */
+    private static int readerThreadsFor(File corpus) {
+        return corpus.getName().endsWith(EncodedCorpus.CORPUS_EXTENSION) ? 1 : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Trains on a text corpus file or a directory of corpus shards. With more than one reader thread the
+     * corpus is read by a ShardedLineIterator and the time training waited on input is logged at the end
+     */
+    public static void trainModel(@NonNull Word2Vec model, File trainingFile, int readerThreads) {
+        trainModel(model, trainingFile, readerThreads, 0);
+    }
+
+    /**
+     * Trains like trainModel(model, trainingFile, readerThreads), skipping the first lines of the first
+     * epoch. Used to resume training from a checkpoint taken in the middle of an epoch
+     */
+    public static void trainModel(@NonNull Word2Vec model, File trainingFile, int readerThreads, long skipLines) {
+        if(trainingFile.getName().endsWith(EncodedCorpus.CORPUS_EXTENSION)) {
+            try {
+                trainModel(model, EncodedCorpus.read(trainingFile), skipLines);
+            } catch (IOException e) {
+                log.error("Encoded corpus [{}] could not be read: {}", trainingFile, e.getMessage());
+            }
+            return;
+        }
         try {
-            SentenceIterator iterator = new BasicLineIterator(trainingFile);
+            SentenceIterator iterator;
+            ShardedLineIterator sharded = null;
+            if(readerThreads > 1 || trainingFile.isDirectory()) {
+                sharded = new ShardedLineIterator(trainingFile, readerThreads);
+                iterator = sharded;
+            } else {
+                iterator = new BasicLineIterator(trainingFile);
+            }
             TokenizerFactory tokenizer = new DefaultTokenizerFactory();
             model.setTokenizerFactory(tokenizer);
-            model.setSentenceIterator(iterator);
+            if(skipLines > 0) {
+                SentenceTransformer transformer = new SentenceTransformer.Builder()
+                        .iterator(iterator)
+                        .tokenizerFactory(tokenizer)
+                        .build();
+                model.setSequenceIterator(new SkippingSequenceIterator<>(
+                        new AbstractSequenceIterator.Builder<>(transformer).build(), skipLines));
+                log.info("Skipping the first [{}] lines of the first epoch", skipLines);
+            } else {
+                model.setSentenceIterator(iterator);
+            }
             log.info("Starting training using file [{}]", trainingFile);
             model.fit();
+            if(sharded != null) {
+                sharded.finish();
+                log.info("Training read [{}] lines and waited on input for [{}] ms in total",
+                        sharded.getLines(), TimeUnit.NANOSECONDS.toMillis(sharded.getWaitNanos()));
+            }
         } catch (FileNotFoundException e) {
             log.error("Training file [{}] not found", trainingFile);
+        } catch (IOException e) {
+            log.error("Training corpus [{}] could not be read: {}", trainingFile, e.getMessage());
+        }
+    }
+
+    /**
+     * Trains on a corpus converted with EncodedCorpus.encode, epochs only decode ids from the mapped file
+     */
+    public static void trainModel(@NonNull Word2Vec model, @NonNull EncodedCorpus corpus) {
+        trainModel(model, corpus, 0);
+    }
+
+    private static void trainModel(Word2Vec model, EncodedCorpus corpus, long skipLines) {
+        SequenceIterator<VocabWord> iterator = new EncodedSequenceIterator(corpus, model.getVocab());
+        if(skipLines > 0) {
+            iterator = new SkippingSequenceIterator<>(iterator, skipLines);
+            log.info("Skipping the first [{}] sentences of the first epoch", skipLines);
+        }
+        model.setSequenceIterator(iterator);
+        log.info("Starting training using encoded corpus with [{}] tokens", corpus.numTokens());
+        model.fit();
+    }
+
+    /**
+     * Trains on an encoded corpus with frequent words subsampled ahead of time: every epoch gets its own
+     * subsampled copy of the corpus, prepared on a background thread while the previous epoch trains.
+     * The model's vocabulary must be built and its own sampling should be 0, see Word2VecParams.setPipelinedSubsampling
+     */
+    public static void trainModelSubsampled(@NonNull Word2Vec model, @NonNull EncodedCorpus corpus, double subSampling) {
+        if(model.getConfiguration().getSampling() > 0) {
+            log.warn("Model also subsamples while training, frequent words will be subsampled twice");
+        }
+        SubsampledSequenceIterator iterator = new SubsampledSequenceIterator(corpus, model.getVocab(), subSampling,
+                model.getConfiguration().getEpochs(), model.getConfiguration().getSeed());
+        model.setSequenceIterator(iterator);
+        log.info("Starting training using encoded corpus with [{}] tokens subsampled at [{}]",
+                corpus.numTokens(), subSampling);
+        try {
+            model.fit();
+        } finally {
+            iterator.close();
         }
     }
 
@@ -274,4 +1147,206 @@ public class Word2VecModel {
     public static void trainModel(@NonNull Word2Vec model, Path trainingFilePath){
         trainModel(model, trainingFilePath.toFile());
     }
+
+    //***************** CHECKPOINTS *****************
+    /**
+     * Initializes and trains a model with the params on their corpus, writing a Checkpoint every N epochs
+     * and/or M lines. If a checkpoint is already at the path training resumes from it: the weights and
+     * vocabulary are restored, the remaining epochs start at the checkpoint's learning rate and the lines
+     * of the interrupted epoch that were already trained are skipped. Hogwild training and text corpora read by
+     * several threads can't skip lines, their lines aren't trained in a fixed order, so the interrupted epoch is
+     * trained again. This is the case for text corpora unless there is only one core.
+     * So does pipelined subsampling, which draws a new subsample of the corpus for every run.
+     * Progress is logged by a TrainingMonitor
+     *
+     * @param everyEpochs epochs between checkpoints, 0 for none
+     * @param everyLines corpus lines between checkpoints, 0 for none
+     */
+    public static Word2VecModel trainWithCheckpoints(@NonNull Word2VecParams p, @NonNull Path checkpointPath,
+                                                     int everyEpochs, long everyLines) {
+        if(p.getCorpusPath() == null) throw new IllegalArgumentException("Params have no corpus path");
+        File corpus = new File(p.getCorpusPath());
+
+        Checkpoint checkpoint = null;
+        if(Files.exists(checkpointPath)) {
+            try {
+                checkpoint = Checkpoint.read(checkpointPath.toFile());
+            } catch (IOException e) {
+                log.warn("Could not read checkpoint [{}], training from the start: {}", checkpointPath, e.getMessage());
+            }
+        }
+
+        if(checkpoint == null) {
+            CheckpointListener checkpoints = new CheckpointListener(checkpointPath, everyEpochs, everyLines);
+            Word2VecModel model = initializeWithParams(p, Arrays.asList(checkpoints, new TrainingMonitor(p.getName())));
+            model.train(corpus);
+            awaitCheckpoints(checkpoints);
+            return model;
+        }
+
+        int remainingEpochs = checkpoint.getTotalEpochs() - checkpoint.getCompletedEpochs();
+        log.info("Resuming [{}] at epoch [{}] of [{}] with learning rate [{}]", p.getName(),
+                checkpoint.getCompletedEpochs() + 1, checkpoint.getTotalEpochs(), checkpoint.getLearningRate());
+        // workers of HogwildTrainer each train a slice of the corpus and several reader threads hand out lines
+        // in no particular order, the lines already trained are unknown so the epoch starts over
+        int readerThreads = readerThreadsFor(corpus);
+        boolean restartEpoch = p.getLearningAlgorithm().isHogwild() || isPipelined(p)
+                || corpus.isDirectory() || readerThreads > 1;
+        CheckpointListener checkpoints = restartEpoch ?
+                CheckpointListener.restartingEpoch(checkpoint, checkpointPath, everyEpochs, everyLines) :
+                CheckpointListener.resuming(checkpoint, checkpointPath, everyEpochs, everyLines);
+        List<VectorsListener<VocabWord>> listeners = Arrays.asList(checkpoints, new TrainingMonitor(p.getName()));
+        Word2Vec w = builderFromParams(p)
+                .epochs(Math.max(1, remainingEpochs))
+                .learningRate(checkpoint.getLearningRate())
+                .vocabCache(checkpoint.getVocab())
+                .lookupTable(checkpoint.lookupTable(p.getNegativeSampling(), p.getHierarchicSoftmax()))
+                .setVectorsListeners(listeners)
+                .build();
+        Word2VecModel model = new Word2VecModel(w, p.getName()).trainedWith(p, listeners);
+        if(remainingEpochs > 0 && restartEpoch) {
+            model.train(corpus);
+        } else if(remainingEpochs > 0) {
+            trainModel(w, corpus, readerThreads, checkpoint.getLinesInEpoch());
+        }
+        awaitCheckpoints(checkpoints);
+        return model;
+    }
+
+    // checkpoints are written in the background, callers may delete the file once training returns
+    private static void awaitCheckpoints(CheckpointListener checkpoints) {
+        try {
+            checkpoints.awaitWrites();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while waiting for the last checkpoint to be written");
+        }
+    }
+
+    /**
+     * @return where trainWithCheckpoints should keep the checkpoint of a model saved with saveModel
+     */
+    public static Path checkpointPathFor(@NonNull String modelName) {
+        return Paths.get(System.getProperty("user.dir"), "data", "models", modelName + Checkpoint.CHECKPOINT_EXTENSION);
+    }
+
+    //***************** CONTINUED TRAINING *****************
+    /**
+     * Trains the model further on new text only. Words of the new corpus that occur at least minWordFrequency
+     * times and are not in the vocabulary yet are added with random vectors, known words keep their vectors.
+     *
+     * The new counts are added to the old ones and the Huffman tree is rebuilt from them, so the weights
+     * of known words are moved to their new indexes. Negative sampling weights are carried over, hierarchic
+     * softmax weights belong to the old tree and start over. Queries see the new vectors, the index is dropped.
+     * Training goes through train with the algorithm and listeners the model already has, a model without
+     * listeners gets a TrainingMonitor
+     *
+     * @param corpus text corpus file, directory of shards or encoded corpus
+     * @param learningRate learning rate to start from, usually lower than the one the model was trained with
+     */
+    public void continueTraining(@NonNull File corpus, int minWordFrequency, double learningRate, int epochs)
+            throws IOException {
+        if(isReadOnly()) {
+            log.warn("Cannot train read-only model [{}]", modelName);
+            return;
+        }
+        Timer.TimerToken t = Timer.newToken();
+        VocabCache<VocabWord> vocab = w.getVocab();
+        InMemoryLookupTable<VocabWord> table = (InMemoryLookupTable<VocabWord>) w.lookupTable();
+        int layerSize = table.layerSize();
+
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for(VocabWord word : vocab.vocabWords()) {
+            counts.put(word.getLabel(), (long) word.getElementFrequency());
+        }
+        int added = 0;
+        for(Map.Entry<String, Long> e : countWords(corpus).entrySet()) {
+            Long old = counts.get(e.getKey());
+            if(old != null) {
+                counts.put(e.getKey(), old + e.getValue());
+            } else if(e.getValue() >= minWordFrequency) {
+                counts.put(e.getKey(), e.getValue());
+                added++;
+            }
+        }
+        AbstractCache<VocabWord> newVocab = vocabFromCounts(counts, 0);
+        log.info("Extending model [{}] with [{}] new words to [{}] words", modelName, added, newVocab.numWords());
+
+        // new words are appended after the old rows, then all rows are gathered in the new index order
+        int[] rows = new int[newVocab.numWords()];
+        int nextNew = vocab.numWords();
+        for(int i = 0; i < rows.length; i++) {
+            int old = vocab.indexOf(newVocab.wordAtIndex(i));
+            rows[i] = old >= 0 ? old : nextNew++;
+        }
+        INDArray syn0 = table.getSyn0();
+        INDArray syn1Neg = table.getSyn1Neg();
+        if(added > 0) {
+            // same initialization as InMemoryLookupTable.resetWeights
+            syn0 = Nd4j.vstack(syn0, Nd4j.rand(added, layerSize).subi(0.5).divi(layerSize));
+            if(syn1Neg != null) syn1Neg = Nd4j.vstack(syn1Neg, Nd4j.zeros(added, layerSize));
+        }
+
+        VectorsConfiguration conf = w.getConfiguration();
+        boolean hierarchicSoftmax = conf != null && conf.isUseHierarchicSoftmax();
+        InMemoryLookupTable<VocabWord> newTable = new InMemoryLookupTable.Builder<VocabWord>()
+                .vectorLength(layerSize)
+                .useAdaGrad(false)
+                .useHierarchicSoftmax(hierarchicSoftmax)
+                .negative(table.getNegative())
+                .cache(newVocab)
+                .build();
+        newTable.resetWeights(true);
+        newTable.setSyn0(syn0.getRows(rows));
+        if(syn1Neg != null) newTable.setSyn1Neg(syn1Neg.getRows(rows));
+
+        if(listeners.isEmpty()) listeners = Collections.singletonList(new TrainingMonitor(modelName));
+        Word2Vec.Builder b = conf != null ? new Word2Vec.Builder(conf) : new Word2Vec.Builder();
+        w = b.resetModel(false)
+                .layerSize(layerSize)
+                .negativeSample(table.getNegative())
+                .useHierarchicSoftmax(hierarchicSoftmax)
+                .epochs(epochs)
+                .learningRate(learningRate)
+                .vocabCache(newVocab)
+                .lookupTable(newTable)
+                .setVectorsListeners(listeners)
+                .build();
+        log.info("Prepared continued training of model [{}] in {}", modelName, Timer.checkOut(t));
+
+        train(corpus);
+        modelUtils = new BetterModelUtils();
+        modelUtils.init(w.lookupTable());
+        index = null;
+    }
+
+    /**
+     * Counts the words of a corpus the way DefaultTokenizerFactory splits them
+     */
+    private static Map<String, Long> countWords(File corpus) throws IOException {
+        if(corpus.getName().endsWith(EncodedCorpus.CORPUS_EXTENSION)) {
+            return EncodedCorpus.read(corpus).wordCounts();
+        }
+        List<Path> files;
+        if(corpus.isDirectory()) {
+            try(Stream<Path> paths = Files.list(corpus.toPath())) {
+                files = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+        } else {
+            files = Collections.singletonList(corpus.toPath());
+        }
+        HashMap<String, Long> counts = new HashMap<>();
+        for(Path file : files) {
+            try(BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while((line = in.readLine()) != null) {
+                    StringTokenizer tokenizer = new StringTokenizer(line);
+                    while(tokenizer.hasMoreTokens()) {
+                        counts.merge(tokenizer.nextToken(), 1L, Long::sum);
+                    }
+                }
+            }
+        }
+        return counts;
+    }
 }
@@ -7,7 +7,15 @@ import lombok.NonNull;
  * if not overridden by a setter method
  */
 public class Word2VecParams {
-    public enum LearningAlgorithm { CBOW, SKIP_GRAM }
+    public enum LearningAlgorithm {
+        CBOW, SKIP_GRAM,
+        // trained by HogwildTrainer on flat arrays instead of DL4J's learners, models are saved the same way
+        HOGWILD_CBOW, HOGWILD_SKIP_GRAM;
+
+        public boolean isHogwild() {
+            return this == HOGWILD_CBOW || this == HOGWILD_SKIP_GRAM;
+        }
+    }
 
     // These default values are the defaults that DL4J uses (mostly)
 
@@ -23,6 +31,8 @@ public class Word2VecParams {
     public static final Integer DEFAULT_MIN_WORD_FREQUENCY = new Integer(5);
     public static final Boolean DEFAULT_HIERARCHIC_SOFTMAX = new Boolean(false);
     public static final LearningAlgorithm DEFAULT_LEARNING_ALGORITHM = LearningAlgorithm.CBOW;
+    public static final Boolean DEFAULT_PIPELINED_SUBSAMPLING = new Boolean(false);
+    public static final Integer DEFAULT_WORKERS = Runtime.getRuntime().availableProcessors();
 
     private String name = null;
     private String dictionaryPath = null;
@@ -39,11 +49,36 @@ public class Word2VecParams {
     private Integer minWordFrequency = null;
     private Boolean hierarchicSoftmax = null;
     private LearningAlgorithm algorithm = null;
+    private Integer workers = null;
+    private Boolean pipelinedSubsampling = null;
 
     public Word2VecParams(@NonNull String name) {
         this.name = name;
     }
 
+    /**
+     * Copies the params, values that were not set keep using the defaults
+     */
+    public Word2VecParams(@NonNull Word2VecParams other) {
+        this.name = other.name;
+        this.dictionaryPath = other.dictionaryPath;
+        this.corpusPath = other.corpusPath;
+        this.learningRate = other.learningRate;
+        this.minLearningRate = other.minLearningRate;
+        this.subSampling = other.subSampling;
+        this.negativeSampling = other.negativeSampling;
+        this.layerSize = other.layerSize;
+        this.numEpochs = other.numEpochs;
+        this.windowSize = other.windowSize;
+        this.batchSize = other.batchSize;
+        this.iterations = other.iterations;
+        this.minWordFrequency = other.minWordFrequency;
+        this.hierarchicSoftmax = other.hierarchicSoftmax;
+        this.algorithm = other.algorithm;
+        this.workers = other.workers;
+        this.pipelinedSubsampling = other.pipelinedSubsampling;
+    }
+
     public Word2VecParams setName(String name){
         this.name = name;
         return this;
@@ -132,6 +167,19 @@ public class Word2VecParams {
         return this;
     }
 
+    // subsample an encoded corpus on a background thread once per epoch instead of while training,
+    // a text corpus is encoded first, see Word2VecModel.train
+    public Word2VecParams setPipelinedSubsampling(Boolean pipelinedSubsampling) {
+        this.pipelinedSubsampling = pipelinedSubsampling;
+        return this;
+    }
+
+    // number of training threads
+    public Word2VecParams setWorkers(Integer workers) {
+        this.workers = workers;
+        return this;
+    }
+
 
     // HYPERPARAM GETTING
     public Double getLearningRate() {
@@ -182,4 +230,12 @@ public class Word2VecParams {
     public LearningAlgorithm getLearningAlgorithm() {
         return algorithm == null ? DEFAULT_LEARNING_ALGORITHM : algorithm;
     }
-}
\ No newline at end of file
+
+    public Integer getWorkers() {
+        return workers == null ? DEFAULT_WORKERS : workers;
+    }
+
+    public Boolean getPipelinedSubsampling() {
+        return pipelinedSubsampling == null ? DEFAULT_PIPELINED_SUBSAMPLING : pipelinedSubsampling;
+    }
+}
@@ -0,0 +1,276 @@
+package org.TurkishNLP.word2vec.corpus;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.TurkishNLP.shared.AtomicFileWriter;
+import org.TurkishNLP.shared.Timer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A preprocessed corpus converted once into a stream of word ids so that training epochs don't have to
+ * read, tokenize and hash the text again. Ids are variable-length encoded (7 bits per byte, most
+ * frequent words get the smallest ids and take a single byte) and 0 marks the end of a sentence.
+ * The file is memory-mapped when read.
+ *
+ * Tokens are split on whitespace like DefaultTokenizerFactory does, one sentence per line.
+ *
+ * File layout: magic, version, data offset, then the sentence and token counts and the vocabulary
+ * (word and count, by descending count) followed by the id stream at the data offset.
+ */
+@Slf4j
+public class EncodedCorpus {
+    public static final String CORPUS_EXTENSION = ".corpus";
+
+    private static final int MAGIC = 0x57324943;
+    private static final int VERSION = 1;
+    private static final int CHUNK_BITS = 30;
+    private static final int LOG_PROGRESS_FREQ = 1000000;
+    static final int END_OF_SENTENCE = 0;
+
+    // words[0] is unused, ids start at 1
+    private final String[] words;
+    private final long[] counts;
+    private final long sentences, tokens;
+    private final ByteBuffer[] chunks;
+    private final long dataLength;
+
+    private EncodedCorpus(String[] words, long[] counts, long sentences, long tokens,
+                          ByteBuffer[] chunks, long dataLength) {
+        this.words = words;
+        this.counts = counts;
+        this.sentences = sentences;
+        this.tokens = tokens;
+        this.chunks = chunks;
+        this.dataLength = dataLength;
+    }
+
+    /**
+     * @return number of distinct words in the corpus
+     */
+    public int numWords() {
+        return words.length - 1;
+    }
+
+    public String wordFor(int id) {
+        return words[id];
+    }
+
+    public long countOf(int id) {
+        return counts[id];
+    }
+
+    /**
+     * @return the count of every word, most frequent first
+     */
+    public LinkedHashMap<String, Long> wordCounts() {
+        LinkedHashMap<String, Long> wordCounts = new LinkedHashMap<>(words.length * 2);
+        for(int id = 1; id < words.length; id++) {
+            wordCounts.put(words[id], counts[id]);
+        }
+        return wordCounts;
+    }
+
+    public long numSentences() {
+        return sentences;
+    }
+
+    public long numTokens() {
+        return tokens;
+    }
+
+    long dataLength() {
+        return dataLength;
+    }
+
+    byte byteAt(long position) {
+        return chunks[(int) (position >>> CHUNK_BITS)].get((int) (position & ((1 << CHUNK_BITS) - 1)));
+    }
+
+    /**
+     * Cursor over one of parts equal slices of the id stream. Slices are moved to the next sentence start,
+     * right after a 0 byte which can only be an end of sentence, so every sentence belongs to exactly one
+     * slice. Cursors only read the mapped file, threads can each use their own over the same corpus
+     */
+    public Cursor cursor(int part, int parts) {
+        if(part < 0 || part >= parts) throw new IllegalArgumentException("Part [" + part + "] not in [0, " + parts + ")");
+        return new Cursor(sentenceStart(dataLength * part / parts), sentenceStart(dataLength * (part + 1) / parts));
+    }
+
+    private long sentenceStart(long position) {
+        while(position > 0 && position < dataLength && byteAt(position - 1) != END_OF_SENTENCE) position++;
+        return position;
+    }
+
+    public class Cursor {
+        private final long start, end;
+        private long position;
+
+        private Cursor(long start, long end) {
+            this.start = start;
+            this.end = end;
+            this.position = start;
+        }
+
+        /**
+         * Reads the ids of the next sentence. Sentences longer than the array are returned in pieces
+         *
+         * @return number of ids read, -1 at the end of the slice
+         */
+        public int nextSentence(int[] ids) {
+            if(position >= end) return -1;
+            int n = 0;
+            while(position < end && n < ids.length) {
+                int id = 0, shift = 0;
+                byte b;
+                do {
+                    b = byteAt(position++);
+                    id |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while((b & 0x80) != 0);
+                if(id == END_OF_SENTENCE) break;
+                ids[n++] = id;
+            }
+            return n;
+        }
+    }
+
+    //***************** READ/WRITE *****************
+    /**
+     * Converts a text corpus with one sentence per line. The text is read twice: once to count the words
+     * and once to write their ids
+     *
+     * @return number of bytes written
+     */
+    public static long encode(@NonNull Path textCorpus, @NonNull Path target) throws IOException {
+        Timer.TimerToken t = Timer.newToken();
+        log.info("Counting words of corpus [{}]", textCorpus);
+        HashMap<String, long[]> wordCounts = new HashMap<>();
+        long sentences = 0, tokens = 0;
+        try(BufferedReader in = Files.newBufferedReader(textCorpus, StandardCharsets.UTF_8)) {
+            String line;
+            while((line = in.readLine()) != null) {
+                StringTokenizer tokenizer = new StringTokenizer(line);
+                while(tokenizer.hasMoreTokens()) {
+                    wordCounts.computeIfAbsent(tokenizer.nextToken(), w -> new long[1])[0]++;
+                    tokens++;
+                }
+                sentences++;
+            }
+        }
+
+        List<Map.Entry<String, long[]>> sorted = new ArrayList<>(wordCounts.entrySet());
+        sorted.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+        HashMap<String, Integer> ids = new HashMap<>(sorted.size() * 2);
+        for(int i = 0; i < sorted.size(); i++) {
+            ids.put(sorted.get(i).getKey(), i + 1);
+        }
+        wordCounts = null;
+        log.info("Found [{}] distinct words in [{}] tokens and [{}] sentences", ids.size(), tokens, sentences);
+
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeLong(sentences);
+        header.writeLong(tokens);
+        header.writeInt(sorted.size());
+        for(Map.Entry<String, long[]> e : sorted) {
+            header.writeUTF(e.getKey());
+            header.writeLong(e.getValue()[0]);
+        }
+        header.flush();
+
+        final long totalTokens = tokens;
+        long bytes = AtomicFileWriter.write(target, temp -> {
+            try(BufferedReader in = Files.newBufferedReader(textCorpus, StandardCharsets.UTF_8);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 20))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                // magic, version and this offset itself take 16 bytes
+                out.writeLong(16 + headerBytes.size());
+                headerBytes.writeTo(out);
+
+                long written = 0;
+                String line;
+                while((line = in.readLine()) != null) {
+                    StringTokenizer tokenizer = new StringTokenizer(line);
+                    while(tokenizer.hasMoreTokens()) {
+                        writeVarint(out, ids.get(tokenizer.nextToken()));
+                        if(++written % LOG_PROGRESS_FREQ == 0) {
+                            log.info("Encoded [{}] of [{}] tokens", written, totalTokens);
+                        }
+                    }
+                    writeVarint(out, END_OF_SENTENCE);
+                }
+            }
+        });
+        log.info("Encoded corpus [{}] into [{}] ({} bytes) in {}", textCorpus, target, bytes, Timer.checkOut(t));
+        return bytes;
+    }
+
+    /**
+     * Maps an encoded corpus into memory
+     */
+    public static EncodedCorpus read(@NonNull File file) throws IOException {
+        Timer.TimerToken t = Timer.newToken();
+        String[] words;
+        long[] counts;
+        long sentences, tokens, dataOffset;
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if(in.readInt() != MAGIC) throw new IOException("Not an encoded corpus: " + file);
+            int version = in.readInt();
+            if(version != VERSION) throw new IOException("Unsupported encoded corpus version [" + version + "]");
+            dataOffset = in.readLong();
+            sentences = in.readLong();
+            tokens = in.readLong();
+            int numWords = in.readInt();
+            words = new String[numWords + 1];
+            counts = new long[numWords + 1];
+            for(int i = 1; i <= numWords; i++) {
+                words[i] = in.readUTF();
+                counts[i] = in.readLong();
+            }
+        }
+
+        long dataLength = file.length() - dataOffset;
+        int chunkCount = (int) ((dataLength + (1L << CHUNK_BITS) - 1) >>> CHUNK_BITS);
+        ByteBuffer[] chunks = new ByteBuffer[Math.max(chunkCount, 1)];
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            for(int c = 0; c < chunkCount; c++) {
+                long start = (long) c << CHUNK_BITS;
+                chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + start,
+                        Math.min(1L << CHUNK_BITS, dataLength - start));
+            }
+        }
+        if(chunkCount == 0) chunks[0] = ByteBuffer.allocate(0);
+        log.info("Mapped encoded corpus [{}] with [{}] words and [{}] tokens in {}",
+                file, words.length - 1, tokens, Timer.checkOut(t));
+        return new EncodedCorpus(words, counts, sentences, tokens, chunks, dataLength);
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Usage: EncodedCorpus textCorpus [target], the target defaults to the corpus path with the
+     * .corpus extension
+     */
+    public static void main(String[] args) throws IOException {
+        String input = args.length > 0 ? args[0] :
+                Paths.get("data", "processed_files", "trwiki_corpus.processed").toString();
+        String output = args.length > 1 ? args[1] : input.replaceFirst("\\.[^.\\\\/]*$", "") + CORPUS_EXTENSION;
+        encode(Paths.get(input), Paths.get(output));
+    }
+}
@@ -0,0 +1,81 @@
+package org.TurkishNLP.word2vec.corpus;
+
+import lombok.NonNull;
+import org.deeplearning4j.models.sequencevectors.interfaces.SequenceIterator;
+import org.deeplearning4j.models.sequencevectors.sequence.Sequence;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+
+/**
+ * Feeds an {@link EncodedCorpus} to Word2Vec training straight from the mapped id stream.
+ *
+ * While the vocabulary is being built new elements are emitted for every token like the tokenizer would.
+ * Once the model's vocabulary has words, the corpus ids are mapped to the model's own elements once on
+ * reset and every epoch after that only decodes ids, without any string handling
+ */
+public class EncodedSequenceIterator implements SequenceIterator<VocabWord> {
+    private final EncodedCorpus corpus;
+    private final VocabCache<VocabWord> vocab;
+    // corpus id -> element of the model's vocabulary, null while the vocabulary is empty
+    private VocabWord[] elements;
+    private long position = 0;
+    private int sentenceId = 0;
+
+    /**
+     * @param vocab the vocabulary of the model being trained, may still be empty
+     */
+    public EncodedSequenceIterator(@NonNull EncodedCorpus corpus, VocabCache<VocabWord> vocab) {
+        this.corpus = corpus;
+        this.vocab = vocab;
+        mapElements();
+    }
+
+    @Override
+    public boolean hasMoreSequences() {
+        return position < corpus.dataLength();
+    }
+
+    @Override
+    public Sequence<VocabWord> nextSequence() {
+        Sequence<VocabWord> sequence = new Sequence<>();
+        sequence.setSequenceId(sentenceId++);
+        int id;
+        while(position < corpus.dataLength() && (id = readVarint()) != EncodedCorpus.END_OF_SENTENCE) {
+            if(elements == null) {
+                sequence.addElement(new VocabWord(1.0, corpus.wordFor(id)));
+            } else if(elements[id] != null) {
+                // words below the min frequency are not in the vocabulary
+                sequence.addElement(elements[id]);
+            }
+        }
+        return sequence;
+    }
+
+    @Override
+    public void reset() {
+        position = 0;
+        sentenceId = 0;
+        if(elements == null) mapElements();
+    }
+
+    private void mapElements() {
+        if(vocab == null || vocab.numWords() == 0) return;
+        VocabWord[] mapped = new VocabWord[corpus.numWords() + 1];
+        for(int id = 1; id < mapped.length; id++) {
+            mapped[id] = vocab.tokenFor(corpus.wordFor(id));
+        }
+        elements = mapped;
+    }
+
+    private int readVarint() {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = corpus.byteAt(position++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,273 @@
+package org.TurkishNLP.word2vec.corpus;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.TurkishNLP.shared.Timer;
+import org.deeplearning4j.text.sentenceiterator.SentenceIterator;
+import org.deeplearning4j.text.sentenceiterator.SentencePreProcessor;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Sentence iterator that reads a corpus file, or every file of a directory of shards, with several
+ * threads at once. Files are split into byte ranges on line boundaries, each range is read by a
+ * prefetch thread into a bounded queue and the iterator hands out lines from that queue.
+ *
+ * Lines come out in no particular order, which doesn't matter for Word2Vec training. The time the
+ * consumer spends waiting on an empty queue is measured so that input starvation shows up in the logs.
+ * If a shard can't be read, or the consumer is interrupted while waiting, hasNext throws an
+ * UncheckedIOException instead of ending the pass early.
+ */
+@Slf4j
+public class ShardedLineIterator implements SentenceIterator {
+    private static final int DEFAULT_QUEUE_CAPACITY = 65536;
+    // marks the end of a shard in the queue, compared by reference
+    private static final String END_OF_SHARD = new String("");
+
+    private final List<Shard> shards;
+    private final int threads;
+    private final BlockingQueue<String> queue;
+    private SentencePreProcessor preProcessor;
+
+    private ExecutorService readers;
+    // first read error of the current pass, set by the reader threads
+    private final AtomicReference<IOException> failure = new AtomicReference<>();
+    private int finishedShards;
+    private String next;
+    private long lines, passLines;
+    private long waitNanos, passWaitNanos;
+    private Timer.TimerToken passToken;
+
+    public ShardedLineIterator(@NonNull File corpus, int threads) throws IOException {
+        this(corpus, threads, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param corpus a corpus file or a directory whose files are all part of the corpus
+     * @param threads number of prefetch threads, files are split so that every thread has a range to read
+     * @param queueCapacity max number of lines read ahead of the consumer
+     */
+    public ShardedLineIterator(@NonNull File corpus, int threads, int queueCapacity) throws IOException {
+        if(!corpus.exists()) throw new FileNotFoundException(corpus.toString());
+        this.threads = Math.max(1, threads);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        List<Path> files;
+        if(corpus.isDirectory()) {
+            try(Stream<Path> paths = Files.list(corpus.toPath())) {
+                files = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+        } else {
+            files = new ArrayList<>();
+            files.add(corpus.toPath());
+        }
+        this.shards = new ArrayList<>();
+        int rangesPerFile = Math.max(1, (this.threads + files.size() - 1) / Math.max(1, files.size()));
+        for(Path file : files) {
+            long size = Files.size(file);
+            long rangeSize = Math.max(1, (size + rangesPerFile - 1) / rangesPerFile);
+            for(long start = 0; start < size; start += rangeSize) {
+                shards.add(new Shard(file, start, Math.min(size, start + rangeSize)));
+            }
+        }
+        log.info("Reading corpus [{}] as [{}] shards on [{}] threads", corpus, shards.size(), this.threads);
+    }
+
+    @Override
+    public synchronized boolean hasNext() {
+        if(next != null) return true;
+        if(readers == null) start();
+        while(finishedShards < shards.size()) {
+            String line = queue.poll();
+            if(line == null) {
+                long waitStart = System.nanoTime();
+                try {
+                    line = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    stop();
+                    throw new UncheckedIOException(new InterruptedIOException("Interrupted while reading the corpus"));
+                }
+                passWaitNanos += System.nanoTime() - waitStart;
+            }
+            if(line == END_OF_SHARD) {
+                IOException e = failure.get();
+                if(e != null) {
+                    stop();
+                    throw new UncheckedIOException(e);
+                }
+                finishedShards++;
+                continue;
+            }
+            next = line;
+            return true;
+        }
+        finishPass();
+        return false;
+    }
+
+    @Override
+    public synchronized String nextSentence() {
+        if(!hasNext()) throw new IllegalStateException("No more sentences");
+        String line = next;
+        next = null;
+        passLines++;
+        return preProcessor == null ? line : preProcessor.preProcess(line);
+    }
+
+    @Override
+    public synchronized void reset() {
+        stop();
+    }
+
+    @Override
+    public synchronized void finish() {
+        stop();
+    }
+
+    @Override
+    public SentencePreProcessor getPreProcessor() {
+        return preProcessor;
+    }
+
+    @Override
+    public void setPreProcessor(SentencePreProcessor preProcessor) {
+        this.preProcessor = preProcessor;
+    }
+
+    /**
+     * @return total time spent waiting for input over all passes, in nanoseconds
+     */
+    public synchronized long getWaitNanos() {
+        return waitNanos + passWaitNanos;
+    }
+
+    /**
+     * @return total number of lines handed out over all passes
+     */
+    public synchronized long getLines() {
+        return lines + passLines;
+    }
+
+    private void start() {
+        queue.clear();
+        failure.set(null);
+        finishedShards = 0;
+        passLines = 0;
+        passWaitNanos = 0;
+        passToken = Timer.newToken();
+        readers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "corpus-reader");
+            t.setDaemon(true);
+            return t;
+        });
+        BlockingQueue<String> target = queue;
+        for(Shard shard : shards) {
+            readers.submit(() -> {
+                try {
+                    shard.readInto(target);
+                } catch (IOException e) {
+                    log.error("Error reading shard [{}] of [{}]: {}", shard.start, shard.file, e.getMessage());
+                    failure.compareAndSet(null, new IOException(
+                            "Could not read shard at byte [" + shard.start + "] of [" + shard.file + "]", e));
+                } catch (InterruptedException e) {
+                    // reset or finish stopped the readers
+                    return;
+                }
+                try {
+                    target.put(END_OF_SHARD);
+                } catch (InterruptedException ignored) {
+                    // same as above
+                }
+            });
+        }
+    }
+
+    private void finishPass() {
+        if(passToken == null) return;
+        Timer.TimerResults pass = Timer.checkOut(passToken);
+        passToken = null;
+        log.info("Read [{}] lines in {}, waited on input for [{}] ms",
+                passLines, pass, TimeUnit.NANOSECONDS.toMillis(passWaitNanos));
+        lines += passLines;
+        waitNanos += passWaitNanos;
+        passLines = 0;
+        passWaitNanos = 0;
+    }
+
+    private void stop() {
+        if(readers != null) {
+            readers.shutdownNow();
+            readers = null;
+        }
+        if(passToken != null) finishPass();
+        queue.clear();
+        next = null;
+    }
+
+    /**
+     * The lines of a file that start in the byte range [start, end)
+     */
+    private static class Shard {
+        private final Path file;
+        private final long start, end;
+
+        Shard(Path file, long start, long end) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+        }
+
+        void readInto(BlockingQueue<String> queue) throws IOException, InterruptedException {
+            try(InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 20)) {
+                long position = 0;
+                if(start > 0) {
+                    // the line that runs over start belongs to the previous range, skip to the end of it
+                    skipFully(in, start - 1);
+                    position = start - 1;
+                    int b;
+                    while((b = in.read()) != -1) {
+                        position++;
+                        if(b == '\n') break;
+                    }
+                }
+                ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+                while(position < end) {
+                    line.reset();
+                    int b;
+                    while((b = in.read()) != -1) {
+                        position++;
+                        if(b == '\n') break;
+                        line.write(b);
+                    }
+                    if(b == -1 && line.size() == 0) break;
+                    queue.put(decode(line));
+                    if(Thread.currentThread().isInterrupted()) throw new InterruptedException();
+                }
+            }
+        }
+
+        private static String decode(ByteArrayOutputStream line) {
+            byte[] bytes = line.toByteArray();
+            int length = bytes.length;
+            if(length > 0 && bytes[length - 1] == '\r') length--;
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private static void skipFully(InputStream in, long n) throws IOException {
+            while(n > 0) {
+                long skipped = in.skip(n);
+                if(skipped <= 0) throw new EOFException();
+                n -= skipped;
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.TurkishNLP.word2vec.corpus;
+
+import lombok.NonNull;
+import org.deeplearning4j.models.sequencevectors.interfaces.SequenceIterator;
+import org.deeplearning4j.models.sequencevectors.sequence.Sequence;
+import org.deeplearning4j.models.sequencevectors.sequence.SequenceElement;
+
+/**
+ * Skips the first sequences of the first pass over another iterator, so that training resumed in the
+ * middle of an epoch continues where it stopped. Later passes see the whole corpus
+ */
+public class SkippingSequenceIterator<T extends SequenceElement> implements SequenceIterator<T> {
+    private final SequenceIterator<T> iterator;
+    private long toSkip;
+
+    public SkippingSequenceIterator(@NonNull SequenceIterator<T> iterator, long toSkip) {
+        this.iterator = iterator;
+        this.toSkip = toSkip;
+    }
+
+    @Override
+    public boolean hasMoreSequences() {
+        // skipped lazily, training may reset the iterator before it starts reading
+        while(toSkip > 0 && iterator.hasMoreSequences()) {
+            iterator.nextSequence();
+            toSkip--;
+        }
+        toSkip = 0;
+        return iterator.hasMoreSequences();
+    }
+
+    @Override
+    public Sequence<T> nextSequence() {
+        hasMoreSequences();
+        return iterator.nextSequence();
+    }
+
+    @Override
+    public void reset() {
+        iterator.reset();
+    }
+}
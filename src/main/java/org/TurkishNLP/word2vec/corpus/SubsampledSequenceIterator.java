@@ -0,0 +1,238 @@
+package org.TurkishNLP.word2vec.corpus;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.TurkishNLP.shared.Timer;
+import org.deeplearning4j.models.sequencevectors.interfaces.SequenceIterator;
+import org.deeplearning4j.models.sequencevectors.sequence.Sequence;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Feeds an {@link EncodedCorpus} to training with frequent words already subsampled. Each epoch gets its
+ * own subsampled copy of the corpus, written to a temp file as vocabulary indexes by a background thread
+ * while the previous epoch trains, so training reads a shorter stream and does no sampling itself.
+ *
+ * Words are kept with the same probability word2vec uses, (sqrt(f / (s * total)) + 1) * (s * total) / f.
+ * The model must be built with sampling 0 or frequent words would be subsampled twice
+ */
+@Slf4j
+public class SubsampledSequenceIterator implements SequenceIterator<VocabWord> {
+    private final EncodedCorpus corpus;
+    private final VocabCache<VocabWord> vocab;
+    private final int epochs;
+    private final long seed;
+    // corpus id -> vocabulary index, -1 for words not in the vocabulary
+    private final int[] indexes;
+    // corpus id -> probability of keeping the word
+    private final double[] keep;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "subsampler");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private int epoch = 0;
+    private Future<Path> next;
+    private Path current;
+    private DataInputStream in;
+    private boolean started = false;
+    private int sentenceId = 0;
+    private Sequence<VocabWord> buffered;
+
+    /**
+     * @param vocab the vocabulary of the model being trained, must already be built
+     * @param sampling subsampling threshold, like Word2VecParams.subSampling
+     * @param epochs number of epochs to prepare
+     */
+    public SubsampledSequenceIterator(@NonNull EncodedCorpus corpus, @NonNull VocabCache<VocabWord> vocab,
+                                      double sampling, int epochs, long seed) {
+        if(vocab.numWords() == 0) throw new IllegalArgumentException("Vocabulary has to be built before subsampling");
+        this.corpus = corpus;
+        this.vocab = vocab;
+        this.epochs = Math.max(1, epochs);
+        this.seed = seed;
+        this.indexes = new int[corpus.numWords() + 1];
+        this.keep = new double[corpus.numWords() + 1];
+        double threshold = sampling * vocab.totalWordOccurrences();
+        for(int id = 1; id < indexes.length; id++) {
+            VocabWord word = vocab.tokenFor(corpus.wordFor(id));
+            indexes[id] = word == null ? -1 : word.getIndex();
+            if(word == null) continue;
+            double f = word.getElementFrequency();
+            keep[id] = sampling > 0 ? Math.min(1.0, (Math.sqrt(f / threshold) + 1) * threshold / f) : 1.0;
+        }
+        next = writer.submit(() -> materialize(0));
+    }
+
+    @Override
+    public boolean hasMoreSequences() {
+        if(buffered == null) buffered = readSequence();
+        return buffered != null;
+    }
+
+    @Override
+    public Sequence<VocabWord> nextSequence() {
+        if(!hasMoreSequences()) throw new IllegalStateException("No more sequences");
+        Sequence<VocabWord> sequence = buffered;
+        buffered = null;
+        return sequence;
+    }
+
+    @Override
+    public synchronized void reset() {
+        // resets before anything of the current epoch was read don't start a new one
+        if(current != null && !started) return;
+        closeCurrent();
+        if(next == null) {
+            log.warn("All [{}] subsampled epochs were used, preparing another", epochs);
+            next = writer.submit(() -> materialize(epoch));
+        }
+        Timer.TimerToken t = Timer.newToken();
+        try {
+            current = next.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for subsampled epoch", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Subsampling epoch [" + (epoch + 1) + "] failed", e.getCause());
+        }
+        log.info("Waited {} for subsampled epoch [{}]", Timer.checkOut(t), epoch + 1);
+        epoch++;
+        int nextEpoch = epoch;
+        next = nextEpoch < epochs ? writer.submit(() -> materialize(nextEpoch)) : null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(current), 1 << 20));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        started = false;
+        sentenceId = 0;
+        buffered = null;
+    }
+
+    /**
+     * Stops the background thread and deletes the temp files
+     */
+    public synchronized void close() {
+        writer.shutdownNow();
+        closeCurrent();
+        if(next != null) {
+            try {
+                Files.deleteIfExists(next.get());
+            } catch (Exception ignored) {
+                // the writer was stopped before it finished
+            }
+            next = null;
+        }
+    }
+
+    private Sequence<VocabWord> readSequence() {
+        if(in == null) reset();
+        started = true;
+        try {
+            int index = readVarint(in);
+            if(index < 0) return null;
+            Sequence<VocabWord> sequence = new Sequence<>();
+            sequence.setSequenceId(sentenceId++);
+            // indexes are stored + 1 so that 0 can end the sentence
+            while(index > 0) {
+                sequence.addElement(vocab.elementAtIndex(index - 1));
+                index = readVarint(in);
+            }
+            return sequence;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void closeCurrent() {
+        if(in != null) {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+                // read-only temp file
+            }
+            in = null;
+        }
+        if(current != null) {
+            try {
+                Files.deleteIfExists(current);
+            } catch (IOException e) {
+                log.warn("Could not delete subsampled epoch [{}]", current);
+            }
+            current = null;
+        }
+    }
+
+    /**
+     * Writes the subsampled corpus of one epoch, sentences left empty are dropped
+     */
+    private Path materialize(int epochIndex) throws IOException {
+        Timer.TimerToken t = Timer.newToken();
+        SplittableRandom random = new SplittableRandom(seed + epochIndex);
+        Path file = Files.createTempFile("subsampled_epoch" + (epochIndex + 1) + "_", ".ids");
+        file.toFile().deleteOnExit();
+        long kept = 0, total = 0;
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 20))) {
+            long position = 0, length = corpus.dataLength();
+            boolean sentenceStarted = false;
+            while(position < length) {
+                int id = 0, shift = 0;
+                byte b;
+                do {
+                    b = corpus.byteAt(position++);
+                    id |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while((b & 0x80) != 0);
+
+                if(id == EncodedCorpus.END_OF_SENTENCE) {
+                    if(sentenceStarted) writeVarint(out, 0);
+                    sentenceStarted = false;
+                    continue;
+                }
+                if(indexes[id] < 0) continue;
+                total++;
+                if(keep[id] < 1.0 && random.nextDouble() >= keep[id]) continue;
+                writeVarint(out, indexes[id] + 1);
+                sentenceStarted = true;
+                kept++;
+                if(Thread.currentThread().isInterrupted()) throw new InterruptedIOException();
+            }
+            if(sentenceStarted) writeVarint(out, 0);
+        }
+        log.info("Subsampled epoch [{}]: kept [{}] of [{}] tokens in {}", epochIndex + 1, kept, total, Timer.checkOut(t));
+        return file;
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * @return the next value, -1 at the end of the stream
+     */
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0, shift = 0, b;
+        do {
+            b = in.read();
+            if(b < 0) return -1;
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,94 @@
+package org.TurkishNLP.word2vec.model_utils;
+
+import lombok.NonNull;
+import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+/**
+ * On-heap copy of the unit-normalized rows of a lookup table. Used for models that have been trained
+ * or loaded without a vectors file, the lookup table's syn0 is never modified
+ */
+public class ArrayVectors implements VectorStore {
+    private static final int COPY_BLOCK_ROWS = 4096;
+
+    private final VocabCache vocab;
+    private final int layerSize;
+    private final float[] data;
+
+    public ArrayVectors(@NonNull InMemoryLookupTable table, @NonNull VocabCache vocab) {
+        this.vocab = vocab;
+        this.layerSize = table.layerSize();
+        long length = (long) vocab.numWords() * layerSize;
+        if(length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many vectors to keep in memory, use a vectors file instead");
+        }
+        this.data = new float[(int) length];
+        float[] block = new float[COPY_BLOCK_ROWS * layerSize];
+        for(int from = 0; from < vocab.numWords(); from += COPY_BLOCK_ROWS) {
+            int to = Math.min(from + COPY_BLOCK_ROWS, vocab.numWords());
+            normalizedRows(table.getSyn0(), from, to, block);
+            System.arraycopy(block, 0, data, from * layerSize, (to - from) * layerSize);
+        }
+    }
+
+    /**
+     * Copies the rows [from, to) of syn0 into dest in row-major order, scaled to unit length
+     */
+    public static void normalizedRows(INDArray syn0, int from, int to, float[] dest) {
+        int layerSize = syn0.columns();
+        float[] block = syn0.get(NDArrayIndex.interval(from, to), NDArrayIndex.all()).dup().data().asFloat();
+        for(int r = 0; r < to - from; r++) {
+            int base = r * layerSize;
+            double norm = 0;
+            for(int j = 0; j < layerSize; j++) {
+                norm += block[base + j] * block[base + j];
+            }
+            float scale = norm == 0 ? 0f : (float) (1.0 / Math.sqrt(norm));
+            for(int j = 0; j < layerSize; j++) {
+                dest[base + j] = block[base + j] * scale;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return vocab.numWords();
+    }
+
+    @Override
+    public int layerSize() {
+        return layerSize;
+    }
+
+    @Override
+    public String wordAt(int index) {
+        return vocab.wordAtIndex(index);
+    }
+
+    @Override
+    public int indexOf(String word) {
+        return vocab.containsWord(word) ? vocab.indexOf(word) : -1;
+    }
+
+    @Override
+    public void vector(int index, float[] dest) {
+        System.arraycopy(data, index * layerSize, dest, 0, layerSize);
+    }
+
+    @Override
+    public void rows(int from, int to, float[] dest) {
+        System.arraycopy(data, from * layerSize, dest, 0, (to - from) * layerSize);
+    }
+
+    @Override
+    public double dot(int index, float[] query) {
+        int base = index * layerSize;
+        float sum = 0f;
+        for(int j = 0; j < layerSize; j++) {
+            sum += data[base + j] * query[j];
+        }
+        return sum;
+    }
+}
@@ -11,76 +11,294 @@ import org.nd4j.linalg.factory.Nd4j;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.stream.IntStream;
 
 /**
  * An adaptation of BasicModelUtils from the DL4J library that can return scores as well as labels
- * from wordsNearest queries. Also normalizes vectors by default
+ * from wordsNearest queries. Queries run against unit-normalized vectors kept apart from syn0
+ *
+ * Scores are the cosine similarity between the query and each word: the query is the sum of the
+ * normalized vectors of the positive words minus the negative ones. BasicModelUtils instead divides the
+ * query by the column norms of syn0 and takes its dot product with the normalized rows, so scores, and
+ * occasionally the order of close results, differ from DL4J's and from models queried before this change
  *
  * Most of the code is reused and reorganized from BasicModelUtils
  * @param <T>
  */
 public class BetterModelUtils<T extends SequenceElement> extends BasicModelUtils<T> {
+    // below this many rows a query is scanned on the calling thread
+    private static final int PARALLEL_SCAN_MIN_ROWS = 65536;
+    // rows of the vectors scored per matrix product in batch queries
+    private static final int BATCH_TILE_ROWS = 4096;
+    // the matrix product sums in another order than VectorStore.dot, batch scores this close to a target's
+    // are compared again with dot so that batch ranks are the same as rankOf's
+    private static final double RANK_TIE_EPSILON = 1e-4;
 
-    public List<ScoredLabel> wordsNearestScored(INDArray word, int top) {
-        InMemoryLookupTable l = (InMemoryLookupTable) lookupTable;
-        INDArray syn0 = l.getSyn0();
-        if (!normalized) {
+    private volatile VectorStore vectors;
+
+    /**
+     * Sets the normalized vectors queries are run against. If none are set a normalized copy of
+     * the lookup table is made on the first query, syn0 itself is never modified
+     */
+    public void setVectors(VectorStore vectors) {
+        this.vectors = vectors;
+    }
+
+    public VectorStore getVectors() {
+        if (vectors == null) {
             synchronized (this) {
-                if (!normalized) {
-                    syn0.diviColumnVector(syn0.norm2(1));
-                    normalized = true;
+                if (vectors == null) {
+                    vectors = new ArrayVectors((InMemoryLookupTable) lookupTable, vocabCache);
                 }
             }
         }
-        INDArray weights = syn0.norm2(0).rdivi(1).muli(word);
-        INDArray distances = syn0.mulRowVector(weights).sum(1);
-        INDArray[] sorted = Nd4j.sortWithIndices(distances, 0, false);
-        INDArray sort = sorted[0];
+        return vectors;
+    }
+
+    public List<ScoredLabel> wordsNearestScored(INDArray word, int top) {
+        return wordsNearestScored(getVectors(), word.dup().data().asFloat(), top);
+    }
+
+    public List<ScoredLabel> wordsNearestScored(Collection<String> positive, Collection<String> negative, int top) {
+        return wordsNearestScored(getVectors(), positive, negative, top);
+    }
+
+    /**
+     * Same as wordsNearestScored but runs against a {@link VectorStore} instead of the lookup table,
+     * so it also works for read-only models that have no syn0 in memory
+     */
+    public List<ScoredLabel> wordsNearestScored(VectorStore vectors, Collection<String> positive,
+                                                Collection<String> negative, int top) {
+        return wordsNearestScored(vectors, queryVector(vectors, positive, negative), top);
+    }
+
+    /**
+     * Sum of the normalized vectors of the positive words minus those of the negative words
+     */
+    public static float[] queryVector(VectorStore vectors, Collection<String> positive, Collection<String> negative) {
+        return queryVector(vectors, positive.stream().mapToInt(vectors::indexOf).toArray(),
+                negative.stream().mapToInt(vectors::indexOf).toArray());
+    }
+
+    /**
+     * Same as queryVector on words, with the words given as rows of the vectors
+     */
+    public static float[] queryVector(VectorStore vectors, int[] positive, int[] negative) {
+        float[] query = new float[vectors.layerSize()];
+        float[] temp = new float[vectors.layerSize()];
+        for (int row : positive) {
+            vectors.vector(row, temp);
+            for (int j = 0; j < temp.length; j++) query[j] += temp[j];
+        }
+        for (int row : negative) {
+            vectors.vector(row, temp);
+            for (int j = 0; j < temp.length; j++) query[j] -= temp[j];
+        }
+        return query;
+    }
+
+    /**
+     * Approximate version of wordsNearestScored that searches an HNSW index built on the vectors
+     *
+     * @param ef candidate list size of the search, trades latency for recall
+     */
+    public List<ScoredLabel> wordsNearestScored(HnswIndex index, VectorStore vectors, float[] query, int top, int ef) {
+        double queryNorm = 0;
+        for (float f : query) queryNorm += f * f;
+        queryNorm = Math.sqrt(queryNorm);
+
+        // a couple of extra results in case UNK or STOP are among them
+        int k = Math.min(top + 2, vectors.size());
+        int[] ids = new int[k];
+        double[] scores = new double[k];
+        int found = index.search(query, k, ef, ids, scores);
         List<ScoredLabel> ret = new ArrayList<>();
+        for (int i = 0; i < found && ret.size() < top; i++) {
+            String add = vectors.wordAt(ids[i]);
+            if (add == null || add.equals("UNK") || add.equals("STOP")) continue;
+            ret.add(new ScoredLabel(add, scores[i] / queryNorm));
+        }
+        return ret;
+    }
 
-        if (top > sort.length())
-            top = sort.length();
-        //there will be a redundant word
-        int end = top;
-        for (int i = 0; i < end; i++) {
-            String add = vocabCache.wordAtIndex(sort.getInt(i));
-            if (add == null || add.equals("UNK") || add.equals("STOP")) {
-                end++;
-                if (end >= sort.length())
-                    break;
-                continue;
-            }
-//            System.out.println(sort.getInt(i) + " " + vocabCache.wordAtIndex(sort.getInt(i)) + " : " + sorted[1].getDouble(i));
-            ret.add(new ScoredLabel(vocabCache.wordAtIndex(sort.getInt(i)), sorted[1].getDouble(i)));
+    public List<ScoredLabel> wordsNearestScored(VectorStore vectors, float[] query, int top) {
+        return wordsNearestScored(vectors, query, top, new int[0]);
+    }
+
+    /**
+     * Exact top-k query. Rows are scanned in order with a bounded min-heap per range, large vocabularies
+     * are split in ranges scanned in parallel and the heaps are merged at the end, so nothing of size V
+     * is allocated or sorted
+     *
+     * @param exclude indexes of rows that can't be in the results, UNK and STOP are always excluded
+     */
+    public List<ScoredLabel> wordsNearestScored(VectorStore vectors, float[] query, int top, int... exclude) {
+        double queryNorm = 0;
+        for (float f : query) queryNorm += f * f;
+        queryNorm = Math.sqrt(queryNorm);
+
+        int[] excluded = Arrays.copyOf(exclude, exclude.length + 2);
+        excluded[exclude.length] = vectors.indexOf("UNK");
+        excluded[exclude.length + 1] = vectors.indexOf("STOP");
+        Arrays.sort(excluded);
+
+        int size = vectors.size();
+        int k = Math.max(0, Math.min(top, size));
+        int ranges = size < PARALLEL_SCAN_MIN_ROWS ? 1 : Runtime.getRuntime().availableProcessors() * 4;
+        int rangeRows = (size + ranges - 1) / ranges;
+
+        ScoreHeap merged = IntStream.range(0, ranges)
+                .parallel()
+                .mapToObj(r -> scanRange(vectors, query, r * rangeRows, Math.min(size, (r + 1) * rangeRows), k, excluded))
+                .reduce((a, b) -> {
+                    int[] ids = new int[b.size()];
+                    double[] scores = new double[b.size()];
+                    b.drainDescending(ids, scores);
+                    for (int i = 0; i < ids.length; i++) a.offer(ids[i], scores[i], k);
+                    return a;
+                })
+                .orElseGet(() -> ScoreHeap.minHeap(0));
+
+        int[] ids = new int[merged.size()];
+        double[] scores = new double[merged.size()];
+        merged.drainDescending(ids, scores);
+        List<ScoredLabel> ret = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            String add = vectors.wordAt(ids[i]);
+            if (add == null) continue;
+            ret.add(new ScoredLabel(add, scores[i] / queryNorm));
         }
         return ret;
+    }
 
-        /**
-         * THIS IS FOR ON-DISK
-         */
-//        Counter<String> dist = new Counter<>();
-//
-//        for (String s : vocabCache.words()) {
-//            INDArray otherVec = lookupTable.vector(s);
-//            double sim = Transforms.cosineSim(words, otherVec);
-//            dist.incrementCount(s, (float) sim);
-//        }
-//        dist.keepTopNElements(top);
-////        System.out.println(dist.keySet());
-//        for(String s : dist.keySet()) {
-//            System.out.println(s + " : " + dist.getProbability(s));
-//        }
+    /**
+     * 1-based rank of the target row among the rows that aren't excluded, ordered by score against the
+     * query. Only the target's score is kept and the rows above it are counted, nothing is allocated per row
+     *
+     * @param exclude indexes of rows that aren't ranked, UNK and STOP are always excluded
+     * @return the rank or -1 if the target itself is excluded
+     */
+    public int rankOf(VectorStore vectors, float[] query, int target, int... exclude) {
+        int[] excluded = Arrays.copyOf(exclude, exclude.length + 2);
+        excluded[exclude.length] = vectors.indexOf("UNK");
+        excluded[exclude.length + 1] = vectors.indexOf("STOP");
+        Arrays.sort(excluded);
+        if (target < 0 || Arrays.binarySearch(excluded, target) >= 0) return -1;
+
+        double targetScore = vectors.dot(target, query);
+        int size = vectors.size();
+        int ranges = size < PARALLEL_SCAN_MIN_ROWS ? 1 : Runtime.getRuntime().availableProcessors() * 4;
+        int rangeRows = (size + ranges - 1) / ranges;
+        return 1 + IntStream.range(0, ranges)
+                .parallel()
+                .map(r -> {
+                    int above = 0;
+                    for (int i = r * rangeRows, to = Math.min(size, (r + 1) * rangeRows); i < to; i++) {
+                        if (vectors.dot(i, query) > targetScore && Arrays.binarySearch(excluded, i) < 0) above++;
+                    }
+                    return above;
+                })
+                .sum();
     }
 
-    public List<ScoredLabel> wordsNearestScored(Collection<String> positive, Collection<String> negative, int top) {
-        INDArray words = Nd4j.create(lookupTable.layerSize());
-        for (String s : positive)
-            words.addi(lookupTable.vector(s));
+    /**
+     * Exact top-k for many queries at once. The vectors are read in tiles of rows and each tile is
+     * scored against all queries with a single matrix product, so a batch of Q queries costs about
+     * V / TILE_ROWS GEMM calls instead of Q full scans
+     *
+     * @param exclude per query, indexes of rows that can't be in its results (may be null)
+     * @param targets per query, index of a row to rank or -1 (may be null)
+     * @param ranks filled with the 1-based rank of each target among the non-excluded rows, -1 if the
+     *              target is excluded or not given (may be null if targets is)
+     * @return top-k labels of every query, in query order
+     */
+    public List<List<ScoredLabel>> wordsNearestScoredBatch(VectorStore vectors, float[][] queries, int top,
+                                                           int[][] exclude, int[] targets, int[] ranks) {
+        int q = queries.length;
+        if (q == 0) return new ArrayList<>();
+        int layerSize = vectors.layerSize();
+        int size = vectors.size();
+        int k = Math.max(0, Math.min(top, size));
+
+        int unk = vectors.indexOf("UNK"), stop = vectors.indexOf("STOP");
+        int[][] excluded = new int[q][];
+        boolean[] ranked = new boolean[q];
+        double[] targetScores = new double[q];
+        int[] higher = new int[q];
+        ScoreHeap[] heaps = new ScoreHeap[q];
+        float[] flatQueries = new float[q * layerSize];
+        for (int j = 0; j < q; j++) {
+            int[] ex = exclude == null || exclude[j] == null ? new int[0] : exclude[j];
+            excluded[j] = Arrays.copyOf(ex, ex.length + 2);
+            excluded[j][ex.length] = unk;
+            excluded[j][ex.length + 1] = stop;
+            Arrays.sort(excluded[j]);
+            heaps[j] = ScoreHeap.minHeap(k);
+            System.arraycopy(queries[j], 0, flatQueries, j * layerSize, layerSize);
+            ranked[j] = targets != null && targets[j] >= 0 && Arrays.binarySearch(excluded[j], targets[j]) < 0;
+            if (ranked[j]) targetScores[j] = vectors.dot(targets[j], queries[j]);
+        }
+        INDArray queryMatrix = Nd4j.create(flatQueries, new int[]{q, layerSize});
+
+        float[] tile = new float[BATCH_TILE_ROWS * layerSize];
+        for (int from = 0; from < size; from += BATCH_TILE_ROWS) {
+            int to = Math.min(from + BATCH_TILE_ROWS, size);
+            int rows = to - from;
+            vectors.rows(from, to, tile);
+            float[] tileData = rows == BATCH_TILE_ROWS ? tile : Arrays.copyOf(tile, rows * layerSize);
+            INDArray tileMatrix = Nd4j.create(tileData, new int[]{rows, layerSize});
+            // q x rows, one contiguous line of scores per query
+            float[] scores = queryMatrix.mmul(tileMatrix.transpose()).dup('c').data().asFloat();
+            for (int j = 0; j < q; j++) {
+                int base = j * rows;
+                for (int r = 0; r < rows; r++) {
+                    int i = from + r;
+                    if (Arrays.binarySearch(excluded[j], i) >= 0) continue;
+                    float score = scores[base + r];
+                    if (ranked[j] && i != targets[j] && isAbove(vectors, i, queries[j], score, targetScores[j])) {
+                        higher[j]++;
+                    }
+                    if (k > 0) heaps[j].offer(i, score, k);
+                }
+            }
+        }
+
+        List<List<ScoredLabel>> ret = new ArrayList<>(q);
+        for (int j = 0; j < q; j++) {
+            double queryNorm = 0;
+            for (float f : queries[j]) queryNorm += f * f;
+            queryNorm = Math.sqrt(queryNorm);
+            int[] ids = new int[heaps[j].size()];
+            double[] scores = new double[ids.length];
+            heaps[j].drainDescending(ids, scores);
+            List<ScoredLabel> labels = new ArrayList<>(ids.length);
+            for (int i = 0; i < ids.length; i++) {
+                String add = vectors.wordAt(ids[i]);
+                if (add != null) labels.add(new ScoredLabel(add, scores[i] / queryNorm));
+            }
+            ret.add(labels);
+            if (ranks != null) ranks[j] = ranked[j] ? higher[j] + 1 : -1;
+        }
+        return ret;
+    }
 
-        for (String s : negative)
-            words.addi(lookupTable.vector(s).mul(-1));
+    /**
+     * Whether row i scores above the target the way rankOf decides it, score is the row's batch score
+     */
+    private static boolean isAbove(VectorStore vectors, int i, float[] query, float score, double targetScore) {
+        if (score > targetScore + RANK_TIE_EPSILON) return true;
+        if (score < targetScore - RANK_TIE_EPSILON) return false;
+        return vectors.dot(i, query) > targetScore;
+    }
 
-        return wordsNearestScored(words, top);
+    private static ScoreHeap scanRange(VectorStore vectors, float[] query, int from, int to, int k, int[] excluded) {
+        ScoreHeap heap = ScoreHeap.minHeap(k);
+        if (k == 0) return heap;
+        for (int i = from; i < to; i++) {
+            if (Arrays.binarySearch(excluded, i) >= 0) continue;
+            heap.offer(i, vectors.dot(i, query), k);
+        }
+        return heap;
     }
 
     public class ScoredLabel {
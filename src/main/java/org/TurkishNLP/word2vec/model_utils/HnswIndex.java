@@ -0,0 +1,419 @@
+package org.TurkishNLP.word2vec.model_utils;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.TurkishNLP.shared.Timer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Hierarchical navigable small world graph (Malkov & Yashunin) over the rows of a {@link VectorStore}
+ * for approximate nearest neighbor queries. Rows are unit-normalized so the dot product is used as
+ * the similarity.
+ *
+ * Every node has up to 2M neighbors on level 0 and up to M on each of its upper levels. Level 0 holds
+ * almost all of the index, it is memory-mapped when the index is read from disk while the few upper
+ * level lists are kept on heap.
+ *
+ * Queries take an ef parameter, the size of the candidate list kept while searching level 0. Higher ef
+ * gives better recall at the cost of latency.
+ */
+@Slf4j
+public class HnswIndex {
+    public static final String INDEX_EXTENSION = ".hnsw";
+    public static final int DEFAULT_M = 16;
+    public static final int DEFAULT_EF_CONSTRUCTION = 200;
+
+    private static final int MAGIC = 0x484e5357;
+    private static final int VERSION = 1;
+    private static final int DATA_ALIGNMENT = 64;
+    private static final int LOG_PROGRESS_FREQ = 50000;
+
+    private final VectorStore vectors;
+    private final int size, m, m0;
+    private final byte[] levels;
+    // level 0 lists, (m0 + 1) ints per node: neighbor count followed by the neighbors
+    private final IntBuffer level0;
+    // upper lists of nodes with level > 0, (m + 1) ints per level starting from level 1
+    private final int[][] upper;
+    private int entryPoint;
+    private int maxLevel;
+
+    private final ThreadLocal<VisitedSet> visited;
+
+    private HnswIndex(VectorStore vectors, int m, byte[] levels, IntBuffer level0, int[][] upper,
+                      int entryPoint, int maxLevel) {
+        this.vectors = vectors;
+        this.size = levels.length;
+        this.m = m;
+        this.m0 = 2 * m;
+        this.levels = levels;
+        this.level0 = level0;
+        this.upper = upper;
+        this.entryPoint = entryPoint;
+        this.maxLevel = maxLevel;
+        this.visited = ThreadLocal.withInitial(() -> new VisitedSet(size));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    //***************** BUILDING *****************
+    public static HnswIndex build(@NonNull VectorStore vectors) {
+        return build(vectors, DEFAULT_M, DEFAULT_EF_CONSTRUCTION, 42);
+    }
+
+    /**
+     * @param m max number of neighbors per node on upper levels, twice as many are kept on level 0
+     * @param efConstruction candidate list size used while inserting, higher builds a better graph slower
+     */
+    public static HnswIndex build(@NonNull VectorStore vectors, int m, int efConstruction, long seed) {
+        Timer.TimerToken t = Timer.newToken();
+        int n = vectors.size();
+        if((long) n * (2 * m + 1) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many vectors for a single index");
+        }
+        log.info("Building HNSW index over [{}] vectors with M=[{}], efConstruction=[{}]", n, m, efConstruction);
+        Random random = new Random(seed);
+        double levelMultiplier = 1 / Math.log(m);
+        byte[] levels = new byte[n];
+        int[][] upper = new int[n][];
+        for(int i = 0; i < n; i++) {
+            int level = (int) Math.min(-Math.log(1 - random.nextDouble()) * levelMultiplier, Byte.MAX_VALUE);
+            levels[i] = (byte) level;
+            if(level > 0) upper[i] = new int[level * (m + 1)];
+        }
+        HnswIndex index = new HnswIndex(vectors, m, levels, IntBuffer.wrap(new int[n * (2 * m + 1)]), upper, -1, -1);
+
+        float[] query = new float[vectors.layerSize()];
+        for(int i = 0; i < n; i++) {
+            vectors.vector(i, query);
+            index.insert(i, query, efConstruction);
+            if((i + 1) % LOG_PROGRESS_FREQ == 0) {
+                log.info("Inserted [{}] of [{}] vectors", i + 1, n);
+            }
+        }
+        log.info("Finished building index in {}", Timer.checkOut(t));
+        return index;
+    }
+
+    private void insert(int node, float[] query, int efConstruction) {
+        int level = levels[node];
+        if(entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+        int ep = entryPoint;
+        for(int l = maxLevel; l > level; l--) {
+            ep = greedyClosest(query, ep, l);
+        }
+        ScoreHeap candidates = ScoreHeap.minHeap(efConstruction + 1);
+        int[] selected = new int[m0];
+        double[] selectedScores = new double[m0];
+        for(int l = Math.min(level, maxLevel); l >= 0; l--) {
+            searchLayer(query, ep, efConstruction, l, candidates);
+            int[] ids = new int[candidates.size()];
+            double[] scores = new double[candidates.size()];
+            candidates.drainDescending(ids, scores);
+            ep = ids[0];
+
+            int count = selectNeighbors(ids, scores, ids.length, maxLinks(l), selected, selectedScores);
+            setLinks(node, l, selected, count);
+            for(int i = 0; i < count; i++) {
+                addLink(selected[i], node, selectedScores[i], l);
+            }
+        }
+        if(level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    /**
+     * Neighbor selection heuristic: walking the candidates from the most similar, a candidate is kept only
+     * if it is more similar to the base node than to every neighbor kept so far. This keeps links pointing
+     * in different directions which is what makes the graph navigable
+     */
+    private int selectNeighbors(int[] ids, double[] scores, int n, int max, int[] selected, double[] selectedScores) {
+        int count = 0;
+        float[] candidate = new float[vectors.layerSize()];
+        for(int i = 0; i < n && count < max; i++) {
+            vectors.vector(ids[i], candidate);
+            boolean keep = true;
+            for(int j = 0; j < count; j++) {
+                if(vectors.dot(selected[j], candidate) > scores[i]) {
+                    keep = false;
+                    break;
+                }
+            }
+            if(keep) {
+                selected[count] = ids[i];
+                selectedScores[count] = scores[i];
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // links target to node, pruning target's neighbors with the heuristic if its list is full
+    private void addLink(int target, int node, double score, int level) {
+        int max = maxLinks(level);
+        int count = linkCount(target, level);
+        if(count < max) {
+            setLink(target, level, count, node);
+            setLinkCount(target, level, count + 1);
+            return;
+        }
+        float[] base = new float[vectors.layerSize()];
+        vectors.vector(target, base);
+        ScoreHeap heap = ScoreHeap.maxHeap(count + 1);
+        heap.push(node, score);
+        for(int i = 0; i < count; i++) {
+            int neighbor = link(target, level, i);
+            heap.push(neighbor, vectors.dot(neighbor, base));
+        }
+        int[] ids = new int[heap.size()];
+        double[] scores = new double[heap.size()];
+        heap.drainDescending(ids, scores);
+        int[] selected = new int[max];
+        int kept = selectNeighbors(ids, scores, ids.length, max, selected, new double[max]);
+        setLinks(target, level, selected, kept);
+    }
+
+    //***************** SEARCHING *****************
+    /**
+     * Finds the approximate k nearest rows to the query
+     *
+     * @param ef size of the candidate list, raised to k if smaller
+     * @param ids filled with the row indexes of the results from the most similar
+     * @param scores filled with the dot products of the results with the query
+     * @return number of results, at most k
+     */
+    public int search(float[] query, int k, int ef, int[] ids, double[] scores) {
+        if(entryPoint < 0) return 0;
+        int ep = entryPoint;
+        for(int l = maxLevel; l > 0; l--) {
+            ep = greedyClosest(query, ep, l);
+        }
+        ScoreHeap results = ScoreHeap.minHeap(Math.max(ef, k) + 1);
+        searchLayer(query, ep, Math.max(ef, k), 0, results);
+        while(results.size() > k) results.pop();
+        int n = results.size();
+        results.drainDescending(ids, scores);
+        return n;
+    }
+
+    // follows the most similar neighbor on a level until no neighbor is more similar
+    private int greedyClosest(float[] query, int ep, int level) {
+        double best = vectors.dot(ep, query);
+        boolean changed = true;
+        while(changed) {
+            changed = false;
+            int current = ep;
+            int count = linkCount(current, level);
+            for(int i = 0; i < count; i++) {
+                int neighbor = link(current, level, i);
+                double score = vectors.dot(neighbor, query);
+                if(score > best) {
+                    best = score;
+                    ep = neighbor;
+                    changed = true;
+                }
+            }
+        }
+        return ep;
+    }
+
+    // best-first search on one level, leaves the ef most similar nodes found in results
+    private void searchLayer(float[] query, int ep, int ef, int level, ScoreHeap results) {
+        VisitedSet seen = visited.get();
+        seen.reset();
+        ScoreHeap candidates = ScoreHeap.maxHeap(ef + 1);
+        results.clear();
+
+        double epScore = vectors.dot(ep, query);
+        seen.add(ep);
+        candidates.push(ep, epScore);
+        results.push(ep, epScore);
+        while(!candidates.isEmpty()) {
+            double score = candidates.peekScore();
+            if(results.size() >= ef && score < results.peekScore()) break;
+            int current = candidates.pop();
+            int count = linkCount(current, level);
+            for(int i = 0; i < count; i++) {
+                int neighbor = link(current, level, i);
+                if(!seen.add(neighbor)) continue;
+                double neighborScore = vectors.dot(neighbor, query);
+                if(results.size() < ef || neighborScore > results.peekScore()) {
+                    candidates.push(neighbor, neighborScore);
+                    results.push(neighbor, neighborScore);
+                    if(results.size() > ef) results.pop();
+                }
+            }
+        }
+    }
+
+    //***************** LINKS *****************
+    private int maxLinks(int level) {
+        return level == 0 ? m0 : m;
+    }
+
+    private int linkCount(int node, int level) {
+        return level == 0 ? level0.get(node * (m0 + 1)) : upper[node][(level - 1) * (m + 1)];
+    }
+
+    private int link(int node, int level, int i) {
+        return level == 0 ? level0.get(node * (m0 + 1) + 1 + i) : upper[node][(level - 1) * (m + 1) + 1 + i];
+    }
+
+    private void setLinkCount(int node, int level, int count) {
+        if(level == 0) level0.put(node * (m0 + 1), count);
+        else upper[node][(level - 1) * (m + 1)] = count;
+    }
+
+    private void setLink(int node, int level, int i, int neighbor) {
+        if(level == 0) level0.put(node * (m0 + 1) + 1 + i, neighbor);
+        else upper[node][(level - 1) * (m + 1) + 1 + i] = neighbor;
+    }
+
+    private void setLinks(int node, int level, int[] neighbors, int count) {
+        for(int i = 0; i < count; i++) {
+            setLink(node, level, i, neighbors[i]);
+        }
+        setLinkCount(node, level, count);
+    }
+
+    //***************** READ/WRITE *****************
+    /**
+     * Writes the index, the vectors it was built on are not included
+     *
+     * @return number of bytes written
+     */
+    public long write(@NonNull Path target) throws IOException {
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.writeInt(size);
+        header.writeInt(m);
+        header.writeInt(entryPoint);
+        header.writeInt(maxLevel);
+        header.write(levels);
+        header.flush();
+
+        try(FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, ByteBuffer.wrap(headerBytes.toByteArray()));
+            channel.position(align(headerBytes.size()));
+
+            int nodesPerBlock = 4096;
+            ByteBuffer buffer = ByteBuffer.allocateDirect(nodesPerBlock * (m0 + 1) * Integer.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            for(int from = 0; from < size; from += nodesPerBlock) {
+                int to = Math.min(from + nodesPerBlock, size);
+                buffer.clear();
+                for(int i = from * (m0 + 1); i < to * (m0 + 1); i++) {
+                    buffer.putInt(level0.get(i));
+                }
+                buffer.flip();
+                writeFully(channel, buffer);
+            }
+            for(int node = 0; node < size; node++) {
+                if(upper[node] == null) continue;
+                ByteBuffer links = ByteBuffer.allocate(upper[node].length * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                links.asIntBuffer().put(upper[node]);
+                writeFully(channel, links);
+            }
+            return channel.position();
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #write}, level 0 is memory-mapped
+     *
+     * @param vectors the vectors the index was built on
+     */
+    public static HnswIndex read(@NonNull File file, @NonNull VectorStore vectors) throws IOException {
+        Timer.TimerToken t = Timer.newToken();
+        int size, m, entryPoint, maxLevel;
+        byte[] levels;
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if(in.readInt() != MAGIC) throw new IOException("Not an index file: " + file);
+            int version = in.readInt();
+            if(version != VERSION) throw new IOException("Unsupported index file version [" + version + "]");
+            size = in.readInt();
+            m = in.readInt();
+            entryPoint = in.readInt();
+            maxLevel = in.readInt();
+            levels = new byte[size];
+            in.readFully(levels);
+        }
+        if(size != vectors.size()) {
+            throw new IOException("Index [" + file + "] has " + size + " nodes but there are " + vectors.size() + " vectors");
+        }
+
+        int m0 = 2 * m;
+        long offset = align(6 * Integer.BYTES + size);
+        long level0Bytes = (long) size * (m0 + 1) * Integer.BYTES;
+        int[][] upper = new int[size][];
+        IntBuffer level0;
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            level0 = channel.map(FileChannel.MapMode.READ_ONLY, offset, level0Bytes)
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            IntBuffer rest = channel.map(FileChannel.MapMode.READ_ONLY, offset + level0Bytes,
+                    channel.size() - offset - level0Bytes).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            for(int node = 0; node < size; node++) {
+                if(levels[node] == 0) continue;
+                upper[node] = new int[levels[node] * (m + 1)];
+                rest.get(upper[node]);
+            }
+        }
+        log.info("Read HNSW index over [{}] vectors from [{}] in {}", size, file, Timer.checkOut(t));
+        return new HnswIndex(vectors, m, levels, level0, upper, entryPoint, maxLevel);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static long align(long offset) {
+        return ((offset + DATA_ALIGNMENT - 1) / DATA_ALIGNMENT) * DATA_ALIGNMENT;
+    }
+
+    // Marks visited nodes with a generation number so it doesn't have to be cleared between searches
+    private static class VisitedSet {
+        private final int[] marks;
+        private int generation = 0;
+
+        VisitedSet(int size) {
+            marks = new int[size];
+        }
+
+        void reset() {
+            generation++;
+            if(generation == 0) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+        }
+
+        // returns false if the node was already visited
+        boolean add(int node) {
+            if(marks[node] == generation) return false;
+            marks[node] = generation;
+            return true;
+        }
+    }
+}
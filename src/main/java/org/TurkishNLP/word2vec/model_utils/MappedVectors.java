@@ -0,0 +1,353 @@
+package org.TurkishNLP.word2vec.model_utils;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.TurkishNLP.shared.HalfFloat;
+import org.TurkishNLP.shared.Timer;
+import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+
+/**
+ * Unit-normalized word vectors backed by a memory-mapped file. Only the vocabulary is kept on heap,
+ * vector rows are paged in by the OS the first time they are touched so a read-only model
+ * costs (almost) nothing until it is queried.
+ *
+ * Rows can be stored as 32 bit floats, 16 bit floats or 8 bit integers with a per-row scale.
+ * The quantized encodings are 2x and 4x smaller and scans over them are bound by memory bandwidth
+ * so they are faster as well, at the cost of some precision in the scores.
+ *
+ * File layout: a big-endian header (magic, version, word count, layer size, encoding, words) followed by
+ * the little-endian row scales (INT8 only) and rows, each section starting at an aligned offset.
+ */
+@Slf4j
+public class MappedVectors implements VectorStore {
+    public enum Encoding {
+        FLOAT32(Float.BYTES), FLOAT16(Short.BYTES), INT8(Byte.BYTES);
+
+        private final int bytesPerValue;
+
+        Encoding(int bytesPerValue) {
+            this.bytesPerValue = bytesPerValue;
+        }
+
+        public int getBytesPerValue() {
+            return bytesPerValue;
+        }
+    }
+
+    public static final String VECTORS_EXTENSION = ".vectors";
+
+    private static final int MAGIC = 0x57325643;
+    private static final int VERSION = 2;
+    private static final int DATA_ALIGNMENT = 64;
+    private static final int WRITE_BLOCK_ROWS = 4096;
+
+    private final String[] words;
+    private final HashMap<String, Integer> indexes;
+    private final int layerSize;
+    private final Encoding encoding;
+    private final int rowsPerChunk;
+    // only the buffers of the file's encoding are set
+    private final FloatBuffer[] floatChunks;
+    private final ShortBuffer[] halfChunks;
+    private final ByteBuffer[] byteChunks;
+    private final float[] scales;
+
+    private MappedVectors(String[] words, int layerSize, Encoding encoding, int rowsPerChunk,
+                          ByteBuffer[] chunks, float[] scales) {
+        this.words = words;
+        this.layerSize = layerSize;
+        this.encoding = encoding;
+        this.rowsPerChunk = rowsPerChunk;
+        this.scales = scales;
+        this.floatChunks = encoding == Encoding.FLOAT32 ? new FloatBuffer[chunks.length] : null;
+        this.halfChunks = encoding == Encoding.FLOAT16 ? new ShortBuffer[chunks.length] : null;
+        this.byteChunks = encoding == Encoding.INT8 ? chunks : null;
+        for(int c = 0; c < chunks.length; c++) {
+            if(floatChunks != null) floatChunks[c] = chunks[c].asFloatBuffer();
+            if(halfChunks != null) halfChunks[c] = chunks[c].asShortBuffer();
+        }
+        this.indexes = new HashMap<>(words.length * 2);
+        for(int i = 0; i < words.length; i++) {
+            indexes.put(words[i], i);
+        }
+    }
+
+    @Override
+    public int size() {
+        return words.length;
+    }
+
+    @Override
+    public int layerSize() {
+        return layerSize;
+    }
+
+    public Encoding getEncoding() {
+        return encoding;
+    }
+
+    @Override
+    public String wordAt(int index) {
+        return words[index];
+    }
+
+    @Override
+    public int indexOf(String word) {
+        Integer i = indexes.get(word);
+        return i == null ? -1 : i;
+    }
+
+    @Override
+    public void vector(int index, float[] dest) {
+        int chunk = index / rowsPerChunk;
+        int base = (index % rowsPerChunk) * layerSize;
+        switch(encoding) {
+            case FLOAT32:
+                FloatBuffer floats = floatChunks[chunk];
+                for(int j = 0; j < layerSize; j++) dest[j] = floats.get(base + j);
+                break;
+            case FLOAT16:
+                ShortBuffer halves = halfChunks[chunk];
+                for(int j = 0; j < layerSize; j++) dest[j] = HalfFloat.toFloat(halves.get(base + j));
+                break;
+            case INT8:
+                ByteBuffer bytes = byteChunks[chunk];
+                float scale = scales[index];
+                for(int j = 0; j < layerSize; j++) dest[j] = bytes.get(base + j) * scale;
+                break;
+        }
+    }
+
+    @Override
+    public double dot(int index, float[] query) {
+        int chunk = index / rowsPerChunk;
+        int base = (index % rowsPerChunk) * layerSize;
+        float sum = 0f;
+        switch(encoding) {
+            case FLOAT32:
+                FloatBuffer floats = floatChunks[chunk];
+                for(int j = 0; j < layerSize; j++) sum += floats.get(base + j) * query[j];
+                return sum;
+            case FLOAT16:
+                ShortBuffer halves = halfChunks[chunk];
+                for(int j = 0; j < layerSize; j++) sum += HalfFloat.toFloat(halves.get(base + j)) * query[j];
+                return sum;
+            case INT8:
+                // the row scale is factored out of the sum
+                ByteBuffer bytes = byteChunks[chunk];
+                for(int j = 0; j < layerSize; j++) sum += bytes.get(base + j) * query[j];
+                return sum * scales[index];
+            default:
+                throw new IllegalStateException("Unknown encoding " + encoding);
+        }
+    }
+
+    //***************** READ/WRITE *****************
+    /**
+     * Maps a vectors file written by {@link #write} into memory, any encoding is accepted
+     */
+    public static MappedVectors read(@NonNull File file) throws IOException {
+        Timer.TimerToken t = Timer.newToken();
+        String[] words;
+        int layerSize;
+        Encoding encoding;
+        long offset;
+        try(CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)));
+            DataInputStream in = new DataInputStream(counter)) {
+            if(in.readInt() != MAGIC) throw new IOException("Not a vectors file: " + file);
+            int version = in.readInt();
+            if(version < 1 || version > VERSION) throw new IOException("Unsupported vectors file version [" + version + "]");
+            words = new String[in.readInt()];
+            layerSize = in.readInt();
+            // version 1 files were always float32
+            encoding = version == 1 ? Encoding.FLOAT32 : Encoding.values()[in.readInt()];
+            for(int i = 0; i < words.length; i++) {
+                words[i] = in.readUTF();
+            }
+            offset = align(counter.getCount());
+        }
+
+        int rowBytes = layerSize * encoding.getBytesPerValue();
+        int rowsPerChunk = Integer.MAX_VALUE / rowBytes;
+        int chunkCount = (words.length + rowsPerChunk - 1) / rowsPerChunk;
+        ByteBuffer[] chunks = new ByteBuffer[Math.max(chunkCount, 1)];
+        float[] scales = null;
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if(encoding == Encoding.INT8) {
+                scales = new float[words.length];
+                channel.map(FileChannel.MapMode.READ_ONLY, offset, (long) words.length * Float.BYTES)
+                        .order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(scales);
+                offset = align(offset + (long) words.length * Float.BYTES);
+            }
+            for(int c = 0; c < chunkCount; c++) {
+                long firstRow = (long) c * rowsPerChunk;
+                long rows = Math.min(rowsPerChunk, words.length - firstRow);
+                chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, offset + firstRow * rowBytes, rows * rowBytes)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+        if(chunkCount == 0) chunks[0] = ByteBuffer.allocate(0).order(ByteOrder.LITTLE_ENDIAN);
+        log.info("Mapped [{}] {} vectors of size [{}] from [{}] in {}",
+                words.length, encoding, layerSize, file, Timer.checkOut(t));
+        return new MappedVectors(words, layerSize, encoding, rowsPerChunk, chunks, scales);
+    }
+
+    /**
+     * Writes the unit-normalized rows of syn0 together with the vocabulary. syn0 itself is not modified
+     *
+     * @return number of bytes written
+     */
+    public static long write(@NonNull InMemoryLookupTable table, @NonNull VocabCache vocab,
+                             @NonNull Path target, @NonNull Encoding encoding) throws IOException {
+        INDArray syn0 = table.getSyn0();
+        int layerSize = table.layerSize();
+        String[] words = new String[vocab.numWords()];
+        for(int i = 0; i < words.length; i++) {
+            words[i] = vocab.wordAtIndex(i);
+        }
+        return write(words, layerSize, target, encoding,
+                (from, to, dest) -> ArrayVectors.normalizedRows(syn0, from, to, dest));
+    }
+
+    /**
+     * Writes the rows of another store, e.g. to re-encode a float32 file with a quantized encoding
+     *
+     * @return number of bytes written
+     */
+    public static long write(@NonNull VectorStore source, @NonNull Path target, @NonNull Encoding encoding)
+            throws IOException {
+        int layerSize = source.layerSize();
+        String[] words = new String[source.size()];
+        for(int i = 0; i < words.length; i++) {
+            words[i] = source.wordAt(i);
+        }
+        return write(words, layerSize, target, encoding, source::rows);
+    }
+
+    // fills dest with the normalized rows [from, to) in row-major order
+    private interface RowSource {
+        void rows(int from, int to, float[] dest);
+    }
+
+    private static long write(String[] words, int layerSize, Path target, Encoding encoding, RowSource source)
+            throws IOException {
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.writeInt(words.length);
+        header.writeInt(layerSize);
+        header.writeInt(encoding.ordinal());
+        for(String word : words) {
+            header.writeUTF(word);
+        }
+        header.flush();
+
+        try(FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, ByteBuffer.wrap(headerBytes.toByteArray()));
+            long scalesOffset = align(headerBytes.size());
+            long dataOffset = scalesOffset;
+            float[] scales = null;
+            if(encoding == Encoding.INT8) {
+                // scales are only known after quantizing so their section is filled in at the end
+                scales = new float[words.length];
+                dataOffset = align(scalesOffset + (long) words.length * Float.BYTES);
+            }
+            channel.position(dataOffset);
+
+            float[] block = new float[WRITE_BLOCK_ROWS * layerSize];
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BLOCK_ROWS * layerSize * encoding.getBytesPerValue())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            for(int from = 0; from < words.length; from += WRITE_BLOCK_ROWS) {
+                int to = Math.min(from + WRITE_BLOCK_ROWS, words.length);
+                source.rows(from, to, block);
+                buffer.clear();
+                for(int r = 0; r < to - from; r++) {
+                    int base = r * layerSize;
+                    switch(encoding) {
+                        case FLOAT32:
+                            for(int j = 0; j < layerSize; j++) buffer.putFloat(block[base + j]);
+                            break;
+                        case FLOAT16:
+                            for(int j = 0; j < layerSize; j++) buffer.putShort(HalfFloat.fromFloat(block[base + j]));
+                            break;
+                        case INT8:
+                            float max = 0f;
+                            for(int j = 0; j < layerSize; j++) max = Math.max(max, Math.abs(block[base + j]));
+                            float scale = max == 0 ? 0f : max / 127f;
+                            scales[from + r] = scale;
+                            for(int j = 0; j < layerSize; j++) {
+                                buffer.put(scale == 0 ? 0 : (byte) Math.round(block[base + j] / scale));
+                            }
+                            break;
+                    }
+                }
+                buffer.flip();
+                writeFully(channel, buffer);
+            }
+            long end = channel.position();
+
+            if(scales != null) {
+                ByteBuffer scaleBuffer = ByteBuffer.allocate(scales.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                scaleBuffer.asFloatBuffer().put(scales);
+                channel.position(scalesOffset);
+                writeFully(channel, scaleBuffer);
+            }
+            return end;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static long align(long offset) {
+        return ((offset + DATA_ALIGNMENT - 1) / DATA_ALIGNMENT) * DATA_ALIGNMENT;
+    }
+
+    // Keeps track of how many header bytes were consumed so the data offset can be found
+    private static class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if(b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if(n > 0) count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
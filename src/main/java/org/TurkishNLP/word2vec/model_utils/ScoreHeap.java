@@ -0,0 +1,132 @@
+package org.TurkishNLP.word2vec.model_utils;
+
+import java.util.Arrays;
+
+/**
+ * Binary heap of (score, index) pairs on primitive arrays so that scans over the whole vocabulary
+ * don't allocate an object per word. Either a min-heap (the top is the lowest score) or a max-heap
+ */
+public class ScoreHeap {
+    private final boolean minHeap;
+    private double[] scores;
+    private int[] ids;
+    private int size = 0;
+
+    public ScoreHeap(int capacity, boolean minHeap) {
+        this.minHeap = minHeap;
+        this.scores = new double[Math.max(capacity, 1)];
+        this.ids = new int[Math.max(capacity, 1)];
+    }
+
+    public static ScoreHeap minHeap(int capacity) {
+        return new ScoreHeap(capacity, true);
+    }
+
+    public static ScoreHeap maxHeap(int capacity) {
+        return new ScoreHeap(capacity, false);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public double peekScore() {
+        return scores[0];
+    }
+
+    public int peekId() {
+        return ids[0];
+    }
+
+    public void push(int id, double score) {
+        if(size == scores.length) {
+            scores = Arrays.copyOf(scores, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        int i = size++;
+        while(i > 0) {
+            int parent = (i - 1) >>> 1;
+            if(!above(score, scores[parent])) break;
+            scores[i] = scores[parent];
+            ids[i] = ids[parent];
+            i = parent;
+        }
+        scores[i] = score;
+        ids[i] = id;
+    }
+
+    /**
+     * Removes the top of the heap and returns its id
+     */
+    public int pop() {
+        int top = ids[0];
+        size--;
+        if(size > 0) siftDown(ids[size], scores[size]);
+        return top;
+    }
+
+    /**
+     * Keeps the k highest scores when used as a min-heap of capacity k
+     *
+     * @return whether the score was kept
+     */
+    public boolean offer(int id, double score, int k) {
+        if(size < k) {
+            push(id, score);
+            return true;
+        }
+        if(above(scores[0], score)) {
+            siftDown(id, score);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Empties the heap into arrays ordered from the highest score to the lowest
+     */
+    public void drainDescending(int[] idsOut, double[] scoresOut) {
+        if(minHeap) {
+            for(int i = size - 1; i >= 0; i--) {
+                scoresOut[i] = scores[0];
+                idsOut[i] = pop();
+            }
+        } else {
+            int n = size;
+            for(int i = 0; i < n; i++) {
+                scoresOut[i] = scores[0];
+                idsOut[i] = pop();
+            }
+        }
+    }
+
+    // replaces the top of the heap and restores the heap order
+    private void siftDown(int id, double score) {
+        int i = 0;
+        int half = size >>> 1;
+        while(i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if(right < size && above(scores[right], scores[child])) child = right;
+            if(!above(scores[child], score)) break;
+            scores[i] = scores[child];
+            ids[i] = ids[child];
+            i = child;
+        }
+        scores[i] = score;
+        ids[i] = id;
+    }
+
+    // whether a belongs closer to the top than b
+    private boolean above(double a, double b) {
+        return minHeap ? a < b : a > b;
+    }
+}
@@ -0,0 +1,49 @@
+package org.TurkishNLP.word2vec.model_utils;
+
+/**
+ * Read-only view of unit-normalized word vectors, one row per vocabulary word.
+ * Used for similarity queries so that they don't have to go through the training weights
+ */
+public interface VectorStore {
+    /**
+     * @return number of words (rows) in the store
+     */
+    int size();
+
+    /**
+     * @return length of each vector
+     */
+    int layerSize();
+
+    String wordAt(int index);
+
+    /**
+     * @return row index of the word or -1 if the word is not in the store
+     */
+    int indexOf(String word);
+
+    default boolean containsWord(String word) {
+        return indexOf(word) >= 0;
+    }
+
+    /**
+     * Copies the unit-normalized vector at index into dest
+     */
+    void vector(int index, float[] dest);
+
+    /**
+     * Copies the unit-normalized vectors of rows [from, to) into dest in row-major order
+     */
+    default void rows(int from, int to, float[] dest) {
+        float[] row = new float[layerSize()];
+        for(int r = from; r < to; r++) {
+            vector(r, row);
+            System.arraycopy(row, 0, dest, (r - from) * row.length, row.length);
+        }
+    }
+
+    /**
+     * Dot product of the unit-normalized vector at index and the query
+     */
+    double dot(int index, float[] query);
+}
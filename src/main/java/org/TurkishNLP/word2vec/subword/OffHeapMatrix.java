@@ -0,0 +1,132 @@
+package org.TurkishNLP.word2vec.subword;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Float matrix kept outside the Java heap in direct buffers, so millions of n-gram rows need neither
+ * a huge heap nor a single array. Buffers hold whole rows and are at most CHUNK_BYTES each.
+ *
+ * Nothing is synchronized: training threads read and update rows concurrently Hogwild-style
+ */
+class OffHeapMatrix {
+    private static final int CHUNK_BYTES = 1 << 28;
+
+    private final int rows, columns, rowsPerChunk;
+    private final ByteBuffer[] bytes;
+    private final FloatBuffer[] chunks;
+
+    /**
+     * Allocates a matrix of zeros
+     */
+    OffHeapMatrix(int rows, int columns) {
+        this(rows, columns, new ByteBuffer[chunkCount(rows, columns)]);
+        for(int c = 0; c < bytes.length; c++) {
+            bytes[c] = ByteBuffer.allocateDirect(chunkRows(c) * columns * Float.BYTES);
+            chunks[c] = bytes[c].order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        }
+    }
+
+    private OffHeapMatrix(int rows, int columns, ByteBuffer[] bytes) {
+        this.rows = rows;
+        this.columns = columns;
+        this.rowsPerChunk = rowsPerChunk(columns);
+        this.bytes = bytes;
+        this.chunks = new FloatBuffer[bytes.length];
+    }
+
+    /**
+     * Maps a matrix written with writeTo, the mapping is read-only
+     */
+    static OffHeapMatrix map(FileChannel channel, long offset, int rows, int columns) throws IOException {
+        OffHeapMatrix matrix = new OffHeapMatrix(rows, columns, new ByteBuffer[chunkCount(rows, columns)]);
+        long position = offset;
+        for(int c = 0; c < matrix.bytes.length; c++) {
+            long length = (long) matrix.chunkRows(c) * columns * Float.BYTES;
+            matrix.bytes[c] = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            matrix.chunks[c] = matrix.bytes[c].order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+            position += length;
+        }
+        return matrix;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    int columns() {
+        return columns;
+    }
+
+    /**
+     * Fills the matrix with values uniform in [-bound, bound), chunks are filled in parallel
+     */
+    void uniform(float bound, long seed) {
+        IntStream.range(0, chunks.length).parallel().forEach(c -> {
+            SplittableRandom random = new SplittableRandom(seed + c);
+            FloatBuffer chunk = chunks[c];
+            for(int i = 0, n = chunkRows(c) * columns; i < n; i++) {
+                chunk.put(i, (float) ((random.nextDouble() * 2 - 1) * bound));
+            }
+        });
+    }
+
+    float dot(int row, float[] v) {
+        FloatBuffer chunk = chunks[row / rowsPerChunk];
+        int base = (row % rowsPerChunk) * columns;
+        float sum = 0f;
+        for(int j = 0; j < columns; j++) sum += chunk.get(base + j) * v[j];
+        return sum;
+    }
+
+    /**
+     * dest += scale * row
+     */
+    void addRowTo(int row, float[] dest, float scale) {
+        FloatBuffer chunk = chunks[row / rowsPerChunk];
+        int base = (row % rowsPerChunk) * columns;
+        for(int j = 0; j < columns; j++) dest[j] += scale * chunk.get(base + j);
+    }
+
+    /**
+     * row += scale * src
+     */
+    void addToRow(int row, float[] src, float scale) {
+        FloatBuffer chunk = chunks[row / rowsPerChunk];
+        int base = (row % rowsPerChunk) * columns;
+        for(int j = 0; j < columns; j++) chunk.put(base + j, chunk.get(base + j) + scale * src[j]);
+    }
+
+    /**
+     * Writes the rows in order as little-endian floats
+     *
+     * @return number of bytes written
+     */
+    long writeTo(FileChannel channel) throws IOException {
+        long written = 0;
+        for(ByteBuffer chunk : bytes) {
+            ByteBuffer view = chunk.duplicate();
+            view.clear();
+            while(view.hasRemaining()) written += channel.write(view);
+        }
+        return written;
+    }
+
+    private int chunkRows(int chunk) {
+        return Math.min(rowsPerChunk, rows - chunk * rowsPerChunk);
+    }
+
+    private static int rowsPerChunk(int columns) {
+        return Math.max(1, CHUNK_BYTES / (columns * Float.BYTES));
+    }
+
+    private static int chunkCount(int rows, int columns) {
+        int perChunk = rowsPerChunk(columns);
+        return (rows + perChunk - 1) / perChunk;
+    }
+}
@@ -0,0 +1,607 @@
+package org.TurkishNLP.word2vec.subword;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.TurkishNLP.shared.AtomicFileWriter;
+import org.TurkishNLP.shared.MathOps;
+import org.TurkishNLP.shared.Timer;
+import org.TurkishNLP.word2vec.Word2VecModel;
+import org.TurkishNLP.word2vec.Word2VecParams;
+import org.TurkishNLP.word2vec.corpus.EncodedCorpus;
+import org.TurkishNLP.word2vec.model_utils.BetterModelUtils;
+import org.TurkishNLP.word2vec.model_utils.VectorStore;
+import org.TurkishNLP.word2vec.training.AliasSampler;
+import org.TurkishNLP.word2vec.training.SigmoidTable;
+import org.TurkishNLP.word2vec.training.TrainingSchedule;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Word embeddings built from character n-grams, like fastText. A word's vector is the average of its own
+ * row and the rows of its n-grams, which are hashed into a fixed number of buckets. Inflected forms that
+ * are not in the vocabulary still get a vector from the n-grams they share with known words, so the
+ * corpus doesn't have to be lemmatized and the vocabulary doesn't grow with every suffix.
+ *
+ * Words are padded with BOW and EOW before n-grams of MIN_N to MAX_N characters are taken, e.g. "<ev", "evl",
+ * "vle", "ler", "er>" for "evler" with 3-grams. The word and bucket rows live in an off-heap matrix.
+ *
+ * Training is skip-gram with negative sampling on an EncodedCorpus. Each worker trains on its own slice
+ * of the corpus and all of them update the shared rows without locks, Hogwild-style.
+ * Models read from disk have no output weights and can only be queried
+ */
+@Slf4j
+public class SubwordModel {
+    public static final String MODEL_EXTENSION = ".subword";
+    public static final int DEFAULT_MIN_N = 3;
+    public static final int DEFAULT_MAX_N = 6;
+    public static final int DEFAULT_BUCKETS = 2000000;
+
+    private static final char BOW = '<', EOW = '>';
+    private static final int MAGIC = 0x57325357;
+    private static final int VERSION = 1;
+    // used when the params don't set negative sampling, the model has no hierarchic softmax
+    private static final int DEFAULT_NEGATIVE = 5;
+    private static final double NEGATIVE_POWER = 0.75;
+    private static final int MAX_SENTENCE_LENGTH = 1000;
+    // words a worker trains before it publishes its progress and updates its learning rate
+    private static final int LEARNING_RATE_UPDATE_WORDS = 10000;
+    private static final long PROGRESS_LOG_SECONDS = 60;
+    private static final long SEED = 42;
+    private static final int DECIMALS_TO_SHOW = 4;
+
+    private final String modelName;
+    private final String[] words;
+    private final long[] counts;
+    private final HashMap<String, Integer> indexes;
+    private final int minN, maxN, buckets, layerSize;
+    // word rows followed by the n-gram bucket rows
+    private final OffHeapMatrix input;
+    // null for models read from disk
+    private OffHeapMatrix output;
+    // input rows of every vocabulary word
+    private final int[][] subwords;
+    private final BetterModelUtils modelUtils = new BetterModelUtils();
+    private volatile VectorStore vectors;
+
+    private SubwordModel(String modelName, String[] words, long[] counts, int minN, int maxN, int buckets,
+                         OffHeapMatrix input) {
+        this.modelName = modelName;
+        this.words = words;
+        this.counts = counts;
+        this.minN = minN;
+        this.maxN = maxN;
+        this.buckets = buckets;
+        this.layerSize = input.columns();
+        this.input = input;
+        this.indexes = new HashMap<>(words.length * 2);
+        for(int i = 0; i < words.length; i++) {
+            indexes.put(words[i], i);
+        }
+        this.subwords = new int[words.length][];
+        IntStream.range(0, words.length).parallel().forEach(i -> subwords[i] = rowsFor(words[i], i));
+    }
+
+    public String getName() {
+        return modelName;
+    }
+
+    public int getVocabCount() {
+        return words.length;
+    }
+
+    public int getLayerSize() {
+        return layerSize;
+    }
+
+    public boolean containsWord(String word) {
+        return indexes.containsKey(word);
+    }
+
+    public boolean isReadOnly() {
+        return output == null;
+    }
+
+    /**
+     * @return the unit-normalized vectors of the vocabulary words, computed from the rows on first use
+     */
+    public VectorStore getVectors() {
+        if(vectors == null) {
+            synchronized(this) {
+                if(vectors == null) vectors = new WordVectors();
+            }
+        }
+        return vectors;
+    }
+
+    //***************** WORD OPERATIONS *****************
+    /**
+     * Vector of any word, for words not in the vocabulary it is built from their n-grams only
+     *
+     * @return the vector or null if the word has no rows, i.e. it is not in the vocabulary and too short for n-grams
+     */
+    public float[] getVector(@NonNull String word) {
+        Integer index = indexes.get(word);
+        int[] rows = index != null ? subwords[index] : rowsFor(word, -1);
+        if(rows.length == 0) return null;
+        float[] vector = new float[layerSize];
+        for(int row : rows) input.addRowTo(row, vector, 1f);
+        for(int j = 0; j < layerSize; j++) vector[j] /= rows.length;
+        return vector;
+    }
+
+    public List<BetterModelUtils.ScoredLabel> getClosest(@NonNull String word, int top) {
+        return getClosest(Collections.singletonList(word), Collections.emptyList(), top);
+    }
+
+    /**
+     * Same as Word2VecModel.getClosest but the query words don't have to be in the vocabulary
+     *
+     * @return the closest vocabulary words, null if a query word has no vector
+     */
+    public List<BetterModelUtils.ScoredLabel> getClosest(List<String> positive, List<String> negative, int top) {
+        VectorStore vectors = getVectors();
+        float[] query = new float[layerSize];
+        List<String> missing = new ArrayList<>();
+        for(String s : positive) {
+            if(!addNormalized(s, query, 1f)) missing.add(s);
+        }
+        for(String s : negative) {
+            if(!addNormalized(s, query, -1f)) missing.add(s);
+        }
+        if(!missing.isEmpty()) {
+            log.error("Words: {} have no vectors", missing);
+            return null;
+        }
+        int[] exclude = IntStream.concat(positive.stream().mapToInt(vectors::indexOf),
+                negative.stream().mapToInt(vectors::indexOf)).filter(i -> i >= 0).toArray();
+        return modelUtils.wordsNearestScored(vectors, query, top, exclude);
+    }
+
+    /**
+     * Cosine similarity of two words, NaN if either of them has no vector
+     */
+    public double getSimilarity(@NonNull String word1, @NonNull String word2) {
+        float[] v1 = getVector(word1), v2 = getVector(word2);
+        if(v1 == null || v2 == null) return Double.NaN;
+        double dot = 0, norm1 = 0, norm2 = 0;
+        for(int j = 0; j < layerSize; j++) {
+            dot += v1[j] * v2[j];
+            norm1 += v1[j] * v1[j];
+            norm2 += v2[j] * v2[j];
+        }
+        return norm1 == 0 || norm2 == 0 ? Double.NaN : dot / Math.sqrt(norm1 * norm2);
+    }
+
+    private boolean addNormalized(String word, float[] query, float sign) {
+        float[] vector = getVector(word);
+        if(vector == null) return false;
+        double norm = 0;
+        for(float f : vector) norm += f * f;
+        float scale = norm == 0 ? 0f : (float) (sign / Math.sqrt(norm));
+        for(int j = 0; j < layerSize; j++) query[j] += vector[j] * scale;
+        return true;
+    }
+
+    //***************** SUBWORDS *****************
+    /**
+     * @param index vocabulary index of the word, -1 if it has no row of its own
+     * @return the word's row followed by the bucket rows of its n-grams
+     */
+    private int[] rowsFor(String word, int index) {
+        String padded = BOW + word + EOW;
+        int length = padded.length();
+        int ngrams = 0;
+        for(int n = minN; n <= maxN; n++) ngrams += Math.max(0, length - n + 1);
+        if(buckets == 0) ngrams = 0;
+
+        int[] rows = new int[ngrams + (index >= 0 ? 1 : 0)];
+        int k = 0;
+        if(index >= 0) rows[k++] = index;
+        if(ngrams == 0) return rows;
+        for(int start = 0; start < length; start++) {
+            for(int n = minN; n <= maxN && start + n <= length; n++) {
+                rows[k++] = words.length + (int) (Integer.toUnsignedLong(hash(padded, start, start + n)) % buckets);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 32 bit FNV-1a of the chars in [from, to), Turkish letters are all single chars
+     */
+    private static int hash(String s, int from, int to) {
+        int h = 0x811C9DC5;
+        for(int i = from; i < to; i++) {
+            h ^= s.charAt(i);
+            h *= 0x01000193;
+        }
+        return h;
+    }
+
+    //***************** TRAINING *****************
+    public static SubwordModel train(@NonNull Word2VecParams p, @NonNull EncodedCorpus corpus) {
+        return train(p, corpus, DEFAULT_MIN_N, DEFAULT_MAX_N, DEFAULT_BUCKETS);
+    }
+
+    /**
+     * Builds the vocabulary from the corpus counts and trains a model with the params' layer size, window,
+     * epochs, learning rates, subsampling, min word frequency, negative samples and workers.
+     * The learning algorithm is always skip-gram
+     *
+     * @param minN shortest n-gram, counting the BOW and EOW markers
+     * @param maxN longest n-gram
+     * @param buckets number of n-gram rows, 0 trains plain skip-gram word vectors
+     */
+    public static SubwordModel train(@NonNull Word2VecParams p, @NonNull EncodedCorpus corpus,
+                                     int minN, int maxN, int buckets) {
+        if(minN < 1 || maxN < minN || buckets < 0) {
+            throw new IllegalArgumentException("Invalid n-gram settings [" + minN + ", " + maxN + ", " + buckets + "]");
+        }
+        if(p.getLearningAlgorithm() != Word2VecParams.LearningAlgorithm.SKIP_GRAM
+                && p.getLearningAlgorithm() != Word2VecParams.LearningAlgorithm.HOGWILD_SKIP_GRAM) {
+            log.info("Subword model [{}] is trained with skip-gram instead of [{}]", p.getName(), p.getLearningAlgorithm());
+        }
+        if(p.getHierarchicSoftmax()) {
+            log.warn("Subword model [{}] only trains with negative sampling, ignoring hierarchic softmax", p.getName());
+        }
+        Timer.TimerToken t = Timer.newToken();
+
+        // corpus ids are sorted by count, the vocabulary is the prefix of the ids frequent enough
+        int numWords = 0;
+        while(numWords < corpus.numWords() && corpus.countOf(numWords + 1) >= p.getMinWordFrequency()) numWords++;
+        if(numWords == 0) throw new IllegalArgumentException("No word of the corpus is frequent enough");
+        String[] words = new String[numWords];
+        long[] counts = new long[numWords];
+        for(int i = 0; i < numWords; i++) {
+            words[i] = corpus.wordFor(i + 1);
+            counts[i] = corpus.countOf(i + 1);
+        }
+        log.info("Creating subword model [{}] with [{}] words and [{}] buckets", p.getName(), numWords, buckets);
+
+        OffHeapMatrix input = new OffHeapMatrix(numWords + buckets, p.getLayerSize());
+        input.uniform(1f / p.getLayerSize(), SEED);
+        SubwordModel model = new SubwordModel(p.getName(), words, counts, minN, maxN, buckets, input);
+        model.output = new OffHeapMatrix(numWords, p.getLayerSize());
+        log.info("Initialized subword model [{}] in {}", p.getName(), Timer.checkOut(t));
+
+        model.new Training(p).run(corpus);
+        return model;
+    }
+
+    /**
+     * One training run, the settings and progress shared by its workers
+     */
+    private class Training {
+        private final int epochs, window, negative, workers;
+        private final double learningRate, minLearningRate;
+        private final double[] keep;
+        private final AliasSampler sampler;
+        private final long wordsPerEpoch;
+        // vocabulary words read by all workers, before subsampling
+        private final LongAdder trainedWords = new LongAdder();
+
+        private Training(Word2VecParams p) {
+            this.epochs = p.getNumEpochs();
+            this.window = p.getWindowSize();
+            this.negative = p.getNegativeSampling() > 0 ? p.getNegativeSampling().intValue() : DEFAULT_NEGATIVE;
+            this.workers = Math.max(1, p.getWorkers());
+            this.learningRate = p.getLearningRate();
+            this.minLearningRate = p.getMinLearningRate();
+            this.sampler = AliasSampler.unigram(counts, NEGATIVE_POWER);
+
+            long total = 0;
+            for(long c : counts) total += c;
+            this.wordsPerEpoch = total;
+            // same keep probability as word2vec and SubsampledSequenceIterator
+            double sampling = p.getSubSampling();
+            double threshold = sampling * total;
+            this.keep = new double[counts.length];
+            for(int i = 0; i < counts.length; i++) {
+                keep[i] = sampling > 0 ? Math.min(1.0, (Math.sqrt(counts[i] / threshold) + 1) * threshold / counts[i]) : 1.0;
+            }
+        }
+
+        private double progress() {
+            return (double) trainedWords.sum() / wordsPerEpoch;
+        }
+
+        private void run(EncodedCorpus corpus) {
+            Timer.TimerToken t = Timer.newToken();
+            log.info("Training subword model [{}] for [{}] epochs with [{}] workers", modelName, epochs, workers);
+            AtomicInteger threadCount = new AtomicInteger();
+            ExecutorService pool = Executors.newFixedThreadPool(workers,
+                    r -> new Thread(r, "subword-trainer-" + threadCount.getAndIncrement()));
+            List<Future<?>> parts = new ArrayList<>();
+            for(int part = 0; part < workers; part++) {
+                int slice = part;
+                parts.add(pool.submit(() -> trainSlice(corpus, slice)));
+            }
+            pool.shutdown();
+            try {
+                long lastWords = 0, lastNanos = System.nanoTime();
+                while(!pool.awaitTermination(PROGRESS_LOG_SECONDS, TimeUnit.SECONDS)) {
+                    long words = trainedWords.sum(), nanos = System.nanoTime();
+                    double progress = progress();
+                    log.info("[{}] progress={} words/s={} lr={}", modelName,
+                            MathOps.roundDoubleTo(progress / epochs, DECIMALS_TO_SHOW),
+                            Math.round((words - lastWords) / ((nanos - lastNanos) / 1e9)),
+                            MathOps.roundDoubleTo(TrainingSchedule.learningRate(learningRate, minLearningRate,
+                                    progress, epochs), DECIMALS_TO_SHOW + 2));
+                    lastWords = words;
+                    lastNanos = nanos;
+                }
+                for(Future<?> part : parts) part.get();
+            } catch (InterruptedException e) {
+                pool.shutdownNow();
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while training subword model", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Training subword model [" + modelName + "] failed", e.getCause());
+            }
+            log.info("Trained subword model [{}] on [{}] words in {}", modelName, trainedWords.sum(), Timer.checkOut(t));
+        }
+
+        private void trainSlice(EncodedCorpus corpus, int slice) {
+            SplittableRandom random = new SplittableRandom(SEED + slice);
+            int[] ids = new int[MAX_SENTENCE_LENGTH];
+            int[] sentence = new int[MAX_SENTENCE_LENGTH];
+            float[] hidden = new float[layerSize], gradient = new float[layerSize];
+            float lr = (float) learningRate;
+            long unpublished = 0;
+
+            for(int epoch = 0; epoch < epochs; epoch++) {
+                EncodedCorpus.Cursor cursor = corpus.cursor(slice, workers);
+                int n;
+                while((n = cursor.nextSentence(ids)) >= 0) {
+                    int length = 0;
+                    for(int i = 0; i < n; i++) {
+                        int index = ids[i] - 1;
+                        if(index >= words.length) continue;
+                        unpublished++;
+                        if(keep[index] < 1.0 && random.nextDouble() >= keep[index]) continue;
+                        sentence[length++] = index;
+                    }
+
+                    for(int pos = 0; pos < length; pos++) {
+                        // window shrunk at random like word2vec so that close words are trained more often
+                        int reduced = window > 1 ? random.nextInt(window) : 0;
+                        int[] rows = subwords[sentence[pos]];
+                        for(int c = pos - window + reduced; c <= pos + window - reduced; c++) {
+                            if(c == pos || c < 0 || c >= length) continue;
+                            trainPair(rows, sentence[c], lr, hidden, gradient, random);
+                        }
+                    }
+
+                    if(unpublished >= LEARNING_RATE_UPDATE_WORDS) {
+                        trainedWords.add(unpublished);
+                        unpublished = 0;
+                        lr = (float) TrainingSchedule.learningRate(learningRate, minLearningRate, progress(), epochs);
+                    }
+                }
+            }
+            trainedWords.add(unpublished);
+        }
+
+        /**
+         * One skip-gram step: the average of the input rows predicts the target against negative samples,
+         * the gradient of the average is then added to every input row
+         */
+        private void trainPair(int[] rows, int target, float lr, float[] hidden, float[] gradient,
+                               SplittableRandom random) {
+            Arrays.fill(hidden, 0f);
+            for(int row : rows) input.addRowTo(row, hidden, 1f / rows.length);
+            Arrays.fill(gradient, 0f);
+            for(int d = 0; d <= negative; d++) {
+                int out = target;
+                float label = 1f;
+                if(d > 0) {
+                    out = sampler.sample(random);
+                    if(out == target) continue;
+                    label = 0f;
+                }
+                float g = (label - SigmoidTable.sigmoid(output.dot(out, hidden))) * lr;
+                output.addRowTo(out, gradient, g);
+                output.addToRow(out, hidden, g);
+            }
+            for(int row : rows) input.addToRow(row, gradient, 1f);
+        }
+    }
+
+    //***************** MODEL READ/WRITE *****************
+    public static SubwordModel readModelByName(String modelName) throws IOException {
+        return readModelByPath(modelPathFor(modelName), modelName);
+    }
+
+    /**
+     * Reads a model for querying, the rows are memory-mapped and paged in as they are used
+     */
+    public static SubwordModel readModelByPath(String filePath, String modelName) throws IOException {
+        Timer.TimerToken t = Timer.newToken();
+        File file = new File(filePath);
+        log.info("Reading subword model [{}] from [{}]", modelName, filePath);
+        if(!file.exists()) {
+            log.warn("File [{}] does not exist, aborting", filePath);
+            Timer.checkOut(t);
+            throw new FileNotFoundException(filePath);
+        }
+        long dataOffset;
+        int minN, maxN, buckets, layerSize;
+        String[] words;
+        long[] counts;
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if(in.readInt() != MAGIC) throw new IOException("Not a subword model: " + file);
+            int version = in.readInt();
+            if(version != VERSION) throw new IOException("Unsupported subword model version [" + version + "]");
+            dataOffset = in.readLong();
+            minN = in.readInt();
+            maxN = in.readInt();
+            buckets = in.readInt();
+            layerSize = in.readInt();
+            int numWords = in.readInt();
+            words = new String[numWords];
+            counts = new long[numWords];
+            for(int i = 0; i < numWords; i++) {
+                words[i] = in.readUTF();
+                counts[i] = in.readLong();
+            }
+        }
+        OffHeapMatrix input;
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            input = OffHeapMatrix.map(channel, dataOffset, words.length + buckets, layerSize);
+        }
+        SubwordModel model = new SubwordModel(modelName, words, counts, minN, maxN, buckets, input);
+        log.info("Finished reading subword model in {}", Timer.checkOut(t));
+        return model;
+    }
+
+    /**
+     * File layout: magic, version, data offset, the n-gram settings and the vocabulary (word and count)
+     * followed by the input rows at the data offset. Output weights are not saved
+     */
+    public static Word2VecModel.SaveResults saveModel(@NonNull SubwordModel model, String filePath, boolean override) {
+        File output = new File(filePath);
+        if(!override && output.exists()) {
+            log.warn("The file [{}] already exists, aborting", filePath);
+            return null;
+        }
+        Timer.TimerToken t = Timer.newToken();
+        try {
+            ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+            DataOutputStream header = new DataOutputStream(headerBytes);
+            header.writeInt(model.minN);
+            header.writeInt(model.maxN);
+            header.writeInt(model.buckets);
+            header.writeInt(model.layerSize);
+            header.writeInt(model.words.length);
+            for(int i = 0; i < model.words.length; i++) {
+                header.writeUTF(model.words[i]);
+                header.writeLong(model.counts[i]);
+            }
+            header.flush();
+
+            long bytes = AtomicFileWriter.write(output.toPath(), temp -> {
+                try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    // magic, version and the offset itself take 16 bytes
+                    ByteBuffer head = ByteBuffer.allocate(16 + headerBytes.size());
+                    head.putInt(MAGIC).putInt(VERSION).putLong(16 + headerBytes.size()).put(headerBytes.toByteArray());
+                    head.flip();
+                    while(head.hasRemaining()) channel.write(head);
+                    model.input.writeTo(channel);
+                }
+            });
+            Word2VecModel.SaveResults res = new Word2VecModel.SaveResults(filePath, bytes, Timer.checkOut(t));
+            log.info("Finished saving subword model [{}] to [{}]: {}", model.getName(), filePath, res);
+            return res;
+        } catch (IOException e) {
+            Timer.checkOut(t);
+            log.error("Saving subword model [{}] to [{}] failed, existing file left untouched", model.getName(), filePath, e);
+            return null;
+        }
+    }
+
+    public static Word2VecModel.SaveResults saveModel(@NonNull SubwordModel model, boolean override) {
+        return saveModel(model, modelPathFor(model.getName()), override);
+    }
+
+    private static String modelPathFor(String modelName) {
+        return Paths.get(System.getProperty("user.dir"), "data", "models", modelName + MODEL_EXTENSION).toString();
+    }
+
+    /**
+     * Unit-normalized vectors of the vocabulary words, kept on-heap for queries
+     */
+    private class WordVectors implements VectorStore {
+        private final float[] data;
+
+        private WordVectors() {
+            Timer.TimerToken t = Timer.newToken();
+            long length = (long) words.length * layerSize;
+            if(length > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many vectors to keep in memory");
+            }
+            data = new float[(int) length];
+            IntStream.range(0, words.length).parallel().forEach(i -> {
+                float[] vector = getVector(words[i]);
+                double norm = 0;
+                for(float f : vector) norm += f * f;
+                float scale = norm == 0 ? 0f : (float) (1.0 / Math.sqrt(norm));
+                for(int j = 0; j < layerSize; j++) data[i * layerSize + j] = vector[j] * scale;
+            });
+            log.info("Computed [{}] word vectors of subword model [{}] in {}", words.length, modelName, Timer.checkOut(t));
+        }
+
+        @Override
+        public int size() {
+            return words.length;
+        }
+
+        @Override
+        public int layerSize() {
+            return layerSize;
+        }
+
+        @Override
+        public String wordAt(int index) {
+            return words[index];
+        }
+
+        @Override
+        public int indexOf(String word) {
+            Integer i = indexes.get(word);
+            return i == null ? -1 : i;
+        }
+
+        @Override
+        public void vector(int index, float[] dest) {
+            System.arraycopy(data, index * layerSize, dest, 0, layerSize);
+        }
+
+        @Override
+        public void rows(int from, int to, float[] dest) {
+            System.arraycopy(data, from * layerSize, dest, 0, (to - from) * layerSize);
+        }
+
+        @Override
+        public double dot(int index, float[] query) {
+            int base = index * layerSize;
+            float sum = 0f;
+            for(int j = 0; j < layerSize; j++) sum += data[base + j] * query[j];
+            return sum;
+        }
+    }
+
+    /**
+     * Usage: SubwordModel encodedCorpus name [layerSize] [epochs], trains with the default params and
+     * n-gram settings and saves the model to the models directory
+     */
+    public static void main(String[] args) throws IOException {
+        String corpusPath = args.length > 0 ? args[0] :
+                Paths.get("data", "processed_files", "trwiki_corpus" + EncodedCorpus.CORPUS_EXTENSION).toString();
+        String name = args.length > 1 ? args[1] : "subword";
+        Word2VecParams p = new Word2VecParams(name)
+                .setLearningAlgortihm(Word2VecParams.LearningAlgorithm.SKIP_GRAM)
+                .setNegativeSampling(DEFAULT_NEGATIVE);
+        if(args.length > 2) p.setLayerSize(Integer.parseInt(args[2]));
+        if(args.length > 3) p.setNumEpochs(Integer.parseInt(args[3]));
+        Path corpusFile = Paths.get(corpusPath);
+        if(!Files.exists(corpusFile)) throw new FileNotFoundException(corpusPath);
+
+        SubwordModel model = train(p, EncodedCorpus.read(corpusFile.toFile()));
+        saveModel(model, true);
+    }
+}
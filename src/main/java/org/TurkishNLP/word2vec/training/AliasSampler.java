@@ -0,0 +1,67 @@
+package org.TurkishNLP.word2vec.training;
+
+import lombok.NonNull;
+
+import java.util.SplittableRandom;
+
+/**
+ * Samples indexes in constant time from a fixed discrete distribution with Vose's alias method.
+ * Used for negative sampling instead of the large unigram table of the reference word2vec.
+ * The tables are only read after construction so one sampler can be shared by all training threads
+ */
+public class AliasSampler {
+    private final double[] probability;
+    private final int[] alias;
+
+    /**
+     * @param weights unnormalized weight of every index, at least one must be positive
+     */
+    public AliasSampler(@NonNull double[] weights) {
+        int n = weights.length;
+        double total = 0;
+        for(double w : weights) total += w;
+        if(n == 0 || total <= 0) throw new IllegalArgumentException("Weights must have a positive sum");
+
+        probability = new double[n];
+        alias = new int[n];
+        double[] scaled = new double[n];
+        int[] small = new int[n], large = new int[n];
+        int smallCount = 0, largeCount = 0;
+        for(int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / total;
+            if(scaled[i] < 1.0) small[smallCount++] = i;
+            else large[largeCount++] = i;
+        }
+        while(smallCount > 0 && largeCount > 0) {
+            int s = small[--smallCount], l = large[--largeCount];
+            probability[s] = scaled[s];
+            alias[s] = l;
+            scaled[l] = scaled[l] + scaled[s] - 1.0;
+            if(scaled[l] < 1.0) small[smallCount++] = l;
+            else large[largeCount++] = l;
+        }
+        // whatever is left is 1 up to rounding errors
+        while(largeCount > 0) probability[large[--largeCount]] = 1.0;
+        while(smallCount > 0) probability[small[--smallCount]] = 1.0;
+    }
+
+    /**
+     * Distribution of negative samples of word2vec: the counts raised to the given power (0.75)
+     */
+    public static AliasSampler unigram(@NonNull long[] counts, double power) {
+        double[] weights = new double[counts.length];
+        for(int i = 0; i < counts.length; i++) {
+            weights[i] = Math.pow(counts[i], power);
+        }
+        return new AliasSampler(weights);
+    }
+
+    public int size() {
+        return probability.length;
+    }
+
+    public int sample(@NonNull SplittableRandom random) {
+        int i = random.nextInt(probability.length);
+        return random.nextDouble() < probability[i] ? i : alias[i];
+    }
+}
@@ -0,0 +1,222 @@
+package org.TurkishNLP.word2vec.training;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.TurkishNLP.shared.AtomicFileWriter;
+import org.TurkishNLP.shared.Timer;
+import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Snapshot of a training run: the weights, the vocabulary with its Huffman codes and where training was
+ * in its schedule. Weight matrices are written with Nd4j's binary format.
+ *
+ * A snapshot copies the weights while training threads may still be updating them, which is no different
+ * from the unsynchronized updates training already does. Writing it to disk can then happen on another thread
+ */
+@Slf4j
+public class Checkpoint {
+    public static final String CHECKPOINT_EXTENSION = ".ckpt";
+
+    private static final int MAGIC = 0x57324350;
+    private static final int VERSION = 1;
+
+    private final int completedEpochs, totalEpochs;
+    private final long linesInEpoch, linesPerEpoch;
+    private final double initialLearningRate, learningRate;
+    private final VocabCache<VocabWord> vocab;
+    private final INDArray syn0, syn1, syn1Neg;
+
+    private Checkpoint(int completedEpochs, int totalEpochs, long linesInEpoch, long linesPerEpoch,
+                       double initialLearningRate, double learningRate,
+                       VocabCache<VocabWord> vocab, INDArray syn0, INDArray syn1, INDArray syn1Neg) {
+        this.completedEpochs = completedEpochs;
+        this.totalEpochs = totalEpochs;
+        this.linesInEpoch = linesInEpoch;
+        this.linesPerEpoch = linesPerEpoch;
+        this.initialLearningRate = initialLearningRate;
+        this.learningRate = learningRate;
+        this.vocab = vocab;
+        this.syn0 = syn0;
+        this.syn1 = syn1;
+        this.syn1Neg = syn1Neg;
+    }
+
+    /**
+     * @return number of epochs finished before the checkpoint
+     */
+    public int getCompletedEpochs() {
+        return completedEpochs;
+    }
+
+    public int getTotalEpochs() {
+        return totalEpochs;
+    }
+
+    /**
+     * @return number of lines of the current epoch trained before the checkpoint
+     */
+    public long getLinesInEpoch() {
+        return linesInEpoch;
+    }
+
+    /**
+     * @return number of lines in an epoch, 0 if no epoch was finished yet
+     */
+    public long getLinesPerEpoch() {
+        return linesPerEpoch;
+    }
+
+    public double getInitialLearningRate() {
+        return initialLearningRate;
+    }
+
+    /**
+     * @return the learning rate training had reached at the checkpoint
+     */
+    public double getLearningRate() {
+        return learningRate;
+    }
+
+    public VocabCache<VocabWord> getVocab() {
+        return vocab;
+    }
+
+    /**
+     * Creates a lookup table over the checkpoint's vocabulary holding its weights. The negative sampling
+     * table is rebuilt from the word counts
+     */
+    public InMemoryLookupTable<VocabWord> lookupTable(double negative, boolean hierarchicSoftmax) {
+        InMemoryLookupTable<VocabWord> table = new InMemoryLookupTable.Builder<VocabWord>()
+                .vectorLength(syn0.columns())
+                .useAdaGrad(false)
+                .useHierarchicSoftmax(hierarchicSoftmax)
+                .negative(negative)
+                .cache(vocab)
+                .build();
+        table.resetWeights(true);
+        table.setSyn0(syn0);
+        if(syn1 != null) table.setSyn1(syn1);
+        if(syn1Neg != null) table.setSyn1Neg(syn1Neg);
+        return table;
+    }
+
+    //***************** READ/WRITE *****************
+    /**
+     * Copies the weights of the table, the vocabulary is only referenced as training doesn't change it
+     */
+    public static Checkpoint snapshot(@NonNull InMemoryLookupTable<VocabWord> table, @NonNull VocabCache<VocabWord> vocab,
+                                      int completedEpochs, int totalEpochs, long linesInEpoch, long linesPerEpoch,
+                                      double initialLearningRate, double learningRate) {
+        return new Checkpoint(completedEpochs, totalEpochs, linesInEpoch, linesPerEpoch, initialLearningRate,
+                learningRate, vocab, table.getSyn0().dup(),
+                table.getSyn1() == null ? null : table.getSyn1().dup(),
+                table.getSyn1Neg() == null ? null : table.getSyn1Neg().dup());
+    }
+
+    /**
+     * Writes the checkpoint to the path, replacing the previous one atomically
+     *
+     * @return number of bytes written
+     */
+    public long write(@NonNull Path path) throws IOException {
+        Timer.TimerToken t = Timer.newToken();
+        long bytes = AtomicFileWriter.write(path, temp -> {
+            try(DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp), 1 << 20))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(completedEpochs);
+                out.writeInt(totalEpochs);
+                out.writeLong(linesInEpoch);
+                out.writeLong(linesPerEpoch);
+                out.writeDouble(initialLearningRate);
+                out.writeDouble(learningRate);
+
+                int numWords = vocab.numWords();
+                out.writeInt(numWords);
+                for(int i = 0; i < numWords; i++) {
+                    VocabWord word = vocab.elementAtIndex(i);
+                    out.writeUTF(word.getLabel());
+                    out.writeLong((long) word.getElementFrequency());
+                    List<Byte> codes = word.getCodes();
+                    List<Integer> points = word.getPoints();
+                    out.writeShort(codes.size());
+                    for(Byte c : codes) out.writeByte(c);
+                    out.writeShort(points.size());
+                    for(Integer p : points) out.writeInt(p);
+                }
+
+                writeMatrix(out, syn0);
+                writeMatrix(out, syn1);
+                writeMatrix(out, syn1Neg);
+            }
+        });
+        log.info("Wrote checkpoint [{}] at epoch [{}] line [{}] ({} bytes) in {}",
+                path, completedEpochs + 1, linesInEpoch, bytes, Timer.checkOut(t));
+        return bytes;
+    }
+
+    public static Checkpoint read(@NonNull File file) throws IOException {
+        Timer.TimerToken t = Timer.newToken();
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 20))) {
+            if(in.readInt() != MAGIC) throw new IOException("Not a checkpoint: " + file);
+            int version = in.readInt();
+            if(version != VERSION) throw new IOException("Unsupported checkpoint version [" + version + "]");
+            int completedEpochs = in.readInt();
+            int totalEpochs = in.readInt();
+            long linesInEpoch = in.readLong();
+            long linesPerEpoch = in.readLong();
+            double initialLearningRate = in.readDouble();
+            double learningRate = in.readDouble();
+
+            int numWords = in.readInt();
+            AbstractCache<VocabWord> vocab = new AbstractCache.Builder<VocabWord>().build();
+            long total = 0;
+            for(int i = 0; i < numWords; i++) {
+                String label = in.readUTF();
+                long count = in.readLong();
+                List<Byte> codes = new ArrayList<>();
+                for(int c = in.readShort(); c > 0; c--) codes.add(in.readByte());
+                List<Integer> points = new ArrayList<>();
+                for(int p = in.readShort(); p > 0; p--) points.add(in.readInt());
+
+                VocabWord word = new VocabWord(count, label);
+                word.setCodes(codes);
+                word.setPoints(points);
+                word.setCodeLength((short) codes.size());
+                vocab.addToken(word);
+                vocab.addWordToIndex(i, label);
+                total += count;
+            }
+            vocab.setTotalWordOccurences(total);
+
+            INDArray syn0 = readMatrix(in);
+            INDArray syn1 = readMatrix(in);
+            INDArray syn1Neg = readMatrix(in);
+            log.info("Read checkpoint [{}] at epoch [{}] line [{}] in {}",
+                    file, completedEpochs + 1, linesInEpoch, Timer.checkOut(t));
+            return new Checkpoint(completedEpochs, totalEpochs, linesInEpoch, linesPerEpoch,
+                    initialLearningRate, learningRate, vocab, syn0, syn1, syn1Neg);
+        }
+    }
+
+    private static void writeMatrix(DataOutputStream out, INDArray matrix) throws IOException {
+        out.writeBoolean(matrix != null);
+        if(matrix != null) Nd4j.write(matrix, out);
+    }
+
+    private static INDArray readMatrix(DataInputStream in) throws IOException {
+        return in.readBoolean() ? Nd4j.read(in) : null;
+    }
+}
@@ -0,0 +1,183 @@
+package org.TurkishNLP.word2vec.training;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.deeplearning4j.models.embeddings.loader.VectorsConfiguration;
+import org.deeplearning4j.models.sequencevectors.SequenceVectors;
+import org.deeplearning4j.models.sequencevectors.enums.ListenerEvent;
+import org.deeplearning4j.models.sequencevectors.interfaces.VectorsListener;
+import org.deeplearning4j.models.word2vec.VocabWord;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Writes a Checkpoint of the model being trained every N epochs and/or every M lines of the corpus.
+ * Each checkpoint replaces the previous one, so the file always holds the latest state.
+ *
+ * The training thread that processes the event only takes a snapshot of the weights, the snapshot is written
+ * on a background thread like Word2VecModel.saveModelAsync does. If a newer snapshot is taken before the last
+ * one was written, the older one is dropped, so at most two copies of the weights are kept
+ */
+@Slf4j
+public class CheckpointListener implements VectorsListener<VocabWord> {
+    // single writer thread shared by all listeners so checkpoints don't compete for the disk, times out when idle
+    private static final ThreadPoolExecutor WRITE_EXECUTOR = new ThreadPoolExecutor(1, 1,
+            10L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> new Thread(r, "Checkpoint writer"));
+    static {
+        WRITE_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private final Path path;
+    private final int everyEpochs;
+    private final long everyLines;
+    // where this run started in the whole schedule, non-zero when resuming
+    private final int epochOffset;
+    private final long lineOffset;
+
+    // taken from the model's configuration on the first event unless resuming
+    private double initialLearningRate;
+    private int totalEpochs;
+    private long linesPerEpoch;
+
+    // epochs finished in this run and lines trained of the current one
+    private int epochs = 0;
+    private long lines = 0;
+    private volatile long nextLines;
+    private final LongAccumulator linesSeen = new LongAccumulator(Long::max, 0);
+
+    // snapshot waiting to be written and whether a write task is running, guarded by this
+    private Checkpoint pending;
+    private boolean writing = false;
+
+    /**
+     * @param path file to write the checkpoints to
+     * @param everyEpochs write a checkpoint after every this many epochs, 0 for never
+     * @param everyLines write a checkpoint after every this many lines of the corpus, 0 for never
+     */
+    public CheckpointListener(@NonNull Path path, int everyEpochs, long everyLines) {
+        this(path, everyEpochs, everyLines, 0, 0, Double.NaN, 0, 0);
+    }
+
+    private CheckpointListener(Path path, int everyEpochs, long everyLines, int epochOffset, long lineOffset,
+                               double initialLearningRate, int totalEpochs, long linesPerEpoch) {
+        this.path = path;
+        this.everyEpochs = everyEpochs;
+        this.everyLines = everyLines;
+        this.epochOffset = epochOffset;
+        this.lineOffset = lineOffset;
+        this.initialLearningRate = initialLearningRate;
+        this.totalEpochs = totalEpochs;
+        this.linesPerEpoch = linesPerEpoch;
+        this.nextLines = everyLines > 0 ? everyLines : Long.MAX_VALUE;
+    }
+
+    /**
+     * Creates a listener for a run resumed from the checkpoint, positions of new checkpoints continue
+     * from the one given
+     */
+    public static CheckpointListener resuming(@NonNull Checkpoint checkpoint, @NonNull Path path,
+                                              int everyEpochs, long everyLines) {
+        return new CheckpointListener(path, everyEpochs, everyLines,
+                checkpoint.getCompletedEpochs(), checkpoint.getLinesInEpoch(),
+                checkpoint.getInitialLearningRate(), checkpoint.getTotalEpochs(), checkpoint.getLinesPerEpoch());
+    }
+
+    /**
+     * Same as resuming for a run that trains the interrupted epoch again from its first line
+     */
+    public static CheckpointListener restartingEpoch(@NonNull Checkpoint checkpoint, @NonNull Path path,
+                                                     int everyEpochs, long everyLines) {
+        return new CheckpointListener(path, everyEpochs, everyLines, checkpoint.getCompletedEpochs(), 0,
+                checkpoint.getInitialLearningRate(), checkpoint.getTotalEpochs(), checkpoint.getLinesPerEpoch());
+    }
+
+    @Override
+    public boolean validateEvent(ListenerEvent event, long argument) {
+        switch(event) {
+            case EPOCH:
+                return true;
+            case LINE:
+                linesSeen.accumulate(argument);
+                return argument >= nextLines;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public synchronized void processEvent(ListenerEvent event, SequenceVectors<VocabWord> sequenceVectors, long argument) {
+        VectorsConfiguration conf = sequenceVectors.getConfiguration();
+        if(Double.isNaN(initialLearningRate)) {
+            initialLearningRate = conf.getLearningRate();
+            totalEpochs = conf.getEpochs();
+            linesPerEpoch = sequenceVectors.getVocab().totalNumberOfDocs();
+        }
+
+        if(event == ListenerEvent.EPOCH) {
+            // the first epoch of a resumed run starts at the line offset
+            linesPerEpoch = Math.max(linesPerEpoch, linesSeen.getThenReset() + (epochs == 0 ? lineOffset : 0));
+            epochs = (int) argument;
+            lines = 0;
+            nextLines = everyLines > 0 ? everyLines : Long.MAX_VALUE;
+            if(everyEpochs > 0 && (epochOffset + epochs) % everyEpochs == 0) {
+                write(sequenceVectors, conf);
+            }
+        } else if(event == ListenerEvent.LINE) {
+            // events come from all training threads, only the first one past the mark writes
+            if(argument < nextLines) return;
+            lines = argument;
+            nextLines = argument + everyLines;
+            write(sequenceVectors, conf);
+        }
+    }
+
+    private void write(SequenceVectors<VocabWord> sequenceVectors, VectorsConfiguration conf) {
+        int completed = epochOffset + epochs;
+        long linesInEpoch = lines + (epochs == 0 ? lineOffset : 0);
+        double learningRate = TrainingSchedule.learningRate(initialLearningRate, conf.getMinLearningRate(),
+                TrainingSchedule.epochProgress(completed, linesInEpoch, linesPerEpoch), totalEpochs);
+        if(pending != null) log.warn("Checkpoint [{}] is still being written, dropping the older snapshot", path);
+        pending = Checkpoint.snapshot((InMemoryLookupTable<VocabWord>) sequenceVectors.lookupTable(),
+                sequenceVectors.getVocab(), completed, totalEpochs, linesInEpoch, linesPerEpoch,
+                initialLearningRate, learningRate);
+        if(!writing) {
+            writing = true;
+            WRITE_EXECUTOR.execute(this::writePending);
+        }
+    }
+
+    private void writePending() {
+        Checkpoint checkpoint;
+        while((checkpoint = nextPending()) != null) {
+            try {
+                checkpoint.write(path);
+            } catch (IOException e) {
+                log.error("Could not write checkpoint [{}]: {}", path, e.getMessage());
+            }
+        }
+    }
+
+    private synchronized Checkpoint nextPending() {
+        Checkpoint checkpoint = pending;
+        pending = null;
+        if(checkpoint == null) {
+            writing = false;
+            notifyAll();
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Waits until the snapshots taken so far are written, so that the checkpoint file can be deleted or
+     * read after training
+     */
+    public synchronized void awaitWrites() throws InterruptedException {
+        while(writing) wait();
+    }
+}
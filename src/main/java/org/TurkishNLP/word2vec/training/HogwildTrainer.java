@@ -0,0 +1,362 @@
+package org.TurkishNLP.word2vec.training;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.TurkishNLP.shared.Timer;
+import org.TurkishNLP.word2vec.corpus.EncodedCorpus;
+import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.deeplearning4j.models.embeddings.loader.VectorsConfiguration;
+import org.deeplearning4j.models.sequencevectors.enums.ListenerEvent;
+import org.deeplearning4j.models.sequencevectors.interfaces.VectorsListener;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.Word2Vec;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Trains a Word2Vec the way the reference C word2vec does instead of going through DL4J's learners:
+ * the weights are copied into flat float arrays, each worker trains on its own slice of an EncodedCorpus
+ * and all of them update the arrays without locks, Hogwild-style. Sigmoids come from a SigmoidTable and
+ * negative samples from an AliasSampler over the unigram counts.
+ *
+ * The model's vocabulary and lookup table must already be built, training settings are read from its
+ * configuration. The weights are copied back into the lookup table at the end of every epoch and before
+ * listeners that read them process a LINE event, so checkpoints, evaluators and saved models see the same
+ * format as DL4J training
+ */
+@Slf4j
+public class HogwildTrainer {
+    private static final int MAX_SENTENCE_LENGTH = 1000;
+    // words a worker trains before it publishes its progress and updates its learning rate
+    private static final int LEARNING_RATE_UPDATE_WORDS = 10000;
+    private static final double NEGATIVE_POWER = 0.75;
+
+    private final Word2Vec model;
+    private final boolean cbow;
+    private final int workers;
+    private final List<VectorsListener<VocabWord>> listeners;
+
+    private final InMemoryLookupTable<VocabWord> table;
+    private final int numWords, layerSize, window, negative, epochs;
+    private final boolean hierarchicSoftmax;
+    private final double learningRate, minLearningRate;
+    private final long seed;
+    private final double[] keep;
+    private final float[] syn0, syn1, syn1Neg;
+    private final int[][] points;
+    private final byte[][] codes;
+    private final AliasSampler sampler;
+
+    // vocabulary words read by all workers, before subsampling
+    private final LongAdder trainedWords = new LongAdder();
+    private final AtomicLong epochLines = new AtomicLong();
+    private long wordsPerEpoch;
+
+    /**
+     * @param cbow trains CBOW if set, skip-gram otherwise
+     * @param workers number of training threads
+     * @param listeners notified of EPOCH and LINE events like DL4J notifies them
+     */
+    public HogwildTrainer(@NonNull Word2Vec model, boolean cbow, int workers,
+                          @NonNull Collection<VectorsListener<VocabWord>> listeners) {
+        VocabCache<VocabWord> vocab = model.getVocab();
+        this.model = model;
+        this.cbow = cbow;
+        this.workers = Math.max(1, workers);
+        this.listeners = new ArrayList<>(listeners);
+        this.table = (InMemoryLookupTable<VocabWord>) model.lookupTable();
+        this.numWords = vocab.numWords();
+        if(numWords == 0 || table.getSyn0() == null) {
+            throw new IllegalStateException("Vocabulary and weights have to be built before Hogwild training");
+        }
+        this.layerSize = table.layerSize();
+        if((long) numWords * layerSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many weights for flat arrays: [" + numWords + "] x [" + layerSize + "]");
+        }
+
+        VectorsConfiguration conf = model.getConfiguration();
+        this.window = conf.getWindow();
+        this.negative = (int) conf.getNegative();
+        this.hierarchicSoftmax = conf.isUseHierarchicSoftmax();
+        this.epochs = Math.max(1, conf.getEpochs());
+        this.learningRate = conf.getLearningRate();
+        this.minLearningRate = conf.getMinLearningRate();
+        this.seed = conf.getSeed();
+        if(negative <= 0 && !hierarchicSoftmax) {
+            throw new IllegalArgumentException("Either negative sampling or hierarchic softmax has to be used");
+        }
+
+        long[] counts = new long[numWords];
+        long total = 0;
+        for(int i = 0; i < numWords; i++) {
+            counts[i] = (long) vocab.elementAtIndex(i).getElementFrequency();
+            total += counts[i];
+        }
+        // same keep probability as word2vec and SubsampledSequenceIterator
+        double sampling = conf.getSampling();
+        double threshold = sampling * total;
+        this.keep = new double[numWords];
+        for(int i = 0; i < numWords; i++) {
+            keep[i] = sampling > 0 && counts[i] > 0 ?
+                    Math.min(1.0, (Math.sqrt(counts[i] / threshold) + 1) * threshold / counts[i]) : 1.0;
+        }
+
+        this.syn0 = flat(table.getSyn0());
+        this.syn1 = hierarchicSoftmax ? flat(table.getSyn1()) : null;
+        this.syn1Neg = negative > 0 ? flat(table.getSyn1Neg()) : null;
+        this.sampler = negative > 0 ? AliasSampler.unigram(counts, NEGATIVE_POWER) : null;
+        this.points = new int[hierarchicSoftmax ? numWords : 0][];
+        this.codes = new byte[hierarchicSoftmax ? numWords : 0][];
+        for(int i = 0; i < points.length; i++) {
+            VocabWord word = vocab.elementAtIndex(i);
+            points[i] = word.getPoints().stream().mapToInt(Integer::intValue).toArray();
+            codes[i] = new byte[word.getCodes().size()];
+            for(int c = 0; c < codes[i].length; c++) codes[i][c] = word.getCodes().get(c);
+        }
+    }
+
+    private float[] flat(INDArray weights) {
+        if(weights == null || weights.rows() != numWords) {
+            throw new IllegalStateException("Lookup table weights don't match the vocabulary");
+        }
+        return weights.dup().data().asFloat();
+    }
+
+    /**
+     * Trains all epochs of the model's configuration on the corpus, words of the corpus that are not in
+     * the vocabulary are skipped
+     */
+    public void fit(@NonNull EncodedCorpus corpus) {
+        Timer.TimerToken t = Timer.newToken();
+        VocabCache<VocabWord> vocab = model.getVocab();
+        // corpus id -> vocabulary index, -1 for words not in the vocabulary
+        int[] indexes = new int[corpus.numWords() + 1];
+        wordsPerEpoch = 0;
+        for(int id = 1; id < indexes.length; id++) {
+            String word = corpus.wordFor(id);
+            indexes[id] = vocab.containsWord(word) ? vocab.indexOf(word) : -1;
+            if(indexes[id] >= 0) wordsPerEpoch += corpus.countOf(id);
+        }
+        if(wordsPerEpoch == 0) throw new IllegalArgumentException("No word of the corpus is in the vocabulary");
+        log.info("Starting Hogwild {} training for [{}] epochs with [{}] workers on [{}] words per epoch",
+                cbow ? "CBOW" : "skip-gram", epochs, workers, wordsPerEpoch);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers,
+                r -> new Thread(r, "hogwild-trainer-" + threadCount.getAndIncrement()));
+        try {
+            for(int epoch = 0; epoch < epochs; epoch++) {
+                Timer.TimerToken e = Timer.newToken();
+                long before = trainedWords.sum();
+                epochLines.set(0);
+                List<Future<?>> slices = new ArrayList<>();
+                for(int slice = 0; slice < workers; slice++) {
+                    int part = slice, currentEpoch = epoch;
+                    slices.add(pool.submit(() -> trainSlice(corpus.cursor(part, workers), indexes,
+                            new SplittableRandom(seed + (long) currentEpoch * workers + part))));
+                }
+                for(Future<?> slice : slices) slice.get();
+
+                Timer.TimerResults time = Timer.checkOut(e);
+                log.info("Finished epoch [{}] of [{}] in {} at [{}] words/s", epoch + 1, epochs, time,
+                        Math.round((trainedWords.sum() - before) / Math.max(1e-9, time.asNanos() / 1e9)));
+                publish();
+                for(VectorsListener<VocabWord> listener : listeners) {
+                    if(listener.validateEvent(ListenerEvent.EPOCH, epoch + 1)) {
+                        listener.processEvent(ListenerEvent.EPOCH, model, epoch + 1);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while training", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Hogwild training failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+            publish();
+        }
+        log.info("Finished Hogwild training on [{}] words in {}", trainedWords.sum(), Timer.checkOut(t));
+    }
+
+    /**
+     * Copies the arrays into the lookup table while the workers may still be updating them, for the same
+     * reason a Checkpoint snapshot may
+     */
+    private synchronized void publish() {
+        publish(syn0, table.getSyn0());
+        if(syn1 != null) publish(syn1, table.getSyn1());
+        if(syn1Neg != null) publish(syn1Neg, table.getSyn1Neg());
+    }
+
+    private void publish(float[] weights, INDArray target) {
+        if(!target.isView() && target.ordering() == 'c' && target.length() == weights.length) {
+            // straight into the table's own buffer, no matrix is allocated
+            target.data().setData(weights);
+        } else {
+            target.assign(Nd4j.create(weights, new int[]{numWords, layerSize}));
+        }
+    }
+
+    private void trainSlice(EncodedCorpus.Cursor cursor, int[] indexes, SplittableRandom random) {
+        int[] ids = new int[MAX_SENTENCE_LENGTH];
+        int[] sentence = new int[MAX_SENTENCE_LENGTH];
+        float[] neu1 = new float[layerSize], neu1e = new float[layerSize];
+        float alpha = (float) TrainingSchedule.learningRate(learningRate, minLearningRate, progress(), epochs);
+        long unpublished = 0;
+
+        int n;
+        while((n = cursor.nextSentence(ids)) >= 0) {
+            int length = 0;
+            for(int i = 0; i < n; i++) {
+                int index = indexes[ids[i]];
+                if(index < 0) continue;
+                unpublished++;
+                if(keep[index] < 1.0 && random.nextDouble() >= keep[index]) continue;
+                sentence[length++] = index;
+            }
+
+            for(int pos = 0; pos < length; pos++) {
+                // window shrunk at random so that close words are trained more often
+                int reduced = window > 1 ? random.nextInt(window) : 0;
+                if(cbow) {
+                    trainCbow(sentence, length, pos, reduced, alpha, neu1, neu1e, random);
+                } else {
+                    for(int c = pos - window + reduced; c <= pos + window - reduced; c++) {
+                        if(c == pos || c < 0 || c >= length) continue;
+                        Arrays.fill(neu1e, 0f);
+                        learn(syn0, sentence[c] * layerSize, sentence[pos], alpha, neu1e, random);
+                        addToRow(neu1e, syn0, sentence[c] * layerSize, 1f);
+                    }
+                }
+            }
+
+            if(unpublished >= LEARNING_RATE_UPDATE_WORDS) {
+                trainedWords.add(unpublished);
+                unpublished = 0;
+                alpha = (float) TrainingSchedule.learningRate(learningRate, minLearningRate, progress(), epochs);
+            }
+            notifyLine();
+        }
+        trainedWords.add(unpublished);
+    }
+
+    private void trainCbow(int[] sentence, int length, int pos, int reduced, float alpha,
+                           float[] neu1, float[] neu1e, SplittableRandom random) {
+        Arrays.fill(neu1, 0f);
+        int context = 0;
+        for(int c = pos - window + reduced; c <= pos + window - reduced; c++) {
+            if(c == pos || c < 0 || c >= length) continue;
+            addRow(syn0, sentence[c] * layerSize, neu1, 1f);
+            context++;
+        }
+        if(context == 0) return;
+        for(int j = 0; j < layerSize; j++) neu1[j] /= context;
+
+        Arrays.fill(neu1e, 0f);
+        learn(neu1, 0, sentence[pos], alpha, neu1e, random);
+        for(int c = pos - window + reduced; c <= pos + window - reduced; c++) {
+            if(c == pos || c < 0 || c >= length) continue;
+            addToRow(neu1e, syn0, sentence[c] * layerSize, 1f);
+        }
+    }
+
+    /**
+     * Trains the hidden layer at input[offset] to predict the target, updating the output weights and
+     * accumulating the hidden layer's gradient in neu1e
+     */
+    private void learn(float[] input, int offset, int target, float alpha, float[] neu1e, SplittableRandom random) {
+        if(hierarchicSoftmax) {
+            int[] path = points[target];
+            byte[] code = codes[target];
+            for(int d = 0; d < code.length; d++) {
+                int l2 = path[d] * layerSize;
+                float f = dot(input, offset, syn1, l2);
+                if(f <= -SigmoidTable.MAX_EXP || f >= SigmoidTable.MAX_EXP) continue;
+                float g = (1 - code[d] - SigmoidTable.sigmoid(f)) * alpha;
+                addRow(syn1, l2, neu1e, g);
+                addRowToRow(input, offset, syn1, l2, g);
+            }
+        }
+        for(int d = 0; d <= negative && negative > 0; d++) {
+            int out = target;
+            float label = 1f;
+            if(d > 0) {
+                out = sampler.sample(random);
+                if(out == target) continue;
+                label = 0f;
+            }
+            int l2 = out * layerSize;
+            float g = (label - SigmoidTable.sigmoid(dot(input, offset, syn1Neg, l2))) * alpha;
+            addRow(syn1Neg, l2, neu1e, g);
+            addRowToRow(input, offset, syn1Neg, l2, g);
+        }
+    }
+
+    private double progress() {
+        return (double) trainedWords.sum() / wordsPerEpoch;
+    }
+
+    /**
+     * Sends the LINE event with the number of lines of the epoch trained so far, like DL4J's training threads
+     */
+    private void notifyLine() {
+        if(listeners.isEmpty()) return;
+        long line = epochLines.incrementAndGet();
+        for(VectorsListener<VocabWord> listener : listeners) {
+            if(listener.validateEvent(ListenerEvent.LINE, line)) {
+                if(readsWeightsOnLine(listener)) publish();
+                listener.processEvent(ListenerEvent.LINE, model, line);
+            }
+        }
+    }
+
+    /**
+     * TrainingMonitor only counts lines, its evaluator runs on EPOCH events which always see published
+     * weights. Any other listener, like a CheckpointListener, may read the lookup table
+     */
+    private static boolean readsWeightsOnLine(VectorsListener<VocabWord> listener) {
+        return !(listener instanceof TrainingMonitor);
+    }
+
+    private float dot(float[] a, int aOffset, float[] b, int bOffset) {
+        float sum = 0f;
+        for(int j = 0; j < layerSize; j++) sum += a[aOffset + j] * b[bOffset + j];
+        return sum;
+    }
+
+    /**
+     * dest += scale * src[srcOffset]
+     */
+    private void addRow(float[] src, int srcOffset, float[] dest, float scale) {
+        for(int j = 0; j < layerSize; j++) dest[j] += scale * src[srcOffset + j];
+    }
+
+    /**
+     * dest[destOffset] += scale * src
+     */
+    private void addToRow(float[] src, float[] dest, int destOffset, float scale) {
+        for(int j = 0; j < layerSize; j++) dest[destOffset + j] += scale * src[j];
+    }
+
+    /**
+     * dest[destOffset] += scale * src[srcOffset]
+     */
+    private void addRowToRow(float[] src, int srcOffset, float[] dest, int destOffset, float scale) {
+        for(int j = 0; j < layerSize; j++) dest[destOffset + j] += scale * src[srcOffset + j];
+    }
+}
@@ -0,0 +1,26 @@
+package org.TurkishNLP.word2vec.training;
+
+/**
+ * Precomputed logistic function for the primitive trainers, like the exp table of the reference word2vec.
+ * Inputs beyond +-MAX_EXP saturate to 0 or 1
+ */
+public final class SigmoidTable {
+    public static final float MAX_EXP = 6f;
+    private static final int TABLE_SIZE = 1000;
+    private static final float SCALE = TABLE_SIZE / (2 * MAX_EXP);
+    private static final float[] TABLE = new float[TABLE_SIZE + 1];
+    static {
+        for(int i = 0; i <= TABLE_SIZE; i++) {
+            double e = Math.exp((i / (double) TABLE_SIZE * 2 - 1) * MAX_EXP);
+            TABLE[i] = (float) (e / (e + 1));
+        }
+    }
+
+    private SigmoidTable() {}
+
+    public static float sigmoid(float x) {
+        if(x <= -MAX_EXP) return 0f;
+        if(x >= MAX_EXP) return 1f;
+        return TABLE[(int) ((x + MAX_EXP) * SCALE)];
+    }
+}
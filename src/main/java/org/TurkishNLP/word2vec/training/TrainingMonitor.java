@@ -0,0 +1,179 @@
+package org.TurkishNLP.word2vec.training;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.TurkishNLP.shared.MathOps;
+import org.TurkishNLP.shared.Timer;
+import org.deeplearning4j.models.embeddings.loader.VectorsConfiguration;
+import org.deeplearning4j.models.sequencevectors.SequenceVectors;
+import org.deeplearning4j.models.sequencevectors.enums.ListenerEvent;
+import org.deeplearning4j.models.sequencevectors.interfaces.VectorsListener;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.Word2Vec;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Reports the progress of a training run at a fixed interval: throughput overall and per training thread,
+ * learning rate, epoch progress and ETA. Reports are logged as key=value lines and can also be written
+ * as CSV rows.
+ *
+ * Training only reports lines, words are estimated from the average sentence length of the vocabulary,
+ * which is known after the first epoch if the vocabulary was not built from the corpus.
+ * It doesn't report a loss either, an evaluator can be set to score the model at the end of every epoch,
+ * e.g. on an analogy suite
+ */
+@Slf4j
+public class TrainingMonitor implements VectorsListener<VocabWord> {
+    public static final long DEFAULT_INTERVAL_SECONDS = 60;
+    private static final int DECIMALS_TO_SHOW = 4;
+
+    private final String name;
+    private final long intervalNanos;
+    private PrintWriter csv;
+    private ToDoubleFunction<Word2Vec> evaluator;
+
+    // lines trained by each training thread since the last report
+    private final Map<String, LongAdder> threadLines = new ConcurrentHashMap<>();
+    private final LongAdder epochLines = new LongAdder();
+    private volatile long nextReport;
+
+    private Timer.TimerToken token;
+    private long lastReportNanos;
+    private long totalLines = 0;
+    private int epochs = 0;
+    private long linesPerEpoch = 0;
+    private double wordsPerLine = 0;
+    private double score = Double.NaN;
+
+    public TrainingMonitor(@NonNull String name) {
+        this(name, DEFAULT_INTERVAL_SECONDS);
+    }
+
+    /**
+     * @param name label of the run in the reports
+     * @param intervalSeconds seconds between reports
+     */
+    public TrainingMonitor(@NonNull String name, long intervalSeconds) {
+        this.name = name;
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(Math.max(1, intervalSeconds));
+        this.nextReport = System.nanoTime() + intervalNanos;
+    }
+
+    /**
+     * Also writes every report as a CSV row, the header is written right away
+     */
+    public TrainingMonitor setCsv(@NonNull PrintWriter csv) {
+        this.csv = csv;
+        csv.println("model,elapsedSeconds,epoch,epochProgress,lines,words,wordsPerSecond,threads," +
+                "minThreadWordsPerSecond,maxThreadWordsPerSecond,learningRate,etaSeconds,score");
+        csv.flush();
+        return this;
+    }
+
+    /**
+     * @param evaluator scores the model at the end of every epoch, the last score is part of every report
+     */
+    public TrainingMonitor setEvaluator(ToDoubleFunction<Word2Vec> evaluator) {
+        this.evaluator = evaluator;
+        return this;
+    }
+
+    @Override
+    public boolean validateEvent(ListenerEvent event, long argument) {
+        switch(event) {
+            case EPOCH:
+                return true;
+            case LINE:
+                // called by the training thread that trained the line
+                threadLines.computeIfAbsent(Thread.currentThread().getName(), t -> new LongAdder()).increment();
+                epochLines.increment();
+                return System.nanoTime() >= nextReport;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public synchronized void processEvent(ListenerEvent event, SequenceVectors<VocabWord> sequenceVectors, long argument) {
+        if(token == null) start(sequenceVectors);
+        if(event == ListenerEvent.EPOCH) {
+            epochs = (int) argument;
+            linesPerEpoch = Math.max(linesPerEpoch, epochLines.sum());
+            if(wordsPerLine == 0 && linesPerEpoch > 0) {
+                wordsPerLine = (double) sequenceVectors.getVocab().totalWordOccurrences() / linesPerEpoch;
+            }
+            if(evaluator != null && sequenceVectors instanceof Word2Vec) {
+                Timer.TimerToken t = Timer.newToken();
+                score = evaluator.applyAsDouble((Word2Vec) sequenceVectors);
+                log.info("[{}] Scored [{}] after epoch [{}] in {}", name, score, epochs, Timer.checkOut(t));
+            }
+            epochLines.reset();
+            report(sequenceVectors.getConfiguration());
+        } else if(event == ListenerEvent.LINE) {
+            if(System.nanoTime() < nextReport) return;
+            report(sequenceVectors.getConfiguration());
+        }
+    }
+
+    private void start(SequenceVectors<VocabWord> sequenceVectors) {
+        token = Timer.newToken();
+        lastReportNanos = 0;
+        long docs = sequenceVectors.getVocab().totalNumberOfDocs();
+        linesPerEpoch = docs;
+        if(docs > 0) wordsPerLine = (double) sequenceVectors.getVocab().totalWordOccurrences() / docs;
+    }
+
+    private void report(VectorsConfiguration conf) {
+        long elapsedNanos = Timer.peek(token).asNanos();
+        double interval = Math.max(1e-9, (elapsedNanos - lastReportNanos) / 1e9);
+        lastReportNanos = elapsedNanos;
+        nextReport = System.nanoTime() + intervalNanos;
+
+        long intervalLines = 0;
+        List<Double> threadRates = new ArrayList<>();
+        for(Map.Entry<String, LongAdder> e : threadLines.entrySet()) {
+            long l = e.getValue().sumThenReset();
+            if(l == 0) {
+                // training threads are replaced every epoch, forget the ones that stopped
+                threadLines.remove(e.getKey(), e.getValue());
+                continue;
+            }
+            intervalLines += l;
+            threadRates.add(l * wordsPerLine / interval);
+        }
+        totalLines += intervalLines;
+        double minThread = threadRates.stream().mapToDouble(d -> d).min().orElse(0);
+        double maxThread = threadRates.stream().mapToDouble(d -> d).max().orElse(0);
+        double wordsPerSecond = intervalLines * wordsPerLine / interval;
+
+        double progress = TrainingSchedule.epochProgress(epochs, epochLines.sum(), linesPerEpoch);
+        int totalEpochs = conf.getEpochs();
+        double learningRate = TrainingSchedule.learningRate(conf.getLearningRate(), conf.getMinLearningRate(),
+                progress, totalEpochs);
+        double elapsed = elapsedNanos / 1e9;
+        double eta = progress > 0 ? elapsed / progress * (totalEpochs - progress) : Double.NaN;
+
+        log.info("[{}] elapsed={}s epoch={}/{} progress={} lines={} words={} words/s={} threads={} " +
+                        "thread words/s=[{}, {}] lr={} eta={}s score={}",
+                name, Math.round(elapsed), Math.min(epochs + 1, totalEpochs), totalEpochs,
+                MathOps.roundDoubleTo(progress, DECIMALS_TO_SHOW), totalLines, Math.round(totalLines * wordsPerLine),
+                Math.round(wordsPerSecond), threadRates.size(), Math.round(minThread), Math.round(maxThread),
+                MathOps.roundDoubleTo(learningRate, DECIMALS_TO_SHOW + 2), Math.round(eta), score);
+        if(csv != null) {
+            csv.println(name + "," + Math.round(elapsed) + "," + epochs + "," + MathOps.roundDoubleTo(progress, DECIMALS_TO_SHOW)
+                    + "," + totalLines + "," + Math.round(totalLines * wordsPerLine) + "," + Math.round(wordsPerSecond)
+                    + "," + threadRates.size() + "," + Math.round(minThread) + "," + Math.round(maxThread)
+                    + "," + learningRate + "," + (Double.isNaN(eta) ? "" : Math.round(eta))
+                    + "," + (Double.isNaN(score) ? "" : score));
+            csv.flush();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package org.TurkishNLP.word2vec.training;
+
+/**
+ * Training doesn't expose its learning rate, listeners recompute it from the same linear schedule:
+ * from the initial rate down to the min rate over all epochs. Trainers outside DL4J follow it as well
+ */
+public class TrainingSchedule {
+    /**
+     * @param epochProgress finished epochs plus the fraction of the current one
+     */
+    public static double learningRate(double initialLearningRate, double minLearningRate, double epochProgress, int totalEpochs) {
+        return Math.max(minLearningRate, initialLearningRate * (1 - epochProgress / Math.max(1, totalEpochs)));
+    }
+
+    /**
+     * @return finished epochs plus the fraction of the current one, lines are ignored until the number
+     * of lines in an epoch is known
+     */
+    public static double epochProgress(int completedEpochs, long linesInEpoch, long linesPerEpoch) {
+        double progress = completedEpochs;
+        if(linesPerEpoch > 0) progress += Math.min(1.0, (double) linesInEpoch / linesPerEpoch);
+        return progress;
+    }
+}
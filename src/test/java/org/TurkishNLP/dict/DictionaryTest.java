@@ -0,0 +1,60 @@
+package org.TurkishNLP.dict;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Reads "word count" dictionaries in the format trimDefaultDictionaryWithCorpus writes
+ */
+public class DictionaryTest extends TestCase {
+    private Path file;
+
+    @Override
+    protected void setUp() throws IOException {
+        file = Files.createTempFile("dictionary-test", Dictionary.DICTIONARY_EXTENSION);
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    public void testReadFrequencies() throws IOException {
+        write("kitap 12", "", "  ağaç\t3  ", "şehir 7", "kitap 5", "ığdır 0");
+        LinkedHashMap<String, Long> freqs = Dictionary.readFrequencies(file);
+
+        LinkedHashMap<String, Long> expected = new LinkedHashMap<>();
+        expected.put("kitap", 17L);
+        expected.put("ağaç", 3L);
+        expected.put("şehir", 7L);
+        expected.put("ığdır", 0L);
+        assertEquals(expected, freqs);
+        // file order is kept
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(freqs.keySet()));
+    }
+
+    public void testReadFrequenciesRejectsLinesWithoutCounts() throws IOException {
+        write("kitap 12", "ağaç");
+        assertNull(Dictionary.readFrequencies(file));
+        write("kitap 12", "ağaç üç");
+        assertNull(Dictionary.readFrequencies(file));
+    }
+
+    public void testReadDictionaryIgnoresCounts() throws IOException {
+        write("kitap 12", "", "ağaç", "  şehir 7 fazla  ");
+        List<String> expected = Arrays.asList("kitap", "ağaç", "şehir");
+        assertEquals(expected, Dictionary.readDictionary(file));
+    }
+
+    private void write(String... lines) throws IOException {
+        Files.write(file, Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+}
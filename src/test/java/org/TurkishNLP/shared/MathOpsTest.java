@@ -0,0 +1,45 @@
+package org.TurkishNLP.shared;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks the correlations against values worked out by hand
+ */
+public class MathOpsTest extends TestCase {
+
+    public void testSpearmanWithoutTies() {
+        // IQ and hours of TV per week, the usual textbook example, rho = -29/165
+        double[] iq = {106, 100, 86, 101, 99, 103, 97, 113, 112, 110};
+        double[] tv = {7, 27, 2, 50, 28, 29, 20, 12, 6, 17};
+        assertEquals(-29.0 / 165, MathOps.spearmanCorrelation(iq, tv), 1e-12);
+    }
+
+    public void testSpearmanWithTies() {
+        // the two 7s share rank 3.5: pearson of (1, 2, 3, 4, 5) and (1, 2, 3.5, 5, 3.5)
+        double[] x = {1, 2, 3, 4, 5};
+        double[] y = {5, 6, 7, 8, 7};
+        assertEquals(8 / Math.sqrt(95), MathOps.spearmanCorrelation(x, y), 1e-12);
+    }
+
+    public void testSpearmanIsRankBased() {
+        double[] x = {0.1, 0.5, 2, 3, 10};
+        double[] cubes = new double[x.length], negated = new double[x.length];
+        for(int i = 0; i < x.length; i++) {
+            cubes[i] = x[i] * x[i] * x[i];
+            negated[i] = -x[i];
+        }
+        assertEquals(1, MathOps.spearmanCorrelation(x, cubes), 1e-12);
+        assertEquals(-1, MathOps.spearmanCorrelation(x, negated), 1e-12);
+        assertTrue(MathOps.pearsonCorrelation(x, cubes) < 1 - 1e-3);
+    }
+
+    public void testDegenerateSamples() {
+        assertTrue(Double.isNaN(MathOps.spearmanCorrelation(new double[]{1}, new double[]{2})));
+        assertTrue(Double.isNaN(MathOps.spearmanCorrelation(new double[]{1, 2, 3}, new double[]{4, 4, 4})));
+        try {
+            MathOps.spearmanCorrelation(new double[]{1, 2}, new double[]{1, 2, 3});
+            fail("Samples of different sizes were correlated");
+        } catch(ArithmeticException expected) {
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.TurkishNLP.shared;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks streaming statistics against the same values computed from all of them at once
+ */
+public class StreamingStatisticsTest extends TestCase {
+
+    public void testSmallSampleIsExact() {
+        double[] values = ranks(new Random(1), StreamingStatistics.EXACT_LIMIT);
+        StreamingStatistics stats = add(values, 0, values.length);
+        assertTrue(stats.isExact());
+        assertStatistics(values, stats);
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        assertEquals((sorted[values.length / 2 - 1] + sorted[values.length / 2]) / 2, stats.getMedian(), 0);
+        assertEquals(sorted[0], stats.getPercentile(0), 0);
+        assertEquals(sorted[values.length - 1], stats.getPercentile(100), 0);
+    }
+
+    public void testMergeEqualsSinglePass() {
+        Random random = new Random(2);
+        for(int size : new int[]{10, StreamingStatistics.EXACT_LIMIT, 5000}) {
+            double[] values = ranks(random, size);
+            StreamingStatistics whole = add(values, 0, size);
+            StreamingStatistics merged = new StreamingStatistics();
+            // uneven shards, including an empty one
+            int[] bounds = {0, 0, size / 7, size / 2, size};
+            for(int s = 0; s + 1 < bounds.length; s++) {
+                merged.merge(add(values, bounds[s], bounds[s + 1]));
+            }
+            assertStatistics(values, merged);
+            assertEquals(whole.isExact(), merged.isExact());
+            for(double p : new double[]{0, 10, 50, 90, 99, 100}) {
+                assertEquals("size " + size + ", percentile " + p, whole.getPercentile(p), merged.getPercentile(p), 1e-12);
+            }
+        }
+    }
+
+    public void testSketchErrorBound() {
+        Random random = new Random(3);
+        double accuracy = 0.01;
+        double[] values = new double[20000];
+        for(int i = 0; i < values.length; i++) values[i] = Math.exp(random.nextGaussian() * 3);
+        StreamingStatistics stats = new StreamingStatistics(accuracy);
+        QuantileSketch sketch = new QuantileSketch(accuracy);
+        for(double v : values) {
+            stats.add(v);
+            sketch.add(v);
+        }
+        assertFalse(stats.isExact());
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for(double q = 0; q <= 1; q += 0.05) {
+            double expected = sorted[(int) (q * (values.length - 1))];
+            assertEquals("quantile " + q, expected, sketch.quantile(q), expected * accuracy * (1 + 1e-9));
+        }
+        // the median of an even count is between two values, both within the accuracy of the estimate
+        double low = sorted[values.length / 2 - 1], high = sorted[values.length / 2];
+        assertTrue(stats.getMedian() >= low * (1 - accuracy) && stats.getMedian() <= high * (1 + accuracy));
+    }
+
+    public void testEmpty() {
+        StreamingStatistics stats = new StreamingStatistics();
+        assertEquals(0, stats.getSize());
+        assertTrue(Double.isNaN(stats.getMean()));
+        assertTrue(Double.isNaN(stats.getMedian()));
+        assertSame(stats, stats.merge(new StreamingStatistics()));
+        assertEquals(0, stats.getSize());
+    }
+
+    // analogy-like ranks: many ones and a long tail
+    private static double[] ranks(Random random, int size) {
+        double[] values = new double[size];
+        for(int i = 0; i < size; i++) values[i] = random.nextInt(3) == 0 ? 1 : 1 + random.nextInt(5000);
+        return values;
+    }
+
+    private static StreamingStatistics add(double[] values, int from, int to) {
+        StreamingStatistics stats = new StreamingStatistics();
+        for(int i = from; i < to; i++) stats.add(values[i]);
+        return stats;
+    }
+
+    private static void assertStatistics(double[] values, StreamingStatistics stats) {
+        int n = values.length;
+        double sum = 0, logSum = 0, min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+        int ones = 0;
+        for(double v : values) {
+            sum += v;
+            logSum += Math.log(v) / Math.log(2);
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+            if(v == 1d) ones++;
+        }
+        double mean = sum / n, squares = 0;
+        for(double v : values) squares += (v - mean) * (v - mean);
+        assertEquals(n, stats.getSize());
+        assertEquals(ones, stats.getOnesCount());
+        assertEquals(min, stats.getMin(), 0);
+        assertEquals(max, stats.getMax(), 0);
+        assertEquals(mean, stats.getMean(), 1e-9 * max);
+        assertEquals(logSum / n, stats.getLogMean(), 1e-9);
+        assertEquals(Math.sqrt(squares / (n - 1)), stats.getStandardDeviation(), 1e-9 * max);
+    }
+}
@@ -0,0 +1,88 @@
+package org.TurkishNLP.testing;
+
+import junit.framework.TestCase;
+import org.TurkishNLP.testing.impl.AnalogyTest;
+import org.TurkishNLP.word2vec.Word2VecModel;
+import org.TurkishNLP.word2vec.model_utils.MappedVectors;
+import org.TurkishNLP.word2vec.model_utils.RandomVectors;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Runs the same tests on several threads and on one, the report must be the same
+ */
+public class TesterTest extends TestCase {
+    private static final int SIZE = 1000;
+
+    private Path file;
+    private Word2VecModel model;
+    private List<Test> tests;
+
+    @Override
+    protected void setUp() throws IOException {
+        file = Files.createTempFile("tester-test", MappedVectors.VECTORS_EXTENSION);
+        RandomVectors vectors = new RandomVectors(SIZE, 16, 31);
+        MappedVectors.write(vectors, file, MappedVectors.Encoding.FLOAT32);
+        model = Word2VecModel.readModelForInferenceByPath(file.toString(), "test");
+
+        Random random = new Random(37);
+        tests = new ArrayList<>();
+        for(int i = 0; i < 300; i++) {
+            tests.add(new AnalogyTest(vectors.wordAt(random.nextInt(SIZE)), vectors.wordAt(random.nextInt(SIZE)),
+                    vectors.wordAt(random.nextInt(SIZE)), vectors.wordAt(random.nextInt(SIZE))));
+            if(i % 10 == 0) {
+                // tests that are not batched, run between the analogy batches
+                int index = i;
+                tests.add(m -> new TestResults().setScore(index % 7 + 1).setMessage("test " + index));
+            }
+        }
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    public void testParallelReportEqualsSequential() {
+        String sequential = report(1);
+        assertTrue(sequential.contains("SUMMARY"));
+        for(int threads : new int[]{2, 8}) {
+            assertEquals("threads = " + threads, sequential, report(threads));
+        }
+    }
+
+    public void testResultsKeepTestOrder() {
+        String report = report(8);
+        int position = 0;
+        for(int i = 0; i < tests.size(); i++) {
+            Test t = tests.get(i);
+            String expected;
+            if(t instanceof AnalogyTest) {
+                String[] words = t.toString().split(" ");
+                expected = "[" + words[0] + "] - [" + words[1] + "] + [" + words[2] + "] = [" + words[3] + "]";
+                // the target was one of the query words
+                if(report.indexOf(expected, position) < 0) expected = "[" + words[3] + "] is not in vocab";
+            } else {
+                expected = t.run(model).getMessage();
+            }
+            int at = report.indexOf(expected, position);
+            assertTrue("result of test " + i + " out of order", at >= position);
+            position = at + expected.length();
+        }
+    }
+
+    private String report(int threads) {
+        Tester tester = new Tester();
+        tester.setThreads(threads);
+        StringWriter out = new StringWriter();
+        tester.runTestsOnModel(model, tests, new PrintWriter(out));
+        return out.toString();
+    }
+}
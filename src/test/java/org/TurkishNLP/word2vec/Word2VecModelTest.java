@@ -0,0 +1,114 @@
+package org.TurkishNLP.word2vec;
+
+import junit.framework.TestCase;
+import org.TurkishNLP.testing.impl.AnalogyTest;
+import org.TurkishNLP.word2vec.model_utils.BetterModelUtils;
+import org.TurkishNLP.word2vec.model_utils.MappedVectors;
+import org.TurkishNLP.word2vec.model_utils.RandomVectors;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that the batched queries of a model answer like getClosest and getRank
+ */
+public class Word2VecModelTest extends TestCase {
+    private static final int SIZE = 1000;
+    private static final int TOP = 5;
+
+    private Path file;
+    private RandomVectors vectors;
+    private Word2VecModel model;
+    private List<List<String>> positives, negatives;
+    private List<String> targets;
+
+    @Override
+    protected void setUp() throws IOException {
+        file = Files.createTempFile("word2vec-model-test", MappedVectors.VECTORS_EXTENSION);
+        vectors = new RandomVectors(SIZE, 16, 21);
+        MappedVectors.write(vectors, file, MappedVectors.Encoding.FLOAT32);
+        model = Word2VecModel.readModelForInferenceByPath(file.toString(), "test");
+
+        Random random = new Random(23);
+        positives = new ArrayList<>();
+        negatives = new ArrayList<>();
+        targets = new ArrayList<>();
+        for(int j = 0; j < 30; j++) {
+            positives.add(Arrays.asList(word(random), word(random)));
+            negatives.add(Collections.singletonList(word(random)));
+            // the target is sometimes one of the query's words, which isn't ranked
+            targets.add(j % 10 == 0 ? positives.get(j).get(0) : word(random));
+        }
+        // a query with a word that isn't in the vocabulary
+        positives.add(Arrays.asList("yok", word(random)));
+        negatives.add(Collections.singletonList(word(random)));
+        targets.add(word(random));
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    public void testBatchEqualsGetClosestAndGetRank() {
+        int[] ranks = new int[positives.size()];
+        List<List<BetterModelUtils.ScoredLabel>> batch = model.getClosestBatch(positives, negatives, TOP, targets, ranks);
+        for(int j = 0; j < positives.size(); j++) {
+            List<BetterModelUtils.ScoredLabel> closest = model.getClosest(positives.get(j), negatives.get(j), TOP, 0);
+            if(closest == null) {
+                assertNull(batch.get(j));
+            } else {
+                assertEquals(labels(closest), labels(batch.get(j)));
+            }
+            assertEquals("query " + j, model.getRank(positives.get(j), negatives.get(j), targets.get(j)), ranks[j]);
+        }
+        assertNull(batch.get(positives.size() - 1));
+        assertEquals(-1, ranks[positives.size() - 1]);
+    }
+
+    public void testRowBatchEqualsWordBatch() {
+        int[] wordRanks = new int[positives.size()], rowRanks = new int[positives.size()];
+        List<List<BetterModelUtils.ScoredLabel>> byWord =
+                model.getClosestBatch(positives, negatives, TOP, targets, wordRanks);
+        int[][] positiveRows = new int[positives.size()][], negativeRows = new int[negatives.size()][];
+        for(int j = 0; j < positives.size(); j++) {
+            positiveRows[j] = model.rowsOf(positives.get(j));
+            negativeRows[j] = model.rowsOf(negatives.get(j));
+        }
+        List<List<BetterModelUtils.ScoredLabel>> byRow =
+                model.getClosestBatch(positiveRows, negativeRows, TOP, model.rowsOf(targets), rowRanks);
+        for(int j = 0; j < positives.size(); j++) {
+            assertEquals(byWord.get(j) == null ? null : labels(byWord.get(j)), byRow.get(j) == null ? null : labels(byRow.get(j)));
+        }
+        assertTrue(Arrays.equals(wordRanks, rowRanks));
+    }
+
+    public void testAnalogyTestScoreIsRank() {
+        for(int j = 0; j < positives.size() - 1; j++) {
+            String a = positives.get(j).get(0), b = negatives.get(j).get(0), c = positives.get(j).get(1);
+            int rank = model.getRank(positives.get(j), negatives.get(j), targets.get(j));
+            Double score = new AnalogyTest(a, b, c, targets.get(j)).run(model).getScore();
+            if(rank < 0) {
+                assertTrue(score.isNaN());
+            } else {
+                assertEquals(rank, score, 0);
+            }
+        }
+    }
+
+    private String word(Random random) {
+        return vectors.wordAt(random.nextInt(SIZE));
+    }
+
+    private static List<String> labels(List<BetterModelUtils.ScoredLabel> scored) {
+        List<String> labels = new ArrayList<>();
+        for(BetterModelUtils.ScoredLabel s : scored) labels.add(s.getLabel());
+        return labels;
+    }
+}
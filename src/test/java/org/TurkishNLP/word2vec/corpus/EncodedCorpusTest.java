@@ -0,0 +1,111 @@
+package org.TurkishNLP.word2vec.corpus;
+
+import junit.framework.TestCase;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Encodes a small text corpus and reads it back through the mapped id stream
+ */
+public class EncodedCorpusTest extends TestCase {
+    private Path directory;
+    private List<String> sentences;
+    private EncodedCorpus corpus;
+
+    @Override
+    protected void setUp() throws IOException {
+        directory = Files.createTempDirectory("encoded-corpus-test");
+        // more than 127 distinct words so that some ids take two varint bytes
+        sentences = new ArrayList<>();
+        sentences.add("kitap okul öğrenci kitap");
+        sentences.add("");
+        sentences.add("çocuk   ağaç\tşehir ığdır kitap");
+        StringBuilder rare = new StringBuilder();
+        for(int i = 0; i < 300; i++) rare.append("kelime").append(i).append(' ');
+        sentences.add(rare.toString().trim());
+        sentences.add("okul kitap");
+
+        Path text = directory.resolve("corpus.txt");
+        try(BufferedWriter out = Files.newBufferedWriter(text, StandardCharsets.UTF_8)) {
+            for(String sentence : sentences) {
+                out.write(sentence);
+                out.write('\n');
+            }
+        }
+        Path encoded = directory.resolve("corpus" + EncodedCorpus.CORPUS_EXTENSION);
+        EncodedCorpus.encode(text, encoded);
+        corpus = EncodedCorpus.read(encoded.toFile());
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        File[] files = directory.toFile().listFiles();
+        if(files != null) for(File f : files) Files.deleteIfExists(f.toPath());
+        Files.deleteIfExists(directory);
+    }
+
+    public void testCounts() {
+        Map<String, Long> expected = new LinkedHashMap<>();
+        long tokens = 0;
+        for(String sentence : sentences) {
+            for(String word : tokens(sentence)) {
+                expected.merge(word, 1L, Long::sum);
+                tokens++;
+            }
+        }
+        assertEquals(sentences.size(), corpus.numSentences());
+        assertEquals(tokens, corpus.numTokens());
+        assertEquals(expected.size(), corpus.numWords());
+        assertEquals(expected, new LinkedHashMap<>(corpus.wordCounts()));
+
+        // most frequent words get the smallest ids
+        assertEquals("kitap", corpus.wordFor(1));
+        assertEquals(4, corpus.countOf(1));
+        for(int id = 2; id <= corpus.numWords(); id++) {
+            assertTrue(corpus.countOf(id - 1) >= corpus.countOf(id));
+        }
+    }
+
+    public void testSentencesRoundTrip() {
+        assertEquals(sentences.stream().map(EncodedCorpusTest::tokens).collect(Collectors.toList()), decode(1));
+    }
+
+    public void testSlicesCoverEverySentenceOnce() {
+        List<List<String>> whole = decode(1);
+        for(int parts = 2; parts <= 7; parts++) {
+            assertEquals("parts = " + parts, whole, decode(parts));
+        }
+    }
+
+    private List<List<String>> decode(int parts) {
+        List<List<String>> decoded = new ArrayList<>();
+        int[] ids = new int[1024];
+        for(int part = 0; part < parts; part++) {
+            EncodedCorpus.Cursor cursor = corpus.cursor(part, parts);
+            int n;
+            while((n = cursor.nextSentence(ids)) >= 0) {
+                List<String> words = new ArrayList<>();
+                for(int i = 0; i < n; i++) words.add(corpus.wordFor(ids[i]));
+                decoded.add(words);
+            }
+        }
+        return decoded;
+    }
+
+    private static List<String> tokens(String sentence) {
+        return Arrays.stream(sentence.trim().split("\\s+"))
+                .filter(w -> !w.isEmpty())
+                .collect(Collectors.toList());
+    }
+}
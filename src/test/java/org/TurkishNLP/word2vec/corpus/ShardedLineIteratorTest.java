@@ -0,0 +1,121 @@
+package org.TurkishNLP.word2vec.corpus;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Reads a corpus split into many shards and checks that every line comes out exactly once
+ */
+public class ShardedLineIteratorTest extends TestCase {
+    private Path directory;
+
+    @Override
+    protected void setUp() throws IOException {
+        directory = Files.createTempDirectory("sharded-line-iterator-test");
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        File[] files = directory.toFile().listFiles();
+        if(files != null) for(File f : files) Files.deleteIfExists(f.toPath());
+        Files.deleteIfExists(directory);
+    }
+
+    public void testSingleFile() throws IOException {
+        List<String> lines = lines("satır", 2000, 1);
+        File file = write("corpus.txt", lines, true);
+        for(int threads : new int[]{1, 2, 3, 8, 64}) {
+            assertEquals("threads = " + threads, sorted(lines), readAll(new ShardedLineIterator(file, threads, 16)));
+        }
+    }
+
+    public void testWindowsLineEndingsAndMissingFinalNewline() throws IOException {
+        List<String> lines = lines("çizgi", 500, 2);
+        File file = write("corpus.txt", lines, false);
+        for(int threads : new int[]{1, 4, 16}) {
+            assertEquals("threads = " + threads, sorted(lines), readAll(new ShardedLineIterator(file, threads, 8)));
+        }
+    }
+
+    public void testDirectoryOfShards() throws IOException {
+        List<String> all = new ArrayList<>();
+        for(int i = 0; i < 5; i++) {
+            List<String> lines = lines("dosya" + i + "_", 100 + 50 * i, 3 + i);
+            write("part-" + i + ".txt", lines, i % 2 == 0);
+            all.addAll(lines);
+        }
+        for(int threads : new int[]{1, 3, 12}) {
+            ShardedLineIterator iterator = new ShardedLineIterator(directory.toFile(), threads, 32);
+            assertEquals("threads = " + threads, sorted(all), readAll(iterator));
+        }
+    }
+
+    public void testResetStartsAFreshPass() throws IOException {
+        List<String> lines = lines("öğe", 1000, 4);
+        File file = write("corpus.txt", lines, true);
+        ShardedLineIterator iterator = new ShardedLineIterator(file, 4, 4);
+        for(int i = 0; i < 100; i++) iterator.nextSentence();
+        iterator.reset();
+        assertEquals(sorted(lines), readAll(iterator));
+        iterator.reset();
+        assertEquals(sorted(lines), readAll(iterator));
+        assertEquals(100 + 2 * lines.size(), iterator.getLines());
+    }
+
+    private static List<String> readAll(ShardedLineIterator iterator) {
+        List<String> read = new ArrayList<>();
+        try {
+            while(iterator.hasNext()) read.add(iterator.nextSentence());
+        } finally {
+            iterator.finish();
+        }
+        Collections.sort(read);
+        return read;
+    }
+
+    /**
+     * Numbered lines of random length with multi-byte characters and a few empty lines,
+     * so that shard boundaries fall in the middle of lines and characters. The last line is never
+     * empty since a file without a final newline can't end with one
+     */
+    private static List<String> lines(String prefix, int n, long seed) {
+        Random random = new Random(seed);
+        List<String> lines = new ArrayList<>();
+        for(int i = 0; i < n; i++) {
+            if(i < n - 1 && random.nextInt(20) == 0) {
+                lines.add("");
+                continue;
+            }
+            StringBuilder line = new StringBuilder(prefix).append(i);
+            int words = random.nextInt(12);
+            for(int w = 0; w < words; w++) line.append(" ığüşöç").append(random.nextInt(1000));
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    private File write(String name, List<String> lines, boolean unix) throws IOException {
+        String separator = unix ? "\n" : "\r\n";
+        String text = String.join(separator, lines);
+        // the windows style file has no newline after its last line
+        if(unix) text += separator;
+        Path file = directory.resolve(name);
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        return file.toFile();
+    }
+
+    private static List<String> sorted(List<String> lines) {
+        List<String> copy = new ArrayList<>(lines);
+        Collections.sort(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,75 @@
+package org.TurkishNLP.word2vec.model_utils;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that batched queries answer like the single-query scan they replace
+ */
+public class BetterModelUtilsTest extends TestCase {
+    // more than one tile of the batch product
+    private static final int SIZE = 5000;
+    private static final int LAYER_SIZE = 16;
+    private static final int QUERIES = 40;
+    private static final int TOP = 10;
+
+    private RandomVectors vectors;
+    private BetterModelUtils utils;
+    private float[][] queries;
+    private int[][] exclude;
+    private int[] targets;
+
+    @Override
+    protected void setUp() {
+        vectors = new RandomVectors(SIZE, LAYER_SIZE, 13);
+        utils = new BetterModelUtils();
+        Random random = new Random(17);
+        queries = new float[QUERIES][];
+        exclude = new int[QUERIES][];
+        targets = new int[QUERIES];
+        for(int j = 0; j < QUERIES; j++) {
+            int a = random.nextInt(SIZE), b = random.nextInt(SIZE), c = random.nextInt(SIZE);
+            queries[j] = BetterModelUtils.queryVector(vectors, new int[]{a, c}, new int[]{b});
+            exclude[j] = new int[]{a, b, c};
+            // some targets are excluded words, which aren't ranked
+            targets[j] = j % 10 == 0 ? a : random.nextInt(SIZE);
+        }
+    }
+
+    public void testBatchEqualsSingleQueries() {
+        int[] ranks = new int[QUERIES];
+        List<List<BetterModelUtils.ScoredLabel>> batch =
+                utils.wordsNearestScoredBatch(vectors, queries, TOP, exclude, targets, ranks);
+        assertEquals(QUERIES, batch.size());
+        for(int j = 0; j < QUERIES; j++) {
+            List<BetterModelUtils.ScoredLabel> single = utils.wordsNearestScored(vectors, queries[j], TOP, exclude[j]);
+            assertEquals(single.size(), batch.get(j).size());
+            for(int i = 0; i < single.size(); i++) {
+                assertEquals("query " + j, single.get(i).getLabel(), batch.get(j).get(i).getLabel());
+                assertEquals(single.get(i).getScore(), batch.get(j).get(i).getScore(), 1e-5);
+            }
+            assertEquals("query " + j, utils.rankOf(vectors, queries[j], targets[j], exclude[j]), ranks[j]);
+        }
+    }
+
+    public void testRanksWithoutResults() {
+        int[] ranks = new int[QUERIES];
+        List<List<BetterModelUtils.ScoredLabel>> batch =
+                utils.wordsNearestScoredBatch(vectors, queries, 0, exclude, targets, ranks);
+        for(int j = 0; j < QUERIES; j++) {
+            assertTrue(batch.get(j).isEmpty());
+            assertEquals(utils.rankOf(vectors, queries[j], targets[j], exclude[j]), ranks[j]);
+        }
+    }
+
+    public void testNoTargets() {
+        List<List<BetterModelUtils.ScoredLabel>> batch =
+                utils.wordsNearestScoredBatch(vectors, queries, TOP, null, null, null);
+        for(int j = 0; j < QUERIES; j++) {
+            assertEquals(utils.wordsNearestScored(vectors, queries[j], TOP).get(0).getLabel(),
+                    batch.get(j).get(0).getLabel());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.TurkishNLP.word2vec.model_utils;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Writes an index and checks that the read index answers queries exactly as the built one
+ */
+public class HnswIndexTest extends TestCase {
+    private static final int SIZE = 500;
+    private static final int LAYER_SIZE = 16;
+    private static final int K = 10;
+
+    private Path file;
+    private RandomVectors vectors;
+    private HnswIndex built;
+
+    @Override
+    protected void setUp() throws IOException {
+        file = Files.createTempFile("hnsw-index-test", HnswIndex.INDEX_EXTENSION);
+        vectors = new RandomVectors(SIZE, LAYER_SIZE, 11);
+        // a small m makes sure some nodes get upper levels
+        built = HnswIndex.build(vectors, 4, 50, 42);
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    public void testRoundTrip() throws IOException {
+        long bytes = built.write(file);
+        assertEquals(Files.size(file), bytes);
+        HnswIndex read = HnswIndex.read(file.toFile(), vectors);
+        assertEquals(built.size(), read.size());
+
+        float[] query = new float[LAYER_SIZE];
+        Random random = new Random(3);
+        for(int q = 0; q < 50; q++) {
+            if(q % 2 == 0) {
+                vectors.vector(random.nextInt(SIZE), query);
+            } else {
+                for(int j = 0; j < LAYER_SIZE; j++) query[j] = (float) random.nextGaussian();
+            }
+            int[] builtIds = new int[K], readIds = new int[K];
+            double[] builtScores = new double[K], readScores = new double[K];
+            int n = built.search(query, K, 40, builtIds, builtScores);
+            assertEquals(K, n);
+            assertEquals(n, read.search(query, K, 40, readIds, readScores));
+            assertTrue(Arrays.equals(builtIds, readIds));
+            assertTrue(Arrays.equals(builtScores, readScores));
+        }
+    }
+
+    public void testFindsStoredVectors() {
+        float[] query = new float[LAYER_SIZE];
+        int[] ids = new int[1];
+        double[] scores = new double[1];
+        int found = 0;
+        for(int i = 0; i < SIZE; i++) {
+            vectors.vector(i, query);
+            if(built.search(query, 1, 50, ids, scores) == 1 && ids[0] == i) found++;
+        }
+        // approximate search, but a stored vector should nearly always be its own nearest neighbour
+        assertTrue("found " + found + " of " + SIZE, found >= SIZE * 0.95);
+    }
+
+    public void testSizeMismatch() throws IOException {
+        built.write(file);
+        try {
+            HnswIndex.read(file.toFile(), new RandomVectors(SIZE + 1, LAYER_SIZE, 11));
+            fail("Index read with the wrong vectors");
+        } catch(IOException expected) {
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.TurkishNLP.word2vec.model_utils;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes vectors in every encoding and reads them back from the mapped file
+ */
+public class MappedVectorsTest extends TestCase {
+    // more rows than one write block so that blocks and the row scales are stitched together
+    private static final int SIZE = 5000;
+    private static final int LAYER_SIZE = 24;
+
+    private Path file;
+    private RandomVectors source;
+
+    @Override
+    protected void setUp() throws IOException {
+        file = Files.createTempFile("mapped-vectors-test", MappedVectors.VECTORS_EXTENSION);
+        source = new RandomVectors(SIZE, LAYER_SIZE, 7);
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    public void testFloat32() throws IOException {
+        roundTrip(MappedVectors.Encoding.FLOAT32, 0);
+    }
+
+    public void testFloat16() throws IOException {
+        // half floats keep 11 significant bits, values are below 1
+        roundTrip(MappedVectors.Encoding.FLOAT16, 1e-3);
+    }
+
+    public void testInt8() throws IOException {
+        // rounding to the nearest step of max / 127 and the max is at most 1
+        roundTrip(MappedVectors.Encoding.INT8, 0.5 / 127 + 1e-6);
+    }
+
+    public void testReEncoding() throws IOException {
+        MappedVectors.write(source, file, MappedVectors.Encoding.FLOAT32);
+        MappedVectors floats = MappedVectors.read(file.toFile());
+        Path half = Files.createTempFile("mapped-vectors-test", MappedVectors.VECTORS_EXTENSION);
+        try {
+            MappedVectors.write(floats, half, MappedVectors.Encoding.FLOAT16);
+            MappedVectors halves = MappedVectors.read(half.toFile());
+            assertEquals(MappedVectors.Encoding.FLOAT16, halves.getEncoding());
+            assertVectors(floats, halves, 1e-3);
+        } finally {
+            Files.deleteIfExists(half);
+        }
+    }
+
+    private void roundTrip(MappedVectors.Encoding encoding, double tolerance) throws IOException {
+        long bytes = MappedVectors.write(source, file, encoding);
+        assertEquals(Files.size(file), bytes);
+        MappedVectors read = MappedVectors.read(file.toFile());
+        assertEquals(encoding, read.getEncoding());
+        assertVectors(source, read, tolerance);
+    }
+
+    private static void assertVectors(VectorStore expected, MappedVectors actual, double tolerance) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.layerSize(), actual.layerSize());
+        float[] e = new float[expected.layerSize()];
+        float[] a = new float[actual.layerSize()];
+        for(int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.wordAt(i), actual.wordAt(i));
+            assertEquals(i, actual.indexOf(expected.wordAt(i)));
+            expected.vector(i, e);
+            actual.vector(i, a);
+            double dot = 0;
+            for(int j = 0; j < e.length; j++) {
+                assertEquals("row " + i + ", column " + j, e[j], a[j], tolerance);
+                dot += a[j] * e[j];
+            }
+            // the dot product must agree with the decoded vector
+            assertEquals(dot, actual.dot(i, e), 1e-5);
+        }
+        assertEquals(-1, actual.indexOf("yok"));
+    }
+}
@@ -0,0 +1,69 @@
+package org.TurkishNLP.word2vec.model_utils;
+
+import java.util.Random;
+
+/**
+ * Unit-normalized random rows for tests that don't need a trained model
+ */
+public class RandomVectors implements VectorStore {
+    private final String[] words;
+    private final int layerSize;
+    private final float[] data;
+
+    public RandomVectors(int size, int layerSize, long seed) {
+        this.words = new String[size];
+        this.layerSize = layerSize;
+        this.data = new float[size * layerSize];
+        Random random = new Random(seed);
+        for(int i = 0; i < size; i++) {
+            // non-ASCII words to check that they are stored as they are
+            words[i] = "kelime_ğüşiöç_" + i;
+            double norm = 0;
+            for(int j = 0; j < layerSize; j++) {
+                float v = (float) random.nextGaussian();
+                data[i * layerSize + j] = v;
+                norm += v * v;
+            }
+            for(int j = 0; j < layerSize; j++) {
+                data[i * layerSize + j] /= (float) Math.sqrt(norm);
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return words.length;
+    }
+
+    @Override
+    public int layerSize() {
+        return layerSize;
+    }
+
+    @Override
+    public String wordAt(int index) {
+        return words[index];
+    }
+
+    @Override
+    public int indexOf(String word) {
+        for(int i = 0; i < words.length; i++) {
+            if(words[i].equals(word)) return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public void vector(int index, float[] dest) {
+        System.arraycopy(data, index * layerSize, dest, 0, layerSize);
+    }
+
+    @Override
+    public double dot(int index, float[] query) {
+        float sum = 0f;
+        for(int j = 0; j < layerSize; j++) {
+            sum += data[index * layerSize + j] * query[j];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,69 @@
+package org.TurkishNLP.word2vec.model_utils;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Checks the top-k kept by a bounded ScoreHeap against a full sort of the scores
+ */
+public class ScoreHeapTest extends TestCase {
+
+    public void testTopKEqualsFullSort() {
+        Random random = new Random(5);
+        for(int k : new int[]{0, 1, 7, 100, 1000, 1500}) {
+            double[] scores = new double[1000];
+            for(int i = 0; i < scores.length; i++) scores[i] = random.nextGaussian();
+            assertTopK(scores, k);
+        }
+    }
+
+    public void testTopKWithTies() {
+        Random random = new Random(9);
+        double[] scores = new double[1000];
+        // few distinct values so that the k-th score is shared by many ids
+        for(int i = 0; i < scores.length; i++) scores[i] = random.nextInt(10) / 10.0;
+        for(int k : new int[]{1, 5, 50, 99, 100, 101, 500}) {
+            assertTopK(scores, k);
+        }
+    }
+
+    public void testMaxHeapDrainsDescending() {
+        ScoreHeap heap = ScoreHeap.maxHeap(2);
+        double[] scores = {0.3, -1, 2, 0.3, 5, 0};
+        for(int i = 0; i < scores.length; i++) heap.push(i, scores[i]);
+        int[] ids = new int[scores.length];
+        double[] drained = new double[scores.length];
+        heap.drainDescending(ids, drained);
+        assertTrue(heap.isEmpty());
+        assertTrue(Arrays.equals(new double[]{5, 2, 0.3, 0.3, 0, -1}, drained));
+        for(int i = 0; i < ids.length; i++) assertEquals(scores[ids[i]], drained[i], 0);
+    }
+
+    private static void assertTopK(double[] scores, int k) {
+        ScoreHeap heap = ScoreHeap.minHeap(k);
+        for(int i = 0; i < scores.length; i++) heap.offer(i, scores[i], k);
+        int n = Math.min(k, scores.length);
+        assertEquals(n, heap.size());
+        int[] ids = new int[n];
+        double[] top = new double[n];
+        heap.drainDescending(ids, top);
+
+        Integer[] sorted = IntStream.range(0, scores.length).boxed().toArray(Integer[]::new);
+        Arrays.sort(sorted, Comparator.comparingDouble((Integer i) -> scores[i]).reversed());
+        for(int i = 0; i < n; i++) {
+            // ids of equal scores may come in any order, the scores can't
+            assertEquals("k = " + k + ", position " + i, scores[sorted[i]], top[i], 0);
+            assertEquals(scores[ids[i]], top[i], 0);
+        }
+        assertEquals(n, IntStream.of(ids).distinct().count());
+        if(n > 0) {
+            // every id scoring above the lowest kept score is kept
+            long above = IntStream.range(0, scores.length).filter(i -> scores[i] > top[n - 1]).count();
+            assertEquals(above, IntStream.of(ids).filter(i -> scores[i] > top[n - 1]).count());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.TurkishNLP.word2vec.subword;
+
+import junit.framework.TestCase;
+import org.TurkishNLP.word2vec.Word2VecParams;
+import org.TurkishNLP.word2vec.corpus.EncodedCorpus;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Trains a small subword model and checks the vectors of words outside its vocabulary
+ */
+public class SubwordModelTest extends TestCase {
+    private static final int LAYER_SIZE = 16;
+    private static final String[] SENTENCES = {
+            "kitap okul öğrenci kitaplar",
+            "çocuk ağaç şehir çocuklar",
+            "evler okullar kitaplarımız",
+            "öğrenciler şehirde ağaçlar",
+    };
+
+    private Path directory;
+    private EncodedCorpus corpus;
+
+    @Override
+    protected void setUp() throws IOException {
+        directory = Files.createTempDirectory("subword-model-test");
+        Path text = directory.resolve("corpus.txt");
+        try(BufferedWriter out = Files.newBufferedWriter(text, StandardCharsets.UTF_8)) {
+            for(int i = 0; i < 50; i++) {
+                for(String sentence : SENTENCES) {
+                    out.write(sentence);
+                    out.write('\n');
+                }
+            }
+        }
+        Path encoded = directory.resolve("corpus" + EncodedCorpus.CORPUS_EXTENSION);
+        EncodedCorpus.encode(text, encoded);
+        corpus = EncodedCorpus.read(encoded.toFile());
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        File[] files = directory.toFile().listFiles();
+        if(files != null) for(File f : files) Files.deleteIfExists(f.toPath());
+        Files.deleteIfExists(directory);
+    }
+
+    public void testOutOfVocabularyVectors() {
+        SubwordModel model = train(5000);
+        String oov = "kitaplarımızdan";
+        assertFalse(model.containsWord(oov));
+        float[] vector = model.getVector(oov);
+        assertNotNull(vector);
+        assertEquals(LAYER_SIZE, vector.length);
+        assertTrue(Arrays.equals(vector, model.getVector(oov)));
+
+        // words that share most of their n-grams are close, unrelated words are not
+        double related = model.getSimilarity(oov, "kitaplarımızda");
+        double unrelated = model.getSimilarity(oov, "ağaçlarınızla");
+        assertTrue("related " + related, related > 0.5);
+        assertTrue("related " + related + " unrelated " + unrelated, related > unrelated);
+    }
+
+    public void testWordsWithoutRows() {
+        SubwordModel model = train(5000);
+        // "<>" is shorter than the shortest n-gram
+        assertNull(model.getVector(""));
+        assertTrue(Double.isNaN(model.getSimilarity("", "kitap")));
+
+        SubwordModel plain = train(0);
+        assertNotNull(plain.getVector("kitap"));
+        assertNull(plain.getVector("kitaplarımızdan"));
+    }
+
+    public void testSavedModelKeepsOutOfVocabularyVectors() throws IOException {
+        SubwordModel model = train(5000);
+        String path = directory.resolve("model" + SubwordModel.MODEL_EXTENSION).toString();
+        assertNotNull(SubwordModel.saveModel(model, path, true));
+        SubwordModel read = SubwordModel.readModelByPath(path, "subword-test");
+        assertTrue(read.isReadOnly());
+        assertEquals(model.getVocabCount(), read.getVocabCount());
+        for(String word : new String[]{"kitap", "öğrenciler", "kitaplarımızdan", "şehirlerde"}) {
+            assertTrue(word, Arrays.equals(model.getVector(word), read.getVector(word)));
+        }
+    }
+
+    private SubwordModel train(int buckets) {
+        Word2VecParams p = new Word2VecParams("subword-test")
+                .setLearningAlgortihm(Word2VecParams.LearningAlgorithm.SKIP_GRAM)
+                .setLayerSize(LAYER_SIZE)
+                .setNumEpochs(1)
+                .setMinWordFrequency(1)
+                .setNegativeSampling(5)
+                .setWorkers(2);
+        return SubwordModel.train(p, corpus, 3, 5, buckets);
+    }
+}
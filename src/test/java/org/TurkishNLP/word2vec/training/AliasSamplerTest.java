@@ -0,0 +1,59 @@
+package org.TurkishNLP.word2vec.training;
+
+import junit.framework.TestCase;
+
+import java.util.SplittableRandom;
+
+/**
+ * Draws many samples and compares the frequencies with the weights
+ */
+public class AliasSamplerTest extends TestCase {
+    private static final int SAMPLES = 1000000;
+
+    public void testDistribution() {
+        double[] weights = {1, 2, 3, 4, 0, 10, 0.5, 100};
+        assertFrequencies(weights, new AliasSampler(weights));
+    }
+
+    public void testUnigram() {
+        long[] counts = {1000, 500, 200, 50, 10, 1};
+        double[] weights = new double[counts.length];
+        for(int i = 0; i < counts.length; i++) weights[i] = Math.pow(counts[i], 0.75);
+        assertFrequencies(weights, AliasSampler.unigram(counts, 0.75));
+    }
+
+    public void testSingleIndex() {
+        AliasSampler sampler = new AliasSampler(new double[]{3});
+        SplittableRandom random = new SplittableRandom(1);
+        for(int i = 0; i < 100; i++) assertEquals(0, sampler.sample(random));
+    }
+
+    public void testInvalidWeights() {
+        for(double[] weights : new double[][]{{}, {0, 0}}) {
+            try {
+                new AliasSampler(weights);
+                fail("Weights without a positive sum were accepted");
+            } catch(IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    private static void assertFrequencies(double[] weights, AliasSampler sampler) {
+        assertEquals(weights.length, sampler.size());
+        double total = 0;
+        for(double w : weights) total += w;
+        long[] seen = new long[weights.length];
+        SplittableRandom random = new SplittableRandom(42);
+        for(int i = 0; i < SAMPLES; i++) seen[sampler.sample(random)]++;
+        for(int i = 0; i < weights.length; i++) {
+            double p = weights[i] / total;
+            if(p == 0) {
+                assertEquals("index " + i, 0, seen[i]);
+                continue;
+            }
+            // within 5 standard deviations of the binomial count
+            double sd = Math.sqrt(SAMPLES * p * (1 - p));
+            assertEquals("index " + i, SAMPLES * p, seen[i], 5 * sd);
+        }
+    }
+}
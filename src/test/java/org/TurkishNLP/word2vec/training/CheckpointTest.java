@@ -0,0 +1,98 @@
+package org.TurkishNLP.word2vec.training;
+
+import junit.framework.TestCase;
+import org.TurkishNLP.word2vec.Word2VecModel;
+import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes a checkpoint and reads it back
+ */
+public class CheckpointTest extends TestCase {
+    private static final int LAYER_SIZE = 8;
+
+    private Path file;
+    private VocabCache<VocabWord> vocab;
+    private InMemoryLookupTable<VocabWord> table;
+
+    @Override
+    protected void setUp() throws IOException {
+        file = Files.createTempFile("checkpoint-test", Checkpoint.CHECKPOINT_EXTENSION);
+        Map<String, Long> counts = new LinkedHashMap<>();
+        String[] words = {"kitap", "okul", "öğrenci", "çocuk", "ağaç", "şehir", "ığdır", "gün"};
+        for(int i = 0; i < words.length; i++) counts.put(words[i], (long) (words.length - i) * 10);
+        vocab = Word2VecModel.vocabFromCounts(counts, 1);
+        table = new InMemoryLookupTable.Builder<VocabWord>()
+                .vectorLength(LAYER_SIZE)
+                .useAdaGrad(false)
+                .useHierarchicSoftmax(true)
+                .negative(5)
+                .cache(vocab)
+                .seed(7)
+                .build();
+        table.resetWeights(true);
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    public void testRoundTrip() throws IOException {
+        Checkpoint written = Checkpoint.snapshot(table, vocab, 2, 5, 1234, 5678, 0.025, 0.0125);
+        assertTrue(written.write(file) > 0);
+        Checkpoint read = Checkpoint.read(file.toFile());
+
+        assertEquals(2, read.getCompletedEpochs());
+        assertEquals(5, read.getTotalEpochs());
+        assertEquals(1234, read.getLinesInEpoch());
+        assertEquals(5678, read.getLinesPerEpoch());
+        assertEquals(0.025, read.getInitialLearningRate());
+        assertEquals(0.0125, read.getLearningRate());
+
+        VocabCache<VocabWord> readVocab = read.getVocab();
+        assertEquals(vocab.numWords(), readVocab.numWords());
+        assertEquals(vocab.totalWordOccurrences(), readVocab.totalWordOccurrences());
+        for(int i = 0; i < vocab.numWords(); i++) {
+            VocabWord expected = vocab.elementAtIndex(i), actual = readVocab.elementAtIndex(i);
+            assertEquals(expected.getLabel(), actual.getLabel());
+            assertEquals(expected.getElementFrequency(), actual.getElementFrequency());
+            assertEquals(expected.getCodes(), actual.getCodes());
+            assertEquals(expected.getPoints(), actual.getPoints());
+            assertEquals(i, readVocab.indexOf(expected.getLabel()));
+        }
+
+        InMemoryLookupTable<VocabWord> readTable = read.lookupTable(5, true);
+        assertMatrixEquals(table.getSyn0(), readTable.getSyn0());
+        assertMatrixEquals(table.getSyn1(), readTable.getSyn1());
+        assertMatrixEquals(table.getSyn1Neg(), readTable.getSyn1Neg());
+    }
+
+    public void testSnapshotCopiesTheWeights() throws IOException {
+        Checkpoint snapshot = Checkpoint.snapshot(table, vocab, 0, 1, 0, 0, 0.025, 0.025);
+        INDArray before = table.getSyn0().dup();
+        // training keeps updating the live table after the snapshot is taken
+        table.getSyn0().addi(1);
+        snapshot.write(file);
+        assertMatrixEquals(before, Checkpoint.read(file.toFile()).lookupTable(5, true).getSyn0());
+    }
+
+    private static void assertMatrixEquals(INDArray expected, INDArray actual) {
+        if(expected == null) {
+            assertNull(actual);
+            return;
+        }
+        assertNotNull(actual);
+        assertEquals(expected.rows(), actual.rows());
+        assertEquals(expected.columns(), actual.columns());
+        assertTrue(expected.equalsWithEps(actual, 0));
+    }
+}